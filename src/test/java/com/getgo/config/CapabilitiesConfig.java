@@ -72,6 +72,11 @@ public class CapabilitiesConfig {
         caps.setCapability("newCommandTimeout", 300);
         caps.setCapability("androidInstallTimeout", 90000);
         
+        // Forward the UiAutomator2 MJPEG screen stream for MjpegFrameSource
+        if (Boolean.parseBoolean(props.getProperty("mjpeg.enabled", "false"))) {
+            caps.setCapability("mjpegServerPort", Integer.parseInt(props.getProperty("mjpeg.port", "7810")));
+        }
+        
         logger.info("Android Capabilities configured: " + caps.toString());
         return caps;
     }
@@ -100,7 +105,62 @@ public class CapabilitiesConfig {
         }
         return properties.getProperty(key, defaultValue);
     }
-    
+
+    /**
+     * Get integer property with default value
+     * System properties (-Dkey=value) take precedence over the file
+     * @param key Property key
+     * @param defaultValue Default value if key not found or not a number
+     * @return Property value as int
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = System.getProperty(key, getProperty(key));
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid integer for property {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get decimal property with default value
+     * System properties (-Dkey=value) take precedence over the file
+     * @param key Property key
+     * @param defaultValue Default value if key not found or not a number
+     * @return Property value as double
+     */
+    public static double getDoubleProperty(String key, double defaultValue) {
+        String value = System.getProperty(key, getProperty(key));
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid number for property {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get boolean property with default value
+     * System properties (-Dkey=value) take precedence over the file
+     * @param key Property key
+     * @param defaultValue Default value if key not found
+     * @return Property value as boolean
+     */
+    public static boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = System.getProperty(key, getProperty(key));
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
     /**
      * Get timeout values
      * @return Timeout properties
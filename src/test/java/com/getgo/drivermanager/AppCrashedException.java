@@ -0,0 +1,44 @@
+package com.getgo.drivermanager;
+
+/**
+ * AppCrashedException is thrown by waits and polling loops once the
+ * SessionHealthMonitor has detected that the app under test crashed,
+ * hung (ANR) or lost the foreground
+ */
+public class AppCrashedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+    private final String foregroundPackage;
+    private final String crashContext;
+
+    public AppCrashedException(String reason, String foregroundPackage, String crashContext) {
+        super("App under test is no longer healthy: " + reason
+            + (foregroundPackage != null ? " (foreground package: " + foregroundPackage + ")" : ""));
+        this.reason = reason;
+        this.foregroundPackage = foregroundPackage;
+        this.crashContext = crashContext;
+    }
+
+    /**
+     * @return Short description of what was detected
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return Package that was in the foreground when the problem was detected
+     */
+    public String getForegroundPackage() {
+        return foregroundPackage;
+    }
+
+    /**
+     * @return Logcat excerpt and other details collected at detection time
+     */
+    public String getCrashContext() {
+        return crashContext;
+    }
+}
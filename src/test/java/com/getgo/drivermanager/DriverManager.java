@@ -19,6 +19,8 @@ public class DriverManager {
     
     private static final Logger logger = LogManager.getLogger(DriverManager.class);
     private static ThreadLocal<AppiumDriver> driver = new ThreadLocal<>();
+    // [0] = implicit wait currently applied on the session, [1] = configured implicit wait (ms)
+    private static ThreadLocal<long[]> implicitWaitMs = ThreadLocal.withInitial(() -> new long[] {-1, -1});
     private static Properties capabilities;
     
     /**
@@ -34,12 +36,16 @@ public class DriverManager {
             logger.info("Initializing Appium Driver with URL: " + appiumServerURL);
             logger.info("Capabilities: " + caps.toString());
             
-            AndroidDriver androidDriver = new AndroidDriver(new URL(appiumServerURL), caps);
+            // Timed executor: every round trip is counted for the step timing report
+            AndroidDriver androidDriver = new AndroidDriver(new TimedCommandExecutor(new URL(appiumServerURL)), caps);
             
             // Set implicit wait
             int implicitWait = capabilities != null ? 
                 Integer.parseInt(capabilities.getProperty("implicit.wait", "10")) : 10;
             androidDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWait));
+            long[] implicitWaitState = implicitWaitMs.get();
+            implicitWaitState[0] = implicitWait * 1000L;
+            implicitWaitState[1] = implicitWait * 1000L;
             
             driver.set(androidDriver);
             logger.info("Appium Driver initialized successfully");
@@ -74,6 +80,7 @@ public class DriverManager {
                 logger.info("Quitting Appium Driver");
                 driver.get().quit();
                 driver.remove();
+                implicitWaitMs.remove();
                 logger.info("Appium Driver quit successfully");
             } catch (Exception e) {
                 logger.error("Error while quitting driver", e);
@@ -81,6 +88,30 @@ public class DriverManager {
         }
     }
     
+    /**
+     * Set the implicit wait on the current session
+     * Skips the driver round trip if the value is already applied
+     * @param millis Implicit wait in milliseconds
+     */
+    public static void setImplicitWait(long millis) {
+        long[] implicitWaitState = implicitWaitMs.get();
+        if (driver.get() == null || implicitWaitState[0] == millis) {
+            return;
+        }
+        driver.get().manage().timeouts().implicitlyWait(Duration.ofMillis(millis));
+        implicitWaitState[0] = millis;
+    }
+    
+    /**
+     * Restore the implicit wait configured at driver initialization
+     */
+    public static void restoreImplicitWait() {
+        long configured = implicitWaitMs.get()[1];
+        if (configured >= 0) {
+            setImplicitWait(configured);
+        }
+    }
+    
     /**
      * Set capabilities properties
      * @param props Properties object containing capabilities
@@ -0,0 +1,270 @@
+package com.getgo.drivermanager;
+
+import com.getgo.config.CapabilitiesConfig;
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.android.AndroidDriver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionHealthMonitor watches the app under test in the background and
+ * trips as soon as it crashes, shows an ANR dialog or loses the foreground.
+ * Waits and polling loops call {@link #assertHealthy()} so that the current
+ * scenario fails immediately with an {@link AppCrashedException} instead of
+ * burning its full timeout.
+ */
+public class SessionHealthMonitor {
+
+    private static final Logger logger = LogManager.getLogger(SessionHealthMonitor.class);
+    private static final ThreadLocal<SessionHealthMonitor> monitor = new ThreadLocal<>();
+
+    private static final String LOGCAT = "logcat";
+    private static final int LOGCAT_CONTEXT_LINES = 40;
+
+    // Markers of the system crash ("keeps stopping") and ANR ("isn't responding") dialogs
+    private static final String[] CRASH_DIALOG_MARKERS = {
+        "android:id/aerr_close", "android:id/aerr_restart", "android:id/aerr_wait",
+        "keeps stopping", "has stopped", "isn't responding"
+    };
+
+    // Packages that may legitimately cover the app for a moment (permission prompts, Google sign-in)
+    private static final String[] ALLOWED_FOREGROUND_PACKAGES = {
+        "com.android.permissioncontroller",
+        "com.google.android.permissioncontroller",
+        "com.google.android.gms"
+    };
+
+    private final AndroidDriver driver;
+    private final String appPackage;
+    private final boolean logcatEnabled;
+    private final int maxForegroundMisses;
+    private final ScheduledExecutorService scheduler;
+    private final Deque<String> recentLogcat = new ArrayDeque<>();
+
+    private volatile String failureReason;
+    private volatile String failurePackage;
+    private volatile String failureContext;
+    private int foregroundMisses;
+    private boolean logcatDrained;
+    // Cleared when the driver has no logcat log type, so later ticks skip the failing round trip
+    private boolean logcatAvailable = true;
+
+    private SessionHealthMonitor(AndroidDriver driver, String appPackage) {
+        this.driver = driver;
+        this.appPackage = appPackage;
+        this.logcatEnabled = CapabilitiesConfig.getBooleanProperty("health.monitor.logcat", true);
+        this.maxForegroundMisses = CapabilitiesConfig.getIntProperty("health.monitor.foreground.misses", 2);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-health-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start monitoring the app for the current scenario thread
+     * @param driver Active Appium driver
+     * @param appPackage Package of the app under test
+     */
+    public static void start(AppiumDriver driver, String appPackage) {
+        stop();
+        if (!CapabilitiesConfig.getBooleanProperty("health.monitor.enabled", true)) {
+            logger.info("Session health monitor disabled");
+            return;
+        }
+        if (!(driver instanceof AndroidDriver) || appPackage == null) {
+            logger.warn("Session health monitor requires an AndroidDriver and app package, skipping");
+            return;
+        }
+
+        SessionHealthMonitor healthMonitor = new SessionHealthMonitor((AndroidDriver) driver, appPackage);
+        int intervalMs = CapabilitiesConfig.getIntProperty("health.monitor.interval.ms", 2000);
+        healthMonitor.scheduler.scheduleWithFixedDelay(healthMonitor::check, 0, intervalMs, TimeUnit.MILLISECONDS);
+        monitor.set(healthMonitor);
+        logger.info("Session health monitor started for {} (interval {} ms)", appPackage, intervalMs);
+    }
+
+    /**
+     * Stop monitoring for the current scenario thread
+     */
+    public static void stop() {
+        SessionHealthMonitor healthMonitor = monitor.get();
+        if (healthMonitor != null) {
+            healthMonitor.scheduler.shutdownNow();
+            monitor.remove();
+            logger.info("Session health monitor stopped");
+        }
+    }
+
+    /**
+     * Throw if the monitor has detected a crash, ANR or foreground loss
+     * Cheap enough to call on every poll of a wait loop
+     * @throws AppCrashedException if the app is no longer healthy
+     */
+    public static void assertHealthy() {
+        AppCrashedException failure = getFailure();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Check if the app is still considered healthy
+     * @return true if no crash has been detected (or monitor is not running)
+     */
+    public static boolean isHealthy() {
+        SessionHealthMonitor healthMonitor = monitor.get();
+        return healthMonitor == null || healthMonitor.failureReason == null;
+    }
+
+    /**
+     * Get the detected failure, if any
+     * A new exception is created per call so its stack trace points at the caller
+     * @return AppCrashedException describing the failure, or null if healthy
+     */
+    public static AppCrashedException getFailure() {
+        SessionHealthMonitor healthMonitor = monitor.get();
+        if (healthMonitor == null || healthMonitor.failureReason == null) {
+            return null;
+        }
+        return new AppCrashedException(healthMonitor.failureReason, healthMonitor.failurePackage,
+            healthMonitor.failureContext);
+    }
+
+    /**
+     * Wrap a wait condition so it aborts as soon as the app is unhealthy
+     * @param condition Condition to evaluate
+     * @return Condition that checks app health before every evaluation
+     */
+    public static <T> ExpectedCondition<T> guard(ExpectedCondition<T> condition) {
+        return driver -> {
+            assertHealthy();
+            return condition.apply(driver);
+        };
+    }
+
+    private void check() {
+        if (failureReason != null) {
+            return;
+        }
+        try {
+            if (logcatEnabled && logcatAvailable) {
+                scanLogcat();
+                if (failureReason != null) {
+                    return;
+                }
+            }
+
+            String foregroundPackage = driver.getCurrentPackage();
+            if (appPackage.equals(foregroundPackage) || isAllowedForeground(foregroundPackage)) {
+                foregroundMisses = 0;
+                return;
+            }
+
+            // Only pay for a page source when the app is not in front
+            String marker = findCrashDialogMarker(driver.getPageSource());
+            if (marker != null) {
+                trip("Crash/ANR dialog detected (" + marker + ")", foregroundPackage);
+            } else if (++foregroundMisses >= maxForegroundMisses) {
+                trip("App left the foreground", foregroundPackage);
+            }
+        } catch (Exception e) {
+            // The session may be shutting down; the next wait will surface real driver errors
+            logger.debug("Health check failed: {}", e.getMessage());
+        }
+    }
+
+    private void scanLogcat() {
+        Iterable<LogEntry> entries;
+        try {
+            entries = driver.manage().logs().get(LOGCAT);
+        } catch (Exception e) {
+            logcatAvailable = false;
+            logger.debug("Logcat not available, disabling logcat scan: {}", e.getMessage());
+            return;
+        }
+
+        // The first read returns everything buffered so far, which predates this scenario
+        if (!logcatDrained) {
+            logcatDrained = true;
+            return;
+        }
+
+        boolean fatalExceptionSeen = false;
+        for (LogEntry entry : entries) {
+            String line = entry.getMessage();
+            remember(line);
+            if (line.contains("FATAL EXCEPTION")) {
+                fatalExceptionSeen = true;
+            } else if (fatalExceptionSeen && line.contains("Process: " + appPackage)) {
+                trip("Fatal exception in app process", appPackage);
+            } else if (line.contains("ANR in " + appPackage)) {
+                trip("ANR reported in logcat", appPackage);
+            } else if (line.contains("Fatal signal") && line.contains(appPackage)) {
+                trip("Native crash reported in logcat", appPackage);
+            }
+        }
+    }
+
+    private void remember(String line) {
+        if (recentLogcat.size() >= LOGCAT_CONTEXT_LINES) {
+            recentLogcat.removeFirst();
+        }
+        recentLogcat.addLast(line);
+    }
+
+    private void trip(String reason, String foregroundPackage) {
+        if (failureReason != null) {
+            return;
+        }
+        StringBuilder context = new StringBuilder();
+        context.append("Detected at: ").append(Instant.now()).append('\n');
+        context.append("Reason: ").append(reason).append('\n');
+        context.append("Foreground package: ").append(foregroundPackage).append('\n');
+        context.append("Expected package: ").append(appPackage).append('\n');
+        if (!recentLogcat.isEmpty()) {
+            context.append("Recent logcat:\n");
+            for (String line : recentLogcat) {
+                context.append(line).append('\n');
+            }
+        }
+
+        failureContext = context.toString();
+        failurePackage = foregroundPackage;
+        failureReason = reason;
+        logger.error("App health check failed: {} (foreground: {})", reason, foregroundPackage);
+    }
+
+    private static String findCrashDialogMarker(String pageSource) {
+        if (pageSource == null) {
+            return null;
+        }
+        for (String marker : CRASH_DIALOG_MARKERS) {
+            if (pageSource.contains(marker)) {
+                return marker;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAllowedForeground(String foregroundPackage) {
+        if (foregroundPackage == null) {
+            return false;
+        }
+        for (String allowed : ALLOWED_FOREGROUND_PACKAGES) {
+            if (allowed.equals(foregroundPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+package com.getgo.drivermanager;
+
+import com.getgo.utils.DriverCallGuard;
+import com.getgo.utils.LocatorProfiler;
+import com.getgo.utils.StepMetrics;
+import io.appium.java_client.MobileCommand;
+import io.appium.java_client.remote.AppiumCommandExecutor;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.Response;
+
+import java.net.URL;
+import java.util.Collection;
+
+/**
+ * TimedCommandExecutor is the Appium command executor with every round trip timed
+ * and counted for the calling thread (see StepMetrics), and checked against the
+ * driver call budgets of the methods that made it (see DriverCallGuard).
+ * Element lookups are also profiled per locator (see LocatorProfiler).
+ * Commands run on the thread that issued them, so the health monitor's own polling
+ * never shows up in a scenario's numbers.
+ */
+public class TimedCommandExecutor extends AppiumCommandExecutor {
+
+    /**
+     * Create an executor for a remote Appium server
+     * @param serverUrl Appium server URL
+     */
+    public TimedCommandExecutor(URL serverUrl) {
+        super(MobileCommand.commandRepository, serverUrl);
+    }
+
+    @Override
+    public Response execute(Command command) {
+        long start = System.nanoTime();
+        Response response = null;
+        try {
+            response = super.execute(command);
+            return response;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            StepMetrics.recordCommand(command.getName(), nanos);
+            // One stack walk serves both the budget check and the lookup's call site
+            String site = DriverCallGuard.recordCommand(command.getName());
+            if (LocatorProfiler.isLookup(command.getName())) {
+                LocatorProfiler.recordLookup(command.getName(), command.getParameters(), found(response), nanos, site);
+            }
+        }
+    }
+
+    /**
+     * A lookup hit when it succeeded and returned at least one element
+     */
+    private static boolean found(Response response) {
+        if (response == null || response.getValue() instanceof Throwable
+                || response.getState() != null && !ErrorCodes.SUCCESS_STRING.equals(response.getState())) {
+            return false;
+        }
+        return !(response.getValue() instanceof Collection) || !((Collection<?>) response.getValue()).isEmpty();
+    }
+}
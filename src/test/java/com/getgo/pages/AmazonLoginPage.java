@@ -35,8 +35,8 @@ public class AmazonLoginPage extends BasePage {
     public void clickAccountMenu() {
         logger.info("Clicking on account menu");
         click(accountMenuLocator);
-        waitForEitherElement(signInButtonLocator, meButtonLocator, 15);
-        logger.info("Account menu clicked");
+        By accountState = waitForFirstOf(15, signInButtonLocator, meButtonLocator);
+        logger.info("Account menu clicked ({})", accountState == meButtonLocator ? "logged in" : "logged out");
     }
     
     /**
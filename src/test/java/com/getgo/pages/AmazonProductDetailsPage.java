@@ -1,12 +1,17 @@
 package com.getgo.pages;
 
+import com.getgo.utils.FrameCapture;
 import com.getgo.utils.GestureUtil;
+import com.getgo.utils.RateLimitedLogger;
+import com.getgo.utils.ScreenshotWriter;
+import com.getgo.utils.TemplateLocator;
 import io.appium.java_client.AppiumBy;
 import io.appium.java_client.pagefactory.AndroidFindBy;
+import org.apache.logging.log4j.Level;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 
-import java.io.File;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -14,6 +19,9 @@ import java.util.List;
  */
 public class AmazonProductDetailsPage extends BasePage {
     
+    // Image index is polled while waiting for swipes, so keep its per-element logging bounded
+    private static final RateLimitedLogger imageIndexLog = RateLimitedLogger.of(logger, Level.DEBUG, 5, 10_000);
+    
     @AndroidFindBy(id = "com.amazon.mShop.android.shopping:id/add_to_cart_button")
     private WebElement addToCartButton;
     
@@ -45,7 +53,7 @@ public class AmazonProductDetailsPage extends BasePage {
     public boolean isProductDetailsPageDisplayed() {
         try {
             boolean displayed = isElementPresent(productTitleLocator);
-            logger.info("Product details page displayed: " + displayed);
+            logger.info("Product details page displayed: {}", displayed);
             return displayed;
         } catch (Exception e) {
             logger.error("Error verifying product details page", e);
@@ -101,7 +109,7 @@ public class AmazonProductDetailsPage extends BasePage {
             while (scrollAttempts < maxScrolls) {
                 // Check if price element is present by resource-id
                 if (isElementPresent(productPriceLocator)) {
-                    logger.info("Price element found by resource-id after " + scrollAttempts + " scroll(s)");
+                    logger.info("Price element found by resource-id after {} scroll(s)", scrollAttempts);
                     // Scroll to the element to ensure it's fully visible
                     WebElement priceLabelContainer = driver.findElement(productPriceLocator);
                     scrollToElement(priceLabelContainer, 2);
@@ -113,20 +121,20 @@ public class AmazonProductDetailsPage extends BasePage {
                     "new UiSelector().textMatches(\".*\\$.*\")"
                 );
                 if (isElementPresent(priceByTextLocator)) {
-                    logger.info("Price element found by text pattern after " + scrollAttempts + " scroll(s)");
+                    logger.info("Price element found by text pattern after {} scroll(s)", scrollAttempts);
                     WebElement priceElement = driver.findElement(priceByTextLocator);
                     scrollToElement(priceElement, 2);
                     return;
                 }
                 
                 // Scroll up to reveal more content
-                logger.info("Price element not found, scrolling up (attempt " + (scrollAttempts + 1) + ")");
+                logger.info("Price element not found, scrolling up (attempt {})", scrollAttempts + 1);
                 swipeUp();
                 waitFor(1);
                 scrollAttempts++;
             }
             
-            logger.warn("Price element not found after " + maxScrolls + " scroll attempts");
+            logger.warn("Price element not found after {} scroll attempts", maxScrolls);
         } catch (Exception e) {
             logger.error("Failed to scroll until price label", e);
             throw e;
@@ -176,7 +184,7 @@ public class AmazonProductDetailsPage extends BasePage {
             List<WebElement> productImageList = driver.findElements(productImageLocator);
             if (!productImageList.isEmpty()) {
                 org.openqa.selenium.Dimension size = productImageList.get(0).getSize();
-                logger.info("Product image size: " + size.getWidth() + "x" + size.getHeight());
+                logger.info("Product image size: {}x{}", size.getWidth(), size.getHeight());
                 return size;
             }
             logger.warn("No product image found");
@@ -196,7 +204,7 @@ public class AmazonProductDetailsPage extends BasePage {
             org.openqa.selenium.Dimension size = getProductImageSize();
             if (size != null) {
                 int area = size.getWidth() * size.getHeight();
-                logger.info("Product image area: " + area + " pixels");
+                logger.info("Product image area: {} pixels", area);
                 return area;
             }
             return 0;
@@ -212,25 +220,32 @@ public class AmazonProductDetailsPage extends BasePage {
      * @return true if screenshot was captured successfully
      */
     public boolean captureProductImage(String outputPath) {
+        byte[] screenshot = captureProductImage();
+        if (screenshot == null) {
+            return false;
+        }
+        ScreenshotWriter.submit(screenshot, Paths.get(outputPath));
+        logger.info("Captured product image: {}", outputPath);
+        return true;
+    }
+    
+    /**
+     * Capture the product image in memory, cropped locally from one full-screen capture
+     * @return PNG bytes of the product image, or null if it could not be captured
+     */
+    public byte[] captureProductImage() {
         try {
             List<WebElement> productImageList = driver.findElements(productImageLocator);
             
             if (!productImageList.isEmpty()) {
-                WebElement productImage = productImageList.get(0);
-                File screenshot = productImage.getScreenshotAs(org.openqa.selenium.OutputType.FILE);
-                
-                File outputFile = new File(outputPath);
-                org.apache.commons.io.FileUtils.copyFile(screenshot, outputFile);
-                
-                logger.info("Captured product image: " + outputPath);
-                return true;
+                return FrameCapture.take("product_detail_frame").crop(productImageList.get(0));
             } else {
                 logger.warn("Product image not found");
-                return false;
+                return null;
             }
         } catch (Exception e) {
             logger.error("Failed to capture product image", e);
-            return false;
+            return null;
         }
     }
     
@@ -246,19 +261,19 @@ public class AmazonProductDetailsPage extends BasePage {
             for (WebElement image : productImageList) {
                 try {
                     String resourceId = image.getAttribute("resource-id");
-                    logger.info("resourceId" + resourceId);
+                    imageIndexLog.log("Product image resource-id: {}", resourceId);
                     if (resourceId != null && resourceId.contains("image-block-product-image-")) {
                         // Extract index from resource-id like "image-block-product-image-0"
                         String[] parts = resourceId.split("-");
                         if (parts.length > 0) {
                             String indexStr = parts[parts.length - 1];
                             int index = Integer.parseInt(indexStr);
-                            logger.info("Current product image index: " + index + " (resource-id: " + resourceId + ")");
+                            logger.info("Current product image index: {} (resource-id: {})", index, resourceId);
                             return index;
                         }
                     }
                 } catch (Exception e) {
-                    logger.warn("Could not parse index from image element: " + e.getMessage());
+                    logger.warn("Could not parse index from image element: {}", e.getMessage());
                 }
             }
             
@@ -273,12 +288,21 @@ public class AmazonProductDetailsPage extends BasePage {
     
     /**
      * Swipe product image to the left (next image)
+     * Falls back to the product_image_row template when the carousel's resource id is not exposed.
      */
     public void swipeProductImageLeft() {
         try {
-            WebElement productImageRow = driver.findElement(productImageRowLocator);
+            List<WebElement> productImageRow = driver.findElements(productImageRowLocator);
+            if (productImageRow.isEmpty() && TemplateLocator.hasTemplate("product_image_row")) {
+                TemplateLocator.Match match = TemplateLocator.locate("product_image_row", null);
+                if (match != null) {
+                    swipeLeftInRect(match.getRect());
+                    logger.info("Swiped product image to the left (located by template at {})", match);
+                    return;
+                }
+            }
 
-            swipeLeftOnElement(productImageRow);
+            swipeLeftOnElement(productImageRow.isEmpty() ? driver.findElement(productImageRowLocator) : productImageRow.get(0));
             logger.info("Swiped product image to the left");
         } catch (Exception e) {
             logger.error("Failed to swipe product image", e);
@@ -1,12 +1,17 @@
 package com.getgo.pages;
 
+import com.getgo.utils.DriverCallBudget;
+import com.getgo.utils.FrameCapture;
+import com.getgo.utils.RateLimitedLogger;
+import com.getgo.utils.ScreenshotWriter;
 import io.appium.java_client.AppiumBy;
 import io.appium.java_client.pagefactory.AndroidFindBy;
+import org.apache.logging.log4j.Level;
 import org.openqa.selenium.By;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebElement;
 
-import java.io.File;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +20,11 @@ import java.util.List;
  */
 public class AmazonSearchResultsPage extends BasePage {
     
+    // Per-element loops log through these so long result lists don't flood the log
+    private static final RateLimitedLogger productCardLog = RateLimitedLogger.of(logger, Level.INFO, 5, 10_000);
+    private static final RateLimitedLogger ratingLog = RateLimitedLogger.of(logger, Level.INFO, 5, 10_000);
+    private static final RateLimitedLogger filterLog = RateLimitedLogger.of(logger, Level.INFO, 10, 10_000);
+    
     @AndroidFindBy(id = "com.amazon.mShop.android.shopping:id/rs_results_filter_bar")
     private WebElement filterBar;
     
@@ -26,6 +36,7 @@ public class AmazonSearchResultsPage extends BasePage {
     private By sortSpinnerLocator = By.id("com.amazon.mShop.android.shopping:id/rs_results_sort_spinner");
     private By searchContainerLocator = AppiumBy.androidUIAutomator("new UiSelector().resourceId(\"search\")");
     private By productTitlesLocator = By.id("com.amazon.mShop.android.shopping:id/item_title");
+    private By productThumbnailLocator = By.id("com.amazon.mShop.android.shopping:id/rs_results_image");
     private By filterButtonLocator = By.xpath("//*[contains(@text, 'Filter')]");
     private By suggestedFilterBar = AppiumBy.androidUIAutomator("new UiSelector().text(\"Global refinements\")");
     private By amazonsChoiceProductLocator = AppiumBy.androidUIAutomator("new UiSelector().className(\"android.view.ViewGroup\").childSelector(new UiSelector().description(\"Amazon's Choice\"))");
@@ -62,13 +73,13 @@ public class AmazonSearchResultsPage extends BasePage {
                 .count();
             
             if (productCount > 0) {
-                logger.info("Search results page displayed with " + productCount + " product view(s)");
+                logger.info("Search results page displayed with {} product view(s)", productCount);
                 return true;
             }
             
             // Fallback: check for filter bar
             boolean displayed = isElementPresent(filterBarLocator);
-            logger.info("Search results page displayed (via filter bar): " + displayed);
+            logger.info("Search results page displayed (via filter bar): {}", displayed);
             return displayed;
         } catch (Exception e) {
             logger.error("Error verifying search results page", e);
@@ -107,7 +118,7 @@ public class AmazonSearchResultsPage extends BasePage {
                     if ("true".equals(clickable) && contentDesc != null && !contentDesc.isEmpty() 
                         && !contentDesc.contains("filter") && !contentDesc.contains("Button")) {
                         productCards.add(view);
-                        logger.info("Found product card: {}", contentDesc.substring(0, Math.min(50, contentDesc.length())));
+                        productCardLog.log("Found product card: {}", abbreviate(contentDesc));
                     }
                 } catch (Exception e) {
                     continue;
@@ -121,7 +132,7 @@ public class AmazonSearchResultsPage extends BasePage {
                 WebElement firstProduct = productCards.get(0);
                 String productDesc = firstProduct.getAttribute("content-desc");
                 click(firstProduct);
-                logger.info("Clicked first product card: {}", productDesc.substring(0, Math.min(50, productDesc.length())));
+                logger.info("Clicked first product card: {}", abbreviate(productDesc));
                 waitFor(2);
             } else {
                 logger.error("No product cards found in search results");
@@ -159,6 +170,7 @@ public class AmazonSearchResultsPage extends BasePage {
      * Get number of products in results
      * @return Number of products
      */
+    @DriverCallBudget(60)
     public int getProductCount() {
         try {
             // Get the search container element
@@ -209,7 +221,7 @@ public class AmazonSearchResultsPage extends BasePage {
                 }
             }
             
-            logger.info("Product count: " + count);
+            logger.info("Product count: {}", count);
             return count;
         } catch (Exception e) {
             logger.error("Failed to get product count", e);
@@ -223,7 +235,7 @@ public class AmazonSearchResultsPage extends BasePage {
     public void scrollResults() {
         swipeUp();
         logger.info("Scrolled through search results");
-        waitFor(1);
+        waitForScreenToSettle(1);
     }
 
     /**
@@ -233,6 +245,7 @@ public class AmazonSearchResultsPage extends BasePage {
      * Get visible filter items in the suggested filter bar
      * @return List of visible filter text/content-desc
      */
+    @DriverCallBudget(40)
     public List<String> getVisibleSuggestedFilters() {
         try {
             WebElement suggestedFilterBarElement = driver.findElement(suggestedFilterBar);
@@ -247,7 +260,7 @@ public class AmazonSearchResultsPage extends BasePage {
                         
                         if (filterLabel != null) {
                             visibleFilters.add(filterLabel);
-                            logger.info("Found visible filter: " + filterLabel);
+                            filterLog.log("Found visible filter: {}", filterLabel);
                         }
                     }
                 } catch (Exception e) {
@@ -256,7 +269,7 @@ public class AmazonSearchResultsPage extends BasePage {
                 }
             }
             
-            logger.info("Total visible filters found: " + visibleFilters.size());
+            logger.info("Total visible filters found: {}", visibleFilters.size());
             return visibleFilters;
             
         } catch (Exception e) {
@@ -271,6 +284,21 @@ public class AmazonSearchResultsPage extends BasePage {
      * @return true if screenshot was captured successfully
      */
     public boolean captureAmazonsChoiceProductImage(String outputPath) {
+        byte[] screenshot = captureAmazonsChoiceProductImage();
+        if (screenshot == null) {
+            return false;
+        }
+        ScreenshotWriter.submit(screenshot, Paths.get(outputPath));
+        logger.info("Captured Amazon's Choice product image: {}", outputPath);
+        return true;
+    }
+    
+    /**
+     * Capture Amazon's Choice product image from search results in memory,
+     * cropped locally from one full-screen capture
+     * @return PNG bytes of the product image, or null if it could not be captured
+     */
+    public byte[] captureAmazonsChoiceProductImage() {
         try {
             if (isElementPresent(amazonsChoiceProductLocator)) {
                 // Find the product card container that has Amazon's Choice badge
@@ -290,19 +318,30 @@ public class AmazonSearchResultsPage extends BasePage {
                     logger.info("Capturing entire product card as no ImageView found");
                 }
                 
-                File screenshot = imageToCapture.getScreenshotAs(org.openqa.selenium.OutputType.FILE);
-                File outputFile = new File(outputPath);
-                org.apache.commons.io.FileUtils.copyFile(screenshot, outputFile);
-                
-                logger.info("Captured Amazon's Choice product image: " + outputPath);
-                return true;
+                return FrameCapture.take("search_result_frame").crop(imageToCapture);
             } else {
                 logger.warn("Amazon's Choice product not found in search results");
-                return false;
+                return null;
             }
         } catch (Exception e) {
             logger.error("Failed to capture Amazon's Choice product image", e);
-            return false;
+            return null;
+        }
+    }
+    
+    /**
+     * Capture every product thumbnail visible on the results screen
+     * One screenshot and one page source for all thumbnails, cropped by their page-source bounds.
+     * @return PNG bytes per visible thumbnail, top to bottom; empty if none could be captured
+     */
+    public List<byte[]> captureAllProductThumbnails() {
+        try {
+            List<byte[]> thumbnails = FrameCapture.takeWithPageSource("search_results_frame").cropAll(productThumbnailLocator);
+            logger.info("Captured {} product thumbnails", thumbnails.size());
+            return thumbnails;
+        } catch (Exception e) {
+            logger.error("Failed to capture product thumbnails", e);
+            return new ArrayList<>();
         }
     }
     
@@ -321,8 +360,8 @@ public class AmazonSearchResultsPage extends BasePage {
                 WebElement fourStarFilter = driver.findElement(fourStarFilterLocator);
                 String filterText = fourStarFilter.getText();
                 click(fourStarFilter);
-                logger.info("Applied 4 star filter: " + filterText);
-                waitFor(2); // Wait for results to refresh
+                logger.info("Applied 4 star filter: {}", filterText);
+                waitForScreenToSettle(2); // Wait for results to refresh
             } else {
                 logger.warn("4 star filter not found in suggested filters");
             }
@@ -337,6 +376,7 @@ public class AmazonSearchResultsPage extends BasePage {
      * Checks products that have star rating text displayed
      * @return true if all products with visible ratings have >= 4.0 stars
      */
+    @DriverCallBudget(40)
     public boolean verifyAllProductsHaveMinStars(double minStars) {
         try {
             // Find all TextView elements with text containing "out of 5 stars"
@@ -345,7 +385,7 @@ public class AmazonSearchResultsPage extends BasePage {
             );
             
             List<WebElement> ratingElements = driver.findElements(starRatingLocator);
-            logger.info("Found " + ratingElements.size() + " products with star ratings");
+            logger.info("Found {} products with star ratings", ratingElements.size());
             
             if (ratingElements.isEmpty()) {
                 logger.warn("No products with star ratings found");
@@ -358,7 +398,7 @@ public class AmazonSearchResultsPage extends BasePage {
             for (WebElement ratingElement : ratingElements) {
                 try {
                     String ratingText = ratingElement.getText();
-                    logger.info("Checking rating: " + ratingText);
+                    ratingLog.log("Checking rating: {}", ratingText);
                     
                     // Extract rating number (e.g., "4.6 out of 5 stars" -> 4.6)
                     String[] parts = ratingText.split(" ");
@@ -368,18 +408,18 @@ public class AmazonSearchResultsPage extends BasePage {
                         
                         if (rating >= minStars) {
                             validProducts++;
-                            logger.info("✓ Product rating " + rating + " is >= " + minStars);
+                            ratingLog.log("✓ Product rating {} is >= {}", rating, minStars);
                         } else {
                             invalidProducts++;
-                            logger.error("✗ Product rating " + rating + " is < " + minStars);
+                            logger.error("✗ Product rating {} is < {}", rating, minStars);
                         }
                     }
                 } catch (Exception e) {
-                    logger.warn("Could not parse rating from element: " + e.getMessage());
+                    logger.warn("Could not parse rating from element: {}", e.getMessage());
                 }
             }
             
-            logger.info("Verification complete - Valid: " + validProducts + ", Invalid: " + invalidProducts);
+            logger.info("Verification complete - Valid: {}, Invalid: {}", validProducts, invalidProducts);
             
             return invalidProducts == 0 && validProducts > 0;
             
@@ -398,7 +438,7 @@ public class AmazonSearchResultsPage extends BasePage {
             WebElement suggestedFilterBarElement = driver.findElement(suggestedFilterBar);
             
             for (int i = 1; i <= 3; i++) {
-                logger.info("Performing swipe left #" + i);
+                logger.info("Performing swipe left #{}", i);
                 swipeLeftOnElement(suggestedFilterBarElement);
                 waitFor(1); // Wait a moment between swipes
             }
@@ -417,18 +457,18 @@ public class AmazonSearchResultsPage extends BasePage {
      */
     public boolean verifyFiltersChangedAfterSwipe(List<String> filtersBeforeSwipe) {
         try {
-            // Wait a moment for UI to stabilize after swipe
-            waitFor(1);
+            // Wait for the UI to stabilize after the swipe
+            waitForScreenToSettle(1);
             
             List<String> filtersAfterSwipe = getVisibleSuggestedFilters();
             
-            logger.info("Filters before swipe: " + filtersBeforeSwipe);
-            logger.info("Filters after swipe: " + filtersAfterSwipe);
+            logger.info("Filters before swipe: {}", filtersBeforeSwipe);
+            logger.info("Filters after swipe: {}", filtersAfterSwipe);
             
             // Check if at least one filter from before is no longer visible
             for (String filterBefore : filtersBeforeSwipe) {
                 if (!filtersAfterSwipe.contains(filterBefore)) {
-                    logger.info("Filter '" + filterBefore + "' is no longer visible after swipe");
+                    logger.info("Filter '{}' is no longer visible after swipe", filterBefore);
                     return true;
                 }
             }
@@ -436,7 +476,7 @@ public class AmazonSearchResultsPage extends BasePage {
             // Also check if new filters appeared (were not visible before)
             for (String filterAfter : filtersAfterSwipe) {
                 if (!filtersBeforeSwipe.contains(filterAfter)) {
-                    logger.info("New filter '" + filterAfter + "' is now visible after swipe");
+                    logger.info("New filter '{}' is now visible after swipe", filterAfter);
                     return true;
                 }
             }
@@ -449,4 +489,11 @@ public class AmazonSearchResultsPage extends BasePage {
             return false;
         }
     }
+    
+    /**
+     * Shorten long content descriptions for logging
+     */
+    private static String abbreviate(String text) {
+        return text == null ? null : text.substring(0, Math.min(50, text.length()));
+    }
 }
@@ -1,14 +1,17 @@
 package com.getgo.pages;
 
+import com.getgo.config.CapabilitiesConfig;
 import com.getgo.drivermanager.DriverManager;
 import com.getgo.utils.ElementUtil;
 import com.getgo.utils.GestureUtil;
+import com.getgo.utils.TemplateLocator;
 import com.getgo.utils.WaitUtil;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.pagefactory.AppiumFieldDecorator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.PageFactory;
 
@@ -25,7 +28,9 @@ public class BasePage {
     
     public BasePage() {
         this.driver = DriverManager.getDriver();
-        PageFactory.initElements(new AppiumFieldDecorator(driver, Duration.ofSeconds(10)), this);
+        int pageFactoryWait = CapabilitiesConfig.getIntProperty("page.factory.wait",
+            CapabilitiesConfig.getTimeouts().getImplicitWait());
+        PageFactory.initElements(new AppiumFieldDecorator(driver, Duration.ofSeconds(pageFactoryWait)), this);
     }
     
     /**
@@ -79,6 +84,14 @@ public class BasePage {
         WaitUtil.waitForEitherElement(locator1, locator2, timeout);
     }
     
+    /**
+     * Wait until any of several elements is present
+     * @return The locator that matched
+     */
+    public By waitForFirstOf(int timeout, By... locators) {
+        return WaitUtil.waitForFirstOf(timeout, locators);
+    }
+    
     /**
      * Scroll to element
      */
@@ -116,6 +129,29 @@ public class BasePage {
         GestureUtil.swipeLeftOnElement(element);
     }
     
+    /**
+     * Swipe left across a screen region
+     * @param rect Region in screen pixels
+     */
+    public void swipeLeftInRect(Rectangle rect) {
+        GestureUtil.swipeLeftInRect(rect);
+    }
+    
+    /**
+     * Tap an element located by image template
+     * @param templateName Template name (file name without .png)
+     * @return true if the template was found and tapped
+     */
+    public boolean tapTemplate(String templateName) {
+        TemplateLocator.Match match = TemplateLocator.locate(templateName, null);
+        if (match == null) {
+            logger.warn("Template {} not found on screen", templateName);
+            return false;
+        }
+        GestureUtil.tap(match.getRect());
+        return true;
+    }
+    
     /**
      * Wait for specific time
      */
@@ -123,6 +159,14 @@ public class BasePage {
         WaitUtil.waitFor(seconds);
     }
     
+    /**
+     * Wait until the screen stops moving, at most the given time
+     * @return true if the screen stream saw it settle
+     */
+    public boolean waitForScreenToSettle(int maxSeconds) {
+        return WaitUtil.waitForScreenToSettle(maxSeconds);
+    }
+    
     /**
      * Navigate back
      */
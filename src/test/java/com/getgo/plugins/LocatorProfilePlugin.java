@@ -0,0 +1,150 @@
+package com.getgo.plugins;
+
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.utils.LocatorProfiler;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestRunFinished;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LocatorProfilePlugin writes the run's locator profile (see LocatorProfiler) when the
+ * run finishes: every locator ranked by total lookup time, with its latency
+ * distribution, hit/miss counts, time lost to misses, call sites and a cheaper
+ * strategy where one is obvious. The summary next to the JSON lists the
+ * locator.profile.top most expensive locators and the time per strategy.
+ * Register as "com.getgo.plugins.LocatorProfilePlugin:target/cucumber-reports/locator-profile.json".
+ */
+public class LocatorProfilePlugin implements ConcurrentEventListener {
+
+    private static final Logger logger = LogManager.getLogger(LocatorProfilePlugin.class);
+
+    private static final int TOP = CapabilitiesConfig.getIntProperty("locator.profile.top", 20);
+
+    private final Path output;
+
+    public LocatorProfilePlugin() {
+        this(new File("target/cucumber-reports/locator-profile.json"));
+    }
+
+    public LocatorProfilePlugin(File output) {
+        this.output = output.toPath();
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunFinished.class, event -> write());
+    }
+
+    private void write() {
+        List<Map<String, Object>> locators = new ArrayList<>();
+        for (LocatorProfiler.Profile profile : LocatorProfiler.getProfiles()) {
+            locators.add(record(profile));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("strategies", strategies(locators));
+        report.put("locators", locators);
+        try {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                new Json().newOutput(writer).setPrettyPrint(false).write(report);
+            }
+            Path summaryFile = output.resolveSibling(output.getFileName().toString().replaceFirst("\\.json$", "") + "-summary.txt");
+            String summary = summary(report);
+            Files.write(summaryFile, summary.getBytes(StandardCharsets.UTF_8));
+            logger.info("Locator profile written to {}{}{}", output, System.lineSeparator(), summary);
+        } catch (IOException e) {
+            logger.warn("Could not write locator profile to {}: {}", output, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> record(LocatorProfiler.Profile profile) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("strategy", profile.getStrategy());
+        record.put("selector", profile.getSelector());
+        record.put("withinElement", profile.isWithinElement());
+        record.put("lookups", profile.getLookups());
+        record.put("hits", profile.getHits());
+        record.put("misses", profile.getMisses());
+        record.put("totalMs", millis(profile.getTotalNanos()));
+        record.put("missMs", millis(profile.getMissNanos()));
+        record.put("p50Ms", millis(profile.getPercentileNanos(50)));
+        record.put("p90Ms", millis(profile.getPercentileNanos(90)));
+        record.put("maxMs", millis(profile.getMaxNanos()));
+        record.put("sites", profile.getSites());
+        String suggestion = profile.getSuggestion();
+        if (suggestion != null) {
+            record.put("suggestion", suggestion);
+        }
+        return record;
+    }
+
+    /**
+     * Totals per strategy, most total time first, to see what XPath or regex selectors cost the run as a whole
+     */
+    private static Map<String, Map<String, Long>> strategies(List<Map<String, Object>> locators) {
+        Map<String, Map<String, Long>> strategies = new HashMap<>();
+        for (Map<String, Object> locator : locators) {
+            Map<String, Long> totals = strategies.computeIfAbsent((String) locator.get("strategy"), key -> {
+                Map<String, Long> created = new LinkedHashMap<>();
+                created.put("locators", 0L);
+                created.put("lookups", 0L);
+                created.put("misses", 0L);
+                created.put("totalMs", 0L);
+                created.put("missMs", 0L);
+                return created;
+            });
+            totals.merge("locators", 1L, Long::sum);
+            for (String key : new String[] {"lookups", "misses", "totalMs", "missMs"}) {
+                totals.merge(key, (Long) locator.get(key), Long::sum);
+            }
+        }
+        Map<String, Map<String, Long>> ranked = new LinkedHashMap<>();
+        strategies.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().get("totalMs"), a.getValue().get("totalMs")))
+            .forEach(entry -> ranked.put(entry.getKey(), entry.getValue()));
+        return ranked;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String summary(Map<String, Object> report) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-16s %8s %8s %8s %8s%n", "strategy", "total ms", "lookups", "misses", "miss ms"));
+        ((Map<String, Map<String, Long>>) report.get("strategies")).forEach((strategy, totals) ->
+            text.append(String.format("%-16s %8d %8d %8d %8d%n", strategy, totals.get("totalMs"), totals.get("lookups"),
+                totals.get("misses"), totals.get("missMs"))));
+        text.append(String.format("%n%8s %7s %6s %7s %7s %7s %7s  %-12s %s%n",
+            "total ms", "lookups", "hit %", "p50", "p90", "max", "miss ms", "strategy", "locator"));
+        List<Map<String, Object>> locators = (List<Map<String, Object>>) report.get("locators");
+        for (Map<String, Object> locator : locators.subList(0, Math.min(TOP, locators.size()))) {
+            long lookups = (Long) locator.get("lookups");
+            text.append(String.format("%8d %7d %6.1f %7d %7d %7d %7d  %-12s %s%s%n", locator.get("totalMs"), lookups,
+                lookups == 0 ? 0.0 : 100.0 * (Long) locator.get("hits") / lookups, locator.get("p50Ms"),
+                locator.get("p90Ms"), locator.get("maxMs"), locator.get("missMs"), locator.get("strategy"),
+                (Boolean) locator.get("withinElement") ? "(in element) " : "", locator.get("selector")));
+            text.append(String.format("%58s used by %s%n", "", String.join(", ", (List<String>) locator.get("sites"))));
+            if (locator.containsKey("suggestion")) {
+                text.append(String.format("%58s try: %s%n", "", locator.get("suggestion")));
+            }
+        }
+        return text.toString();
+    }
+
+    private static long millis(long nanos) {
+        return Math.round(nanos / 1_000_000.0);
+    }
+}
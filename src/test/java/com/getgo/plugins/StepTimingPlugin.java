@@ -0,0 +1,192 @@
+package com.getgo.plugins;
+
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.utils.StepMetrics;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * StepTimingPlugin records where the time goes inside every step and hook:
+ * - Wall time (as measured by Cucumber)
+ * - Driver round-trip time and command count per command name (TimedCommandExecutor)
+ * - Intentional sleep and poll time (wait utilities)
+ * - Local compute: the rest
+ * At the end of the run it writes one compact JSON file and a summary of the
+ * step.timing.top slowest steps (by total time across the run) next to it.
+ * Register as "com.getgo.plugins.StepTimingPlugin:target/cucumber-reports/step-timings.json".
+ */
+public class StepTimingPlugin implements ConcurrentEventListener {
+
+    private static final Logger logger = LogManager.getLogger(StepTimingPlugin.class);
+
+    private static final int TOP = CapabilitiesConfig.getIntProperty("step.timing.top", 10);
+
+    private final Path output;
+    private final Queue<Map<String, Object>> records = new ConcurrentLinkedQueue<>();
+    // Cucumber publishes events of concurrent listeners on the thread running the scenario
+    private final ThreadLocal<String> scenario = new ThreadLocal<>();
+    private final ThreadLocal<StepMetrics.Snapshot> stepStart = new ThreadLocal<>();
+
+    public StepTimingPlugin() {
+        this(new File("target/cucumber-reports/step-timings.json"));
+    }
+
+    public StepTimingPlugin(File output) {
+        this.output = output.toPath();
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseStarted.class, this::onTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, event -> stepStart.set(StepMetrics.snapshot()));
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> write());
+    }
+
+    private void onTestCaseStarted(TestCaseStarted event) {
+        scenario.set(event.getTestCase().getName() + ":" + event.getTestCase().getLocation().getLine());
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        StepMetrics.Snapshot start = stepStart.get();
+        if (start == null) {
+            return;
+        }
+        StepMetrics.Snapshot step = StepMetrics.snapshot().since(start);
+        stepStart.remove();
+
+        long wallNanos = event.getResult().getDuration().toNanos();
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("scenario", scenario.get());
+        record.put("step", label(event.getTestStep()));
+        record.put("hook", event.getTestStep() instanceof HookTestStep);
+        record.put("status", event.getResult().getStatus().name());
+        record.put("wallMs", millis(wallNanos));
+        record.put("driverMs", millis(step.getDriverNanos()));
+        record.put("sleepMs", millis(step.getSleepNanos()));
+        record.put("computeMs", millis(Math.max(0, wallNanos - step.getDriverNanos() - step.getSleepNanos())));
+        record.put("commands", step.getCommands());
+        record.put("commandCounts", new TreeMap<>(step.getCommandCounts()));
+        records.add(record);
+    }
+
+    private static String label(TestStep testStep) {
+        if (testStep instanceof PickleStepTestStep) {
+            // Without the keyword, so "Given x" and "And x" aggregate together
+            return ((PickleStepTestStep) testStep).getStep().getText();
+        }
+        if (testStep instanceof HookTestStep) {
+            // "com.getgo.stepdefinitions.AmazonShoppingSteps.setUp(io.cucumber.java.Scenario)" -> "AmazonShoppingSteps.setUp"
+            String location = testStep.getCodeLocation();
+            int paren = location.indexOf('(');
+            String method = paren > 0 ? location.substring(0, paren) : location;
+            int classDot = method.lastIndexOf('.', method.lastIndexOf('.') - 1);
+            return "@" + ((HookTestStep) testStep).getHookType() + " " + method.substring(classDot + 1);
+        }
+        return testStep.getCodeLocation();
+    }
+
+    private void write() {
+        List<Map<String, Object>> steps = new ArrayList<>(records);
+        List<Map<String, Object>> slowest = slowest(steps);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("totals", totals(steps));
+        report.put("slowest", slowest);
+        report.put("steps", steps);
+        try {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                new Json().newOutput(writer).setPrettyPrint(false).write(report);
+            }
+            Path summaryFile = output.resolveSibling(output.getFileName().toString().replaceFirst("\\.json$", "") + "-summary.txt");
+            String summary = summary(report);
+            Files.write(summaryFile, summary.getBytes(StandardCharsets.UTF_8));
+            logger.info("Step timings written to {}{}{}", output, System.lineSeparator(), summary);
+        } catch (IOException e) {
+            logger.warn("Could not write step timings to {}: {}", output, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> totals(List<Map<String, Object>> steps) {
+        Map<String, Object> totals = new LinkedHashMap<>();
+        for (String key : new String[] {"wallMs", "driverMs", "sleepMs", "computeMs", "commands"}) {
+            totals.put(key, steps.stream().mapToLong(step -> (Long) step.get(key)).sum());
+        }
+        totals.put("steps", steps.size());
+        return totals;
+    }
+
+    /**
+     * Aggregate by step text and rank by total wall time across the run
+     */
+    private static List<Map<String, Object>> slowest(List<Map<String, Object>> steps) {
+        Map<String, Map<String, Object>> byStep = new LinkedHashMap<>();
+        for (Map<String, Object> step : steps) {
+            Map<String, Object> aggregate = byStep.computeIfAbsent((String) step.get("step"), key -> {
+                Map<String, Object> created = new LinkedHashMap<>();
+                created.put("step", key);
+                created.put("count", 0L);
+                created.put("wallMs", 0L);
+                created.put("maxWallMs", 0L);
+                created.put("driverMs", 0L);
+                created.put("sleepMs", 0L);
+                created.put("computeMs", 0L);
+                created.put("commands", 0L);
+                return created;
+            });
+            aggregate.merge("count", 1L, (a, b) -> (Long) a + (Long) b);
+            aggregate.merge("maxWallMs", step.get("wallMs"), (a, b) -> Math.max((Long) a, (Long) b));
+            for (String key : new String[] {"wallMs", "driverMs", "sleepMs", "computeMs", "commands"}) {
+                aggregate.merge(key, step.get(key), (a, b) -> (Long) a + (Long) b);
+            }
+        }
+        List<Map<String, Object>> ranked = new ArrayList<>(byStep.values());
+        ranked.sort((a, b) -> Long.compare((Long) b.get("wallMs"), (Long) a.get("wallMs")));
+        return ranked.subList(0, Math.min(TOP, ranked.size()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String summary(Map<String, Object> report) {
+        Map<String, Object> totals = (Map<String, Object>) report.get("totals");
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d steps: %d ms wall = %d ms driver (%d commands) + %d ms sleep + %d ms compute%n",
+            totals.get("steps"), totals.get("wallMs"), totals.get("driverMs"), totals.get("commands"),
+            totals.get("sleepMs"), totals.get("computeMs")));
+        text.append(String.format("%-8s %5s %8s %8s %8s %8s %6s  %s%n",
+            "total ms", "runs", "max ms", "driver", "sleep", "compute", "cmds", "step"));
+        for (Map<String, Object> step : (List<Map<String, Object>>) report.get("slowest")) {
+            text.append(String.format("%8d %5d %8d %8d %8d %8d %6d  %s%n", step.get("wallMs"), step.get("count"),
+                step.get("maxWallMs"), step.get("driverMs"), step.get("sleepMs"), step.get("computeMs"),
+                step.get("commands"), step.get("step")));
+        }
+        return text.toString();
+    }
+
+    private static long millis(long nanos) {
+        return Math.round(nanos / 1_000_000.0);
+    }
+}
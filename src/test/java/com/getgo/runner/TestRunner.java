@@ -16,11 +16,13 @@ import org.junit.runner.RunWith;
         "pretty",
         "html:target/cucumber-reports/cucumber-html-report.html",
         "json:target/cucumber-reports/cucumber.json",
-        "junit:target/cucumber-reports/cucumber.xml"
+        "junit:target/cucumber-reports/cucumber.xml",
+        "com.getgo.plugins.StepTimingPlugin:target/cucumber-reports/step-timings.json",
+        "com.getgo.plugins.LocatorProfilePlugin:target/cucumber-reports/locator-profile.json"
     },
     monochrome = true,
     dryRun = false,
-    tags = "@AmazonShopping"
+    tags = "@AmazonShopping and not @VisualBaseline"
 )
 public class TestRunner {
     // This class will remain empty, it is used only as a holder for the annotations
@@ -16,11 +16,13 @@ import org.testng.annotations.DataProvider;
         "html:target/cucumber-reports/cucumber-html-report.html",
         "json:target/cucumber-reports/cucumber.json",
         "junit:target/cucumber-reports/cucumber.xml",
+        "com.getgo.plugins.StepTimingPlugin:target/cucumber-reports/step-timings.json",
+        "com.getgo.plugins.LocatorProfilePlugin:target/cucumber-reports/locator-profile.json",
         "com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter:"
     },
     monochrome = true,
     dryRun = false,
-    tags = "@AmazonShopping"
+    tags = "@AmazonShopping and not @VisualBaseline"
 )
 public class TestRunnerTestNG extends AbstractTestNGCucumberTests {
     
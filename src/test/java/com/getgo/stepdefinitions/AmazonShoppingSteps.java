@@ -1,27 +1,44 @@
 package com.getgo.stepdefinitions;
 
 import com.getgo.config.CapabilitiesConfig;
+import com.getgo.drivermanager.AppCrashedException;
 import com.getgo.drivermanager.DriverManager;
+import com.getgo.drivermanager.SessionHealthMonitor;
 import com.getgo.pages.AmazonHomePage;
 import com.getgo.pages.AmazonLoginPage;
 import com.getgo.pages.AmazonProductDetailsPage;
 import com.getgo.pages.AmazonSearchResultsPage;
-import com.getgo.utils.ElementUtil;
+import com.getgo.utils.AdaptiveTimeouts;
+import com.getgo.utils.ArtifactRingBuffer;
+import com.getgo.utils.ComparisonRegion;
+import com.getgo.utils.ComparisonResult;
+import com.getgo.utils.DiffReporter;
+import com.getgo.utils.DriverCallGuard;
+import com.getgo.utils.IdleClock;
 import com.getgo.utils.ImageComparisonUtil;
+import com.getgo.utils.MjpegFrameSource;
+import com.getgo.utils.ScreenshotStore;
+import com.getgo.utils.ScreenshotWriter;
+import com.getgo.utils.VisualBaselineStore;
+import com.getgo.utils.WaitEngine;
 import io.appium.java_client.android.AndroidDriver;
 import io.cucumber.java.After;
+import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
+import io.cucumber.java.BeforeStep;
+import io.cucumber.java.Scenario;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
-import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,12 +57,18 @@ public class AmazonShoppingSteps {
     private AmazonProductDetailsPage productDetailsPage;
     private AmazonLoginPage loginPage;
     
-    private Map<String, String> screenshotMap = new HashMap<>();
+    private Map<String, byte[]> screenshotMap = new HashMap<>();
     
     @Before(order = 1)
-    public void setUp() {
+    public void setUp(Scenario scenario) {
+        // Route this thread's log events to logs/scenarios/<scenario>.log
+        ThreadContext.put("scenario", scenarioLogName(scenario));
         try {
             logger.info("Setting up test execution");
+            WaitEngine.resetScenarioMetrics();
+            IdleClock.startScenario();
+            DriverCallGuard.startScenario();
+            ArtifactRingBuffer.clear();
             
             // Load capabilities
             Properties props = CapabilitiesConfig.loadProperties();
@@ -60,6 +83,12 @@ public class AmazonShoppingSteps {
             // Force restart app to ensure clean state
             restartApp();
             
+            // Watch for crashes/ANRs so waits abort instead of timing out
+            SessionHealthMonitor.start(DriverManager.getDriver(), props.getProperty("app.package"));
+            
+            // Screen stream for cheap visual polling (only if mjpeg.enabled)
+            MjpegFrameSource.start(DriverManager.getDriver());
+            
             // Initialize page objects
             homePage = new AmazonHomePage();
             searchResultsPage = new AmazonSearchResultsPage();
@@ -67,7 +96,7 @@ public class AmazonShoppingSteps {
             loginPage = new AmazonLoginPage();
             
             // Wait for app to load completely
-            Thread.sleep(3000);
+            IdleClock.sleep(3000);
             
             logger.info("Test setup completed successfully");
         } catch (Exception e) {
@@ -96,23 +125,85 @@ public class AmazonShoppingSteps {
         }
     }
     
+    @BeforeStep
+    public void startDriverCallBudget(Scenario scenario) {
+        DriverCallGuard.startStep(scenario.getSourceTagNames());
+    }
+    
+    @AfterStep
+    public void checkDriverCallBudget(Scenario scenario) {
+        // @DriverCallBudget methods and @driverCallBudget=N scenarios that made too many round trips
+        List<String> violations = DriverCallGuard.finishStep();
+        if (!violations.isEmpty()) {
+            scenario.attach(String.join(System.lineSeparator(), violations), "text/plain", "driver_call_budget");
+        }
+        DriverCallGuard.enforceBudget(violations);
+    }
+    
+    @AfterStep
+    public void failFastOnAppCrash() {
+        // Page objects often swallow exceptions and return false, so surface the crash here
+        AppCrashedException failure = SessionHealthMonitor.getFailure();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
     @After
-    public void tearDown() {
+    public void tearDown(Scenario scenario) {
+        IdleClock.Report idleReport = null;
         try {
             logger.info("Tearing down test execution");
             
-            // Take screenshot on failure (optional)
-            if (DriverManager.isDriverInitialized()) {
-                ElementUtil.takeScreenshot("test_end");
+            // Attach crash context so the failure is self-explanatory in the report
+            AppCrashedException failure = SessionHealthMonitor.getFailure();
+            if (failure != null) {
+                scenario.attach(failure.getCrashContext(), "text/plain", "app-crash-context");
+            }
+            SessionHealthMonitor.stop();
+            MjpegFrameSource.stop();
+            
+            // Persist what this scenario learned about locator timings
+            AdaptiveTimeouts.save();
+            logger.info("Wait metrics for scenario: {}", WaitEngine.getScenarioMetrics());
+            // Where this scenario slept or polled, per page-object method
+            idleReport = IdleClock.finishScenario();
+            scenario.attach(idleReport.toString(), "text/plain", "idle_time");
+            
+            // Final state is only worth two driver round trips when the scenario failed
+            if (scenario.isFailed() && DriverManager.isDriverInitialized()) {
+                byte[] finalScreen = ArtifactRingBuffer.captureScreenshot("test_end");
+                ArtifactRingBuffer.capturePageSource("test_end");
+                scenario.attach(finalScreen, "image/png", "test_end");
+            }
+            // Comparison reports queued by image steps (which ones depends on image.report.mode)
+            for (DiffReporter.Report report : DiffReporter.collect()) {
+                if (report.getDiffImage() != null) {
+                    scenario.attach(report.getDiffImage(), "image/png", report.getName());
+                }
+                scenario.attach(report.getSummary(), "text/plain", report.getName() + "_summary");
             }
             
+            if (scenario.isFailed()) {
+                ArtifactRingBuffer.flush(scenarioLogName(scenario));
+                ScreenshotStore.save();
+            }
+            ArtifactRingBuffer.clear();
+            
             // Quit driver
             DriverManager.quitDriver();
             
+            // Make sure this scenario's screenshots are on disk before the next one starts
+            ScreenshotWriter.flush();
+            
             logger.info("Test teardown completed successfully");
         } catch (Exception e) {
             logger.error("Error during teardown", e);
+        } finally {
+            ThreadContext.remove("scenario");
         }
+        // After cleanup, so an exceeded budget never leaves the driver running
+        IdleClock.enforceBudget(idleReport);
     }
     
     // Given Steps
@@ -127,7 +218,7 @@ public class AmazonShoppingSteps {
     public void iAmOnTheHomePage() {
         logger.info("Verifying home page is displayed");
         try {
-            Thread.sleep(2000);
+            IdleClock.sleep(2000);
             // Skip sign-in prompts if any
             handleInitialPopups();
             logger.info("On Amazon home page");
@@ -244,16 +335,11 @@ public class AmazonShoppingSteps {
             
             // Wait for image index to change (swipe animation to complete)
             final int initialIndex = imageIndexBeforeSwipe;
-            org.openqa.selenium.support.ui.WebDriverWait wait = new org.openqa.selenium.support.ui.WebDriverWait(
-                DriverManager.getDriver(), 
-                java.time.Duration.ofSeconds(5)
-            );
-            
-            wait.until(driver -> {
+            WaitEngine.until(driver -> {
                 int currentIndex = productDetailsPage.getCurrentProductImageIndex();
-                logger.info("Waiting for index change... Current: " + currentIndex + ", Expected to be different from: " + initialIndex);
+                logger.debug("Waiting for index change... Current: {}, Expected to be different from: {}", currentIndex, initialIndex);
                 return currentIndex != initialIndex;
-            });
+            }, 5000, "product image index change");
             
             // Capture index after swipe (swipe is now complete)
             imageIndexAfterSwipe = productDetailsPage.getCurrentProductImageIndex();
@@ -285,9 +371,9 @@ public class AmazonShoppingSteps {
     // Store filters before swipe for verification
     private List<String> filtersBeforeSwipe;
     
-    // Store image paths for comparison
-    private String searchResultImagePath;
-    private String productDetailImagePath;
+    // Store captured images for comparison
+    private byte[] searchResultImage;
+    private byte[] productDetailImage;
     
     @When("I apply the {string} filter")
     public void iApplyTheFilter(String filterName) {
@@ -358,20 +444,12 @@ public class AmazonShoppingSteps {
     public void iCaptureTheProductImageFromSearchResults() {
         logger.info("Capturing product image from search results");
         try {
-            // Create screenshots directory if it doesn't exist
-            File screenshotsDir = new File("target/screenshots");
-            if (!screenshotsDir.exists()) {
-                screenshotsDir.mkdirs();
-            }
-            
-            // Generate unique filename with timestamp
-            long timestamp = System.currentTimeMillis();
-            searchResultImagePath = "target/screenshots/search_result_" + timestamp + ".png";
+            // Kept in memory; written to disk only if the scenario fails
+            searchResultImage = searchResultsPage.captureAmazonsChoiceProductImage();
             
-            boolean captured = searchResultsPage.captureAmazonsChoiceProductImage(searchResultImagePath);
-            
-            Assert.assertTrue("Product image should be captured from search results", captured);
-            logger.info("Captured search result image: " + searchResultImagePath);
+            Assert.assertNotNull("Product image should be captured from search results", searchResultImage);
+            ArtifactRingBuffer.put("search_result", searchResultImage, "png");
+            logger.info("Captured search result image ({} bytes)", searchResultImage.length);
         } catch (Exception e) {
             logger.error("Failed to capture product image from search results", e);
             throw e;
@@ -382,14 +460,12 @@ public class AmazonShoppingSteps {
     public void iCaptureTheProductImageFromProductDetails() {
         logger.info("Capturing product image from product details page");
         try {
-            // Generate unique filename with timestamp
-            long timestamp = System.currentTimeMillis();
-            productDetailImagePath = "target/screenshots/product_detail_" + timestamp + ".png";
-            
-            boolean captured = productDetailsPage.captureProductImage(productDetailImagePath);
+            // Kept in memory; written to disk only if the scenario fails
+            productDetailImage = productDetailsPage.captureProductImage();
             
-            Assert.assertTrue("Product image should be captured from product details", captured);
-            logger.info("Captured product detail image: " + productDetailImagePath);
+            Assert.assertNotNull("Product image should be captured from product details", productDetailImage);
+            ArtifactRingBuffer.put("product_detail", productDetailImage, "png");
+            logger.info("Captured product detail image ({} bytes)", productDetailImage.length);
         } catch (Exception e) {
             logger.error("Failed to capture product image from product details", e);
             throw e;
@@ -399,51 +475,51 @@ public class AmazonShoppingSteps {
     @Then("the product images should match with {int}-{int}% similarity")
     public void theProductImagesShouldMatchWithSimilarity(int minPercent, int maxPercent) {
         logger.info("Comparing product images with " + minPercent + "-" + maxPercent + "% threshold");
-        try {
-            Assert.assertNotNull("Search result image should be captured", searchResultImagePath);
-            Assert.assertNotNull("Product detail image should be captured", productDetailImagePath);
-            
-            // Verify files exist
-            File searchResultFile = new File(searchResultImagePath);
-            File productDetailFile = new File(productDetailImagePath);
-            
-            Assert.assertTrue("Search result image file should exist: " + searchResultImagePath, 
-                searchResultFile.exists());
-            Assert.assertTrue("Product detail image file should exist: " + productDetailImagePath, 
-                productDetailFile.exists());
-            
-            // Compare images using robust method (better for different sizes)
-            double similarity = ImageComparisonUtil.compareImagesRobust(searchResultImagePath, productDetailImagePath);
-            
-            logger.info(String.format("Image similarity: %.2f%% (threshold: %d-%d%%)", 
-                similarity, minPercent, maxPercent));
-            
-            // Verify similarity is within range
-            Assert.assertTrue(
-                String.format("Images should match with %d-%d%% similarity. Actual: %.2f%%", 
-                    minPercent, maxPercent, similarity),
-                similarity >= minPercent && similarity <= maxPercent);
-            
-            logger.info("Successfully verified product images match");
-            
-            // Optional: Save comparison report and show detailed comparison
-            try {
-                String diffImagePath = "target/screenshots/diff_" + System.currentTimeMillis() + ".png";
-                double pixelSimilarity = ImageComparisonUtil.compareImages(searchResultImagePath, productDetailImagePath);
-                double histogramSimilarity = ImageComparisonUtil.compareImagesHistogram(searchResultImagePath, productDetailImagePath);
-                ImageComparisonUtil.saveComparisonReport(searchResultImagePath, productDetailImagePath, diffImagePath);
-                
-                logger.info(String.format("Detailed comparison - Pixel-based: %.2f%%, Histogram-based: %.2f%%", 
-                    pixelSimilarity, histogramSimilarity));
-                logger.info("Saved comparison report: " + diffImagePath);
-            } catch (Exception e) {
-                logger.warn("Could not save comparison report", e);
-            }
-            
-        } catch (AssertionError e) {
-            logger.error("Image comparison verification failed", e);
-            throw e;
-        }
+        Assert.assertNotNull("Search result image should be captured", searchResultImage);
+        Assert.assertNotNull("Product detail image should be captured", productDetailImage);
+        
+        // Compare images using robust method (better for different sizes)
+        // Each screen's dynamic overlays (badges, prices, carousel dots) are masked per its region config
+        ComparisonResult result = ImageComparisonUtil.compareImagesDetailed(
+            searchResultImage, ComparisonRegion.forScreen("search_result"),
+            productDetailImage, ComparisonRegion.forScreen("product_detail"));
+        double similarity = result.getSimilarity();
+        boolean passed = similarity >= minPercent && similarity <= maxPercent;
+        
+        logger.info("Image similarity: {}% (threshold: {}-{}%, decided by {})",
+            () -> String.format("%.2f", similarity), () -> minPercent, () -> maxPercent, () -> result.getDecidedBy());
+        
+        // Diff image and detailed metrics are built in the background and attached in tearDown
+        DiffReporter.submit("product_image_diff", result, minPercent, passed);
+        
+        // Verify similarity is within range
+        Assert.assertTrue(
+            String.format("Images should match with %d-%d%% similarity. Actual: %.2f%%", 
+                minPercent, maxPercent, similarity),
+            passed);
+        
+        logger.info("Successfully verified product images match");
+    }
+    
+    @Then("the product image on the {string} screen should match its visual baseline with at least {int}% similarity")
+    public void theProductImageShouldMatchItsVisualBaseline(String screen, int minPercent) {
+        logger.info("Comparing " + screen + " product image with its visual baseline (profile "
+            + VisualBaselineStore.getProfile() + ", mode " + VisualBaselineStore.getMode() + ")");
+        byte[] image = "search_result".equals(screen) ? searchResultImage
+            : "product_detail".equals(screen) ? productDetailImage : screenshotMap.get(screen);
+        Assert.assertNotNull("Product image should be captured on the " + screen + " screen", image);
+        
+        ComparisonResult result = VisualBaselineStore.check(screen, "product_image", image, minPercent);
+        // A freshly recorded baseline was not compared against anything, so the check is skipped, not passed
+        Assume.assumeFalse("Recorded a new visual baseline for " + screen + "/product_image (visual.baseline.mode="
+            + VisualBaselineStore.getMode().name().toLowerCase() + "); nothing was compared",
+            result.getDecidedBy() == ComparisonResult.DecidedBy.BASELINE_RECORDED);
+        logger.info("Visual baseline similarity: {}% (minimum: {}%, decided by {})",
+            () -> String.format("%.2f", result.getSimilarity()), () -> minPercent, () -> result.getDecidedBy());
+        Assert.assertTrue(
+            String.format("Product image on %s should match its visual baseline with at least %d%% similarity. Actual: %.2f%%", 
+                screen, minPercent, result.getSimilarity()),
+            result.getSimilarity() >= minPercent);
     }
     
     @When("I click on the first product")
@@ -457,7 +533,7 @@ public class AmazonShoppingSteps {
         logger.info("Navigating back");
         homePage.navigateBack();
         try {
-            Thread.sleep(2000);
+            IdleClock.sleep(2000);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -472,8 +548,7 @@ public class AmazonShoppingSteps {
     @When("I capture the product image as {string}")
     public void iCaptureTheProductImageAs(String imageName) {
         logger.info("Capturing screenshot: " + imageName);
-        String screenshotPath = ElementUtil.takeScreenshot(imageName);
-        screenshotMap.put(imageName, screenshotPath);
+        screenshotMap.put(imageName, ArtifactRingBuffer.captureScreenshot(imageName));
     }
     
     @When("I select brand filter")
@@ -490,7 +565,7 @@ public class AmazonShoppingSteps {
     public void iApplyBrandFilter() {
         logger.info("Applying brand filter");
         try {
-            Thread.sleep(1000);
+            IdleClock.sleep(1000);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -508,7 +583,7 @@ public class AmazonShoppingSteps {
     public void iShouldSeeSearchResultsDisplayed() {
         logger.info("Verifying search results are displayed");
         try {
-            Thread.sleep(3000);
+            IdleClock.sleep(3000);
             Assert.assertTrue("Search results page should be displayed", 
                 searchResultsPage.isSearchResultsPageDisplayed());
         } catch (Exception e) {
@@ -528,7 +603,7 @@ public class AmazonShoppingSteps {
     public void theProductDetailsPageShouldBeDisplayed() {
         logger.info("Verifying product details page is displayed");
         try {
-            Thread.sleep(3000);
+            IdleClock.sleep(3000);
             Assert.assertTrue("Product details page should be displayed", 
                 productDetailsPage.isProductDetailsPageDisplayed());
         } catch (Exception e) {
@@ -556,7 +631,7 @@ public class AmazonShoppingSteps {
         logger.info("Verifying next product image is displayed");
         try {
             // Just verify that swipe happened (wait a moment for animation)
-            Thread.sleep(1000);
+            IdleClock.sleep(1000);
             logger.info("Successfully verified image swipe");
         } catch (Exception e) {
             logger.warn("Could not verify image swipe", e);
@@ -642,7 +717,7 @@ public class AmazonShoppingSteps {
     public void theFilteredResultsShouldBeDisplayed() {
         logger.info("Verifying filtered results are displayed");
         try {
-            Thread.sleep(2000);
+            IdleClock.sleep(2000);
             Assert.assertTrue("Filtered results should be displayed", 
                 searchResultsPage.isSearchResultsPageDisplayed());
         } catch (Exception e) {
@@ -691,8 +766,8 @@ public class AmazonShoppingSteps {
     @Then("the images should be different")
     public void theImagesShouldBeDifferent() {
         logger.info("Comparing captured images");
-        String image1 = screenshotMap.get("product_image_1");
-        String image2 = screenshotMap.get("product_image_2");
+        byte[] image1 = screenshotMap.get("product_image_1");
+        byte[] image2 = screenshotMap.get("product_image_2");
         
         if (image1 != null && image2 != null) {
             double similarity = ImageComparisonUtil.compareImages(image1, image2);
@@ -745,7 +820,7 @@ public class AmazonShoppingSteps {
                         logger.info("App terminated successfully");
                         
                         // Wait a moment for app to fully close
-                        Thread.sleep(1000);
+                        IdleClock.sleep(1000);
                     }
                 } catch (Exception e) {
                     logger.debug("Could not check current activity or app not running: " + e.getMessage());
@@ -757,7 +832,7 @@ public class AmazonShoppingSteps {
                 logger.info("App launched successfully");
                 
                 // Wait for app to start
-                Thread.sleep(2000);
+                IdleClock.sleep(2000);
                 
             } else {
                 logger.warn("Driver is not AndroidDriver, skipping app restart");
@@ -774,7 +849,7 @@ public class AmazonShoppingSteps {
     
     private void handleInitialPopups() {
         try {
-            Thread.sleep(3000); // Wait for app to fully load
+            IdleClock.sleep(3000); // Wait for app to fully load
             
             // Try to skip sign-in or other popups - but only if they exist
             By popupLocator = org.openqa.selenium.By.xpath(
@@ -785,7 +860,7 @@ public class AmazonShoppingSteps {
                 logger.info("Popup detected, attempting to dismiss");
                 try {
                     homePage.click(popupLocator);
-                    Thread.sleep(1000);
+                    IdleClock.sleep(1000);
                     logger.info("Popup dismissed successfully");
                 } catch (Exception e) {
                     logger.warn("Popup detected but could not dismiss: " + e.getMessage());
@@ -810,6 +885,17 @@ public class AmazonShoppingSteps {
         }
     }
     
+    /**
+     * Build a file-system safe log name for a scenario
+     */
+    private static String scenarioLogName(Scenario scenario) {
+        String name = scenario.getName().toLowerCase().replaceAll("[^a-z0-9]+", "_");
+        if (name.length() > 60) {
+            name = name.substring(0, 60);
+        }
+        return name + "_line" + scenario.getLine();
+    }
+    
     private void debugPageSource() {
         try {
             String pageSource = DriverManager.getDriver().getPageSource();
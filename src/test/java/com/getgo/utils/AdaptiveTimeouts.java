@@ -0,0 +1,235 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AdaptiveTimeouts learns how long each locator takes to appear and derives
+ * per-locator wait timeouts from that history.
+ * The timeout is a multiple of the observed p99, clamped to configured bounds.
+ * Until enough samples exist, the static timeout passed by the caller is used.
+ * Waits that time out are kept as censored samples (the element took at least that
+ * long); while one is in the history the timeout never drops below the caller's,
+ * so a locator that got slower is not starved by its own fast history.
+ * History is persisted to a local file so it carries over between runs.
+ */
+public class AdaptiveTimeouts {
+
+    private static final Logger logger = LogManager.getLogger(AdaptiveTimeouts.class);
+
+    private static final boolean ENABLED = CapabilitiesConfig.getBooleanProperty("adaptive.timeout.enabled", true);
+    private static final Path STORE = Paths.get(
+        CapabilitiesConfig.getProperty("adaptive.timeout.store", ".cache/locator-timings.tsv"));
+    private static final double MULTIPLIER = CapabilitiesConfig.getDoubleProperty("adaptive.timeout.multiplier", 3.0);
+    private static final long MIN_TIMEOUT_MS = CapabilitiesConfig.getIntProperty("adaptive.timeout.min.ms", 3000);
+    private static final long MAX_TIMEOUT_MS = CapabilitiesConfig.getIntProperty("adaptive.timeout.max.ms", 30000);
+    private static final int MIN_SAMPLES = CapabilitiesConfig.getIntProperty("adaptive.timeout.min.samples", 5);
+    private static final int MAX_SAMPLES = CapabilitiesConfig.getIntProperty("adaptive.timeout.max.samples", 100);
+
+    private static final Map<String, Samples> history = new ConcurrentHashMap<>();
+    private static volatile boolean dirty;
+
+    static {
+        if (ENABLED) {
+            load();
+            Runtime.getRuntime().addShutdownHook(new Thread(AdaptiveTimeouts::save, "adaptive-timeouts-save"));
+        }
+    }
+
+    /**
+     * Resolve the timeout to use for a locator
+     * @param locator By locator being waited for
+     * @param defaultSeconds Static timeout used until enough history exists
+     * @return Timeout to apply
+     */
+    public static Duration resolve(By locator, int defaultSeconds) {
+        return Duration.ofMillis(resolveMillis(locator, defaultSeconds));
+    }
+
+    /**
+     * Resolve the timeout to use for a locator, in milliseconds
+     * @param locator By locator being waited for
+     * @param defaultSeconds Static timeout used until enough history exists
+     * @return Timeout to apply in milliseconds
+     */
+    public static long resolveMillis(By locator, int defaultSeconds) {
+        long defaultMs = defaultSeconds * 1000L;
+        if (!ENABLED) {
+            return defaultMs;
+        }
+        Samples samples = history.get(key(locator));
+        if (samples == null || samples.size() < MIN_SAMPLES) {
+            return defaultMs;
+        }
+        long adaptiveMs = (long) Math.ceil(samples.percentile(0.99) * MULTIPLIER);
+        adaptiveMs = Math.max(MIN_TIMEOUT_MS, Math.min(MAX_TIMEOUT_MS, adaptiveMs));
+        if (samples.hasCensored()) {
+            adaptiveMs = Math.max(adaptiveMs, defaultMs);
+        }
+        logger.debug("Adaptive timeout for {}: {} ms (default {} s)", locator, adaptiveMs, defaultSeconds);
+        return adaptiveMs;
+    }
+
+    /**
+     * Record how long a locator took to appear
+     * @param locator By locator that was found
+     * @param elapsedMs Time from start of wait until element was found
+     */
+    public static void record(By locator, long elapsedMs) {
+        if (!ENABLED) {
+            return;
+        }
+        history.computeIfAbsent(key(locator), k -> new Samples(MAX_SAMPLES)).add(elapsedMs);
+        dirty = true;
+    }
+
+    /**
+     * Record that a wait for a locator timed out
+     * @param locator By locator that was not found
+     * @param waitedMs Time from start of wait until it gave up (a lower bound of the real time)
+     */
+    public static void recordTimeout(By locator, long waitedMs) {
+        if (!ENABLED) {
+            return;
+        }
+        // Stored negated to mark it censored
+        history.computeIfAbsent(key(locator), k -> new Samples(MAX_SAMPLES)).add(-Math.max(1, waitedMs));
+        dirty = true;
+    }
+
+    /**
+     * Persist the timing history to the local store
+     */
+    public static synchronized void save() {
+        if (!ENABLED || !dirty) {
+            return;
+        }
+        try {
+            if (STORE.getParent() != null) {
+                Files.createDirectories(STORE.getParent());
+            }
+            // Write to a temp file and move so a killed JVM never leaves a truncated store
+            Path tmp = STORE.resolveSibling(STORE.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Samples> entry : new TreeMap<>(history).entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write('\t');
+                    writer.write(entry.getValue().serialize());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, STORE, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            logger.info("Saved locator timings for {} locators to {}", history.size(), STORE);
+        } catch (IOException e) {
+            logger.warn("Could not save locator timings to {}: {}", STORE, e.getMessage());
+        }
+    }
+
+    private static void load() {
+        if (!Files.exists(STORE)) {
+            logger.info("No locator timing history at {}, using static timeouts", STORE);
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(STORE, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                Samples samples = new Samples(MAX_SAMPLES);
+                for (String value : line.substring(tab + 1).split(",")) {
+                    try {
+                        samples.add(Long.parseLong(value.trim()));
+                    } catch (NumberFormatException e) {
+                        // Skip corrupt sample
+                    }
+                }
+                history.put(line.substring(0, tab), samples);
+            }
+            logger.info("Loaded locator timings for {} locators from {}", history.size(), STORE);
+        } catch (IOException e) {
+            logger.warn("Could not load locator timings from {}: {}", STORE, e.getMessage());
+        }
+    }
+
+    private static String key(By locator) {
+        // Tabs and newlines would break the store format
+        return locator.toString().replace('\t', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Fixed-size ring of the most recent samples for one locator
+     * Negative values are censored samples (timeouts); they count at their magnitude.
+     */
+    private static class Samples {
+        private final long[] values;
+        private int count;
+        private int next;
+
+        Samples(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        synchronized void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if (count < values.length) {
+                count++;
+            }
+        }
+
+        synchronized int size() {
+            return count;
+        }
+
+        synchronized boolean hasCensored() {
+            for (int i = 0; i < count; i++) {
+                if (values[i] < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized long percentile(double p) {
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = Math.abs(values[i]);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+
+        synchronized String serialize() {
+            StringBuilder sb = new StringBuilder();
+            // Oldest first so reloading preserves ring order
+            int start = count < values.length ? 0 : next;
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(values[(start + i) % values.length]);
+            }
+            return sb.toString();
+        }
+    }
+}
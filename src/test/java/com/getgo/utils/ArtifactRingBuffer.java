@@ -0,0 +1,185 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.drivermanager.DriverManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ArtifactRingBuffer keeps the most recent screenshots and page sources of the
+ * current session in memory instead of writing each one to disk.
+ * The buffer is bounded by entry count and total bytes; the oldest entries are
+ * evicted first. Artifacts reach the disk only when the scenario fails
+ * ({@link #flush(String)}) or a step asks for one explicitly ({@link #keep(String)}),
+ * and are then written through the deduplicating {@link ScreenshotStore}; flushed
+ * screenshots use screenshot.archive.format.
+ * One buffer per scenario thread, like the driver itself.
+ */
+public class ArtifactRingBuffer {
+
+    private static final Logger logger = LogManager.getLogger(ArtifactRingBuffer.class);
+
+    private static final int MAX_ENTRIES = CapabilitiesConfig.getIntProperty("artifact.buffer.size", 10);
+    private static final long MAX_BYTES = CapabilitiesConfig.getIntProperty("artifact.buffer.max.bytes", 20 * 1024 * 1024);
+    private static final ScreenshotCodec.Format ARCHIVE_FORMAT = ScreenshotCodec.Format.fromName(
+        CapabilitiesConfig.getProperty("screenshot.archive.format", "png"));
+
+    private static final ThreadLocal<ArtifactRingBuffer> buffer = ThreadLocal.withInitial(ArtifactRingBuffer::new);
+
+    private final Deque<Artifact> entries = new ArrayDeque<>();
+    private long totalBytes;
+    private int sequence;
+
+    /**
+     * Capture a screenshot of the whole screen into the buffer
+     * @param label Name of the artifact (e.g. "test_end")
+     * @return PNG bytes of the screenshot
+     */
+    public static byte[] captureScreenshot(String label) {
+        byte[] png = ((TakesScreenshot) DriverManager.getDriver()).getScreenshotAs(OutputType.BYTES);
+        put(label, png, "png");
+        return png;
+    }
+
+    /**
+     * Capture the current page source into the buffer
+     * @param label Name of the artifact
+     */
+    public static void capturePageSource(String label) {
+        String source = DriverManager.getDriver().getPageSource();
+        put(label, source.getBytes(StandardCharsets.UTF_8), "xml");
+    }
+
+    /**
+     * Add an artifact to the buffer, evicting the oldest ones if the caps are exceeded
+     * Labels need not be unique; lookups return the newest entry
+     * @param label Name of the artifact
+     * @param data Artifact content
+     * @param extension File extension used when the artifact is written
+     */
+    public static void put(String label, byte[] data, String extension) {
+        ArtifactRingBuffer ring = buffer.get();
+        if (data.length > MAX_BYTES) {
+            logger.warn("Artifact {} ({} bytes) exceeds the buffer cap of {} bytes, not buffered",
+                label, data.length, MAX_BYTES);
+            return;
+        }
+        ring.entries.addLast(new Artifact(++ring.sequence, label, extension, data));
+        ring.totalBytes += data.length;
+        while (ring.entries.size() > MAX_ENTRIES || ring.totalBytes > MAX_BYTES) {
+            Artifact evicted = ring.entries.removeFirst();
+            ring.totalBytes -= evicted.data.length;
+            logger.debug("Evicted buffered artifact {}", evicted.stepName());
+        }
+    }
+
+    /**
+     * Get the newest buffered artifact with a label
+     * @param label Name of the artifact
+     * @return Artifact content, or null if it is not (or no longer) buffered
+     */
+    public static byte[] get(String label) {
+        Iterator<Artifact> newestFirst = buffer.get().entries.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Artifact artifact = newestFirst.next();
+            if (artifact.label.equals(label)) {
+                return artifact.data;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Persist the newest artifact with a label right away, whatever the scenario outcome
+     * @param label Name of the artifact
+     * @return Path the artifact is written to, or null if it is not buffered
+     */
+    public static Path keep(String label) {
+        Iterator<Artifact> newestFirst = buffer.get().entries.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Artifact artifact = newestFirst.next();
+            if (artifact.label.equals(label)) {
+                Path target = ScreenshotStore.pathOf(artifact.isScreenshot()
+                    ? ScreenshotStore.putImage(label, artifact.data)
+                    : ScreenshotStore.put(label, artifact.data, artifact.extension));
+                logger.info("Keeping artifact {}: {}", label, target);
+                return target;
+            }
+        }
+        logger.warn("Artifact {} is not in the buffer, nothing to keep", label);
+        return null;
+    }
+
+    /**
+     * Write every buffered artifact to the screenshot store (call when a scenario fails)
+     * @param scenarioName Scenario the artifacts are indexed under in the store
+     * @return Paths the artifacts are stored at
+     */
+    public static List<Path> flush(String scenarioName) {
+        ArtifactRingBuffer ring = buffer.get();
+        List<Path> written = new ArrayList<>(ring.entries.size());
+        for (Artifact artifact : ring.entries) {
+            // Flushed screenshots are only looked at, never compared, so they may use a lossy archive format
+            String hash = artifact.isScreenshot()
+                ? ScreenshotStore.putImage(scenarioName, artifact.stepName(), artifact.data, ARCHIVE_FORMAT)
+                : ScreenshotStore.put(scenarioName, artifact.stepName(), artifact.data, artifact.extension);
+            written.add(ScreenshotStore.pathOf(hash));
+        }
+        logger.info("Flushed {} buffered artifacts ({} bytes) for {}", written.size(), ring.totalBytes, scenarioName);
+        return written;
+    }
+
+    /**
+     * Drop all buffered artifacts (call at scenario start and end)
+     */
+    public static void clear() {
+        ArtifactRingBuffer ring = buffer.get();
+        ring.entries.clear();
+        ring.totalBytes = 0;
+        ring.sequence = 0;
+    }
+
+    /**
+     * Get the number of bytes currently buffered on this thread
+     * @return Buffered bytes
+     */
+    public static long bufferedBytes() {
+        return buffer.get().totalBytes;
+    }
+
+    /**
+     * A single buffered artifact
+     */
+    private static class Artifact {
+        private final int sequence;
+        private final String label;
+        private final String extension;
+        private final byte[] data;
+
+        Artifact(int sequence, String label, String extension, byte[] data) {
+            this.sequence = sequence;
+            this.label = label;
+            this.extension = extension;
+            this.data = data;
+        }
+
+        boolean isScreenshot() {
+            return "png".equals(extension);
+        }
+
+        String stepName() {
+            // Keep the capture order visible in the store index
+            return String.format("%03d_%s", sequence, label);
+        }
+    }
+}
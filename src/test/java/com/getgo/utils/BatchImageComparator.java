@@ -0,0 +1,202 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * BatchImageComparator runs many image comparisons on a bounded fork-join pool.
+ * - Pool size is the number of cores divided by OpenCV's own thread count, so the
+ *   two layers of parallelism do not oversubscribe the machine
+ * - image.batch.opencv.threads caps OpenCV's threads only while a batch runs; the
+ *   setting is JVM-wide, so the previous value is restored when the last batch ends
+ * - Each distinct reference image is decoded once and shared read-only by all its comparisons
+ * - Results are handed to the caller in completion order, on the caller's thread
+ * Comparisons use the same path as {@link ImageComparisonUtil#compareImagesDetailed(byte[], byte[])}.
+ */
+public class BatchImageComparator {
+
+    private static final Logger logger = LogManager.getLogger(BatchImageComparator.class);
+
+    private static final int OPENCV_THREADS = CapabilitiesConfig.getIntProperty("image.batch.opencv.threads", 1);
+
+    private static volatile ForkJoinPool pool;
+    // Guarded by the class lock: batches running, and OpenCV's thread count before the first of them
+    private static int activeBatches;
+    private static int savedOpenCvThreads;
+
+    /**
+     * Two encoded images to compare
+     */
+    public static class ImagePair {
+        private final byte[] reference;
+        private final byte[] candidate;
+
+        /**
+         * @param reference Encoded reference image; pass the same array to share its decode
+         * @param candidate Encoded candidate image
+         */
+        public ImagePair(byte[] reference, byte[] candidate) {
+            this.reference = reference;
+            this.candidate = candidate;
+        }
+
+        public byte[] getReference() {
+            return reference;
+        }
+
+        public byte[] getCandidate() {
+            return candidate;
+        }
+    }
+
+    /**
+     * Result of one comparison in a batch
+     */
+    public static class BatchResult {
+        private final int index;
+        private final ComparisonResult result;
+
+        public BatchResult(int index, ComparisonResult result) {
+            this.index = index;
+            this.result = result;
+        }
+
+        /**
+         * Get the position of the pair or candidate in the submitted list
+         * @return Index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public ComparisonResult getResult() {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + ": " + result;
+        }
+    }
+
+    /**
+     * Compare one reference image against many candidates
+     * @param reference Encoded reference image (decoded once)
+     * @param candidates Encoded candidate images
+     * @param onResult Called on the caller's thread as each comparison completes
+     */
+    public static void compareAgainstReference(byte[] reference, List<byte[]> candidates, Consumer<BatchResult> onResult) {
+        List<ImagePair> pairs = new ArrayList<>(candidates.size());
+        for (byte[] candidate : candidates) {
+            pairs.add(new ImagePair(reference, candidate));
+        }
+        comparePairs(pairs, onResult);
+    }
+
+    /**
+     * Compare many image pairs
+     * @param pairs Pairs to compare; pairs sharing a reference array share its decode
+     * @param onResult Called on the caller's thread as each comparison completes
+     */
+    public static void comparePairs(List<ImagePair> pairs, Consumer<BatchResult> onResult) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Decoding first also makes sure OpenCV is loaded before the pool touches its settings
+        Map<byte[], Mat> references = new IdentityHashMap<>();
+        for (ImagePair pair : pairs) {
+            references.computeIfAbsent(pair.reference, ImageComparisonUtil::decodeImage);
+        }
+        ForkJoinPool executor = pool();
+
+        limitOpenCvThreads();
+        try {
+            CompletionService<BatchResult> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < pairs.size(); i++) {
+                int index = i;
+                Mat reference = references.get(pairs.get(i).reference);
+                byte[] candidate = pairs.get(i).candidate;
+                completion.submit(() -> new BatchResult(index,
+                    ImageComparisonUtil.compareDecoded(reference, ImageComparisonUtil.decodeImage(candidate))));
+            }
+
+            for (int received = 0; received < pairs.size(); received++) {
+                try {
+                    onResult.accept(completion.take().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted during batch image comparison", e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Batch image comparison failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            // Comparisons still queued after a failure run with OpenCV's own setting
+            restoreOpenCvThreads();
+        }
+        logger.info("Compared {} image pairs ({} distinct references) in {} ms on {} threads",
+            pairs.size(), references.size(), (System.nanoTime() - start) / 1_000_000, executor.getParallelism());
+    }
+
+    /**
+     * Compare many image pairs
+     * @param pairs Pairs to compare
+     * @return Results in completion order
+     */
+    public static List<BatchResult> comparePairs(List<ImagePair> pairs) {
+        List<BatchResult> results = new ArrayList<>(pairs.size());
+        comparePairs(pairs, results::add);
+        return results;
+    }
+
+    private static ForkJoinPool pool() {
+        if (pool == null) {
+            synchronized (BatchImageComparator.class) {
+                if (pool == null) {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    int perComparison = Math.max(1, OPENCV_THREADS > 0 ? OPENCV_THREADS : Core.getNumThreads());
+                    int parallelism = Math.max(1, Math.min(
+                        CapabilitiesConfig.getIntProperty("image.batch.max.threads", cores), cores / perComparison));
+                    pool = new ForkJoinPool(parallelism);
+                    logger.info("Batch image comparison pool: {} threads ({} cores, {} OpenCV threads per comparison)",
+                        parallelism, cores, perComparison);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static synchronized void limitOpenCvThreads() {
+        if (OPENCV_THREADS <= 0) {
+            return;
+        }
+        if (activeBatches++ == 0) {
+            savedOpenCvThreads = Core.getNumThreads();
+            // With a parallel batch on top, few OpenCV threads avoid threads fighting over cores
+            Core.setNumThreads(OPENCV_THREADS);
+        }
+    }
+
+    private static synchronized void restoreOpenCvThreads() {
+        if (OPENCV_THREADS <= 0) {
+            return;
+        }
+        if (--activeBatches == 0) {
+            Core.setNumThreads(savedOpenCvThreads);
+        }
+    }
+}
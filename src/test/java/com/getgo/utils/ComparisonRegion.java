@@ -0,0 +1,268 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ComparisonRegion restricts an image comparison to the pixels that matter on a screen.
+ * - Include rectangles: only these areas are compared (the image is cropped to their bounding box)
+ * - Exclude rectangles: dynamic overlays such as badges, prices or carousel dots are ignored
+ * - Mask image: nonzero pixels are compared, zero pixels ignored
+ * Rectangles are fractions (0-1) of the image size, so one definition fits a thumbnail
+ * and a full-size capture of the same screen. Regions are defined once per screen in
+ * capabilities.properties:
+ * <pre>
+ * region.&lt;screen&gt;.include=x,y,w,h;x,y,w,h
+ * region.&lt;screen&gt;.exclude=x,y,w,h
+ * region.&lt;screen&gt;.mask=path/to/mask.png
+ * </pre>
+ */
+public class ComparisonRegion {
+
+    private static final Logger logger = LogManager.getLogger(ComparisonRegion.class);
+
+    private static final Map<String, ComparisonRegion> screens = new ConcurrentHashMap<>();
+    private static final Map<String, Mat> masks = new ConcurrentHashMap<>();
+    // "path@widthxheight" -> mask image scaled to that image size
+    private static final Map<String, Mat> scaledMasks = new ConcurrentHashMap<>();
+
+    private final List<double[]> includes = new ArrayList<>();
+    private final List<double[]> excludes = new ArrayList<>();
+    private String maskPath;
+
+    /**
+     * Create a region covering the whole image
+     * @return Region with nothing included or excluded yet
+     */
+    public static ComparisonRegion full() {
+        return new ComparisonRegion();
+    }
+
+    /**
+     * Get the region configured for a screen
+     * @param screen Screen name used in the region.&lt;screen&gt;.* properties
+     * @return Configured region, or the full image if none is configured
+     */
+    public static ComparisonRegion forScreen(String screen) {
+        return screens.computeIfAbsent(screen, ComparisonRegion::load);
+    }
+
+    /**
+     * Add an area to compare; with no includes the whole image is compared
+     * @param x Left edge as a fraction of the width
+     * @param y Top edge as a fraction of the height
+     * @param width Width as a fraction of the width
+     * @param height Height as a fraction of the height
+     * @return This region
+     */
+    public ComparisonRegion include(double x, double y, double width, double height) {
+        includes.add(new double[] {x, y, width, height});
+        return this;
+    }
+
+    /**
+     * Add an area to ignore
+     * @param x Left edge as a fraction of the width
+     * @param y Top edge as a fraction of the height
+     * @param width Width as a fraction of the width
+     * @param height Height as a fraction of the height
+     * @return This region
+     */
+    public ComparisonRegion exclude(double x, double y, double width, double height) {
+        excludes.add(new double[] {x, y, width, height});
+        return this;
+    }
+
+    /**
+     * Use a mask image; nonzero pixels are compared, it is scaled to the image size
+     * @param path Path to the mask image
+     * @return This region
+     */
+    public ComparisonRegion mask(String path) {
+        this.maskPath = path;
+        return this;
+    }
+
+    /**
+     * Check whether the region covers the whole image with nothing excluded
+     * @return true if comparisons need no cropping or masking
+     */
+    public boolean isFull() {
+        return includes.isEmpty() && excludes.isEmpty() && maskPath == null;
+    }
+
+    /**
+     * Check whether the region is a single rectangle: at most one include, nothing excluded, no mask
+     * @return true if cropping alone selects the pixels to compare
+     */
+    public boolean isRectangle() {
+        return includes.size() <= 1 && excludes.isEmpty() && maskPath == null;
+    }
+
+    /**
+     * Bounding box of the included areas
+     * @param size Image size
+     * @return Rectangle in pixels, clamped to the image
+     */
+    public Rect bounds(Size size) {
+        if (includes.isEmpty()) {
+            return new Rect(0, 0, (int) size.width, (int) size.height);
+        }
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = 0;
+        int bottom = 0;
+        for (double[] include : includes) {
+            Rect rect = toPixels(include, size);
+            left = Math.min(left, rect.x);
+            top = Math.min(top, rect.y);
+            right = Math.max(right, rect.x + rect.width);
+            bottom = Math.max(bottom, rect.y + rect.height);
+        }
+        return new Rect(left, top, Math.max(1, right - left), Math.max(1, bottom - top));
+    }
+
+    /**
+     * Crop an image to the included bounding box without copying pixels
+     * @param image Full image
+     * @return Sub-matrix view of the image
+     */
+    public Mat crop(Mat image) {
+        return includes.isEmpty() ? image : image.submat(bounds(image.size()));
+    }
+
+    /**
+     * Build the mask of pixels to compare inside the cropped area
+     * @param size Size of the full image
+     * @return 8-bit mask the size of bounds(size), 255 where pixels are compared; null if all of them are
+     */
+    public Mat keepMask(Size size) {
+        if (isRectangle()) {
+            return null;
+        }
+        // Only the cropped area is allocated; rectangles are clipped to it and shifted into it
+        Rect bounds = bounds(size);
+        Mat keep = new Mat(bounds.height, bounds.width, CvType.CV_8UC1, Scalar.all(includes.isEmpty() ? 255 : 0));
+        for (double[] include : includes) {
+            fill(keep, bounds, toPixels(include, size), 255);
+        }
+        for (double[] exclude : excludes) {
+            fill(keep, bounds, toPixels(exclude, size), 0);
+        }
+        if (maskPath != null) {
+            Mat scaled = scaledMask(maskPath, size);
+            if (!scaled.empty()) {
+                Core.bitwise_and(keep, scaled.submat(bounds), keep);
+            }
+        }
+        return keep;
+    }
+
+    private static void fill(Mat keep, Rect bounds, Rect rect, int value) {
+        int left = Math.max(rect.x, bounds.x);
+        int top = Math.max(rect.y, bounds.y);
+        int right = Math.min(rect.x + rect.width, bounds.x + bounds.width);
+        int bottom = Math.min(rect.y + rect.height, bounds.y + bounds.height);
+        if (right > left && bottom > top) {
+            keep.submat(new Rect(left - bounds.x, top - bounds.y, right - left, bottom - top)).setTo(Scalar.all(value));
+        }
+    }
+
+    private static Rect toPixels(double[] fraction, Size size) {
+        int x = clamp((int) Math.round(fraction[0] * size.width), 0, (int) size.width - 1);
+        int y = clamp((int) Math.round(fraction[1] * size.height), 0, (int) size.height - 1);
+        int width = clamp((int) Math.round(fraction[2] * size.width), 1, (int) size.width - x);
+        int height = clamp((int) Math.round(fraction[3] * size.height), 1, (int) size.height - y);
+        return new Rect(x, y, width, height);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Mask image scaled to an image size, kept so repeated comparisons of the screen reuse it
+     */
+    private static Mat scaledMask(String path, Size size) {
+        return scaledMasks.computeIfAbsent(path + "@" + (int) size.width + "x" + (int) size.height, key -> {
+            Mat mask = loadMask(path);
+            if (mask.empty()) {
+                return mask;
+            }
+            Mat scaled = new Mat();
+            Imgproc.resize(mask, scaled, size, 0, 0, Imgproc.INTER_NEAREST);
+            return scaled;
+        });
+    }
+
+    private static Mat loadMask(String path) {
+        return masks.computeIfAbsent(path, p -> {
+            Mat raw = Imgcodecs.imread(p, Imgcodecs.IMREAD_GRAYSCALE);
+            if (raw.empty()) {
+                logger.warn("Comparison mask could not be loaded: {}", p);
+                return raw;
+            }
+            Mat binary = new Mat();
+            Imgproc.threshold(raw, binary, 0, 255, Imgproc.THRESH_BINARY);
+            return binary;
+        });
+    }
+
+    private static ComparisonRegion load(String screen) {
+        ComparisonRegion region = new ComparisonRegion();
+        String prefix = "region." + screen + ".";
+        for (double[] rect : parseRects(CapabilitiesConfig.getProperty(prefix + "include", ""))) {
+            region.include(rect[0], rect[1], rect[2], rect[3]);
+        }
+        for (double[] rect : parseRects(CapabilitiesConfig.getProperty(prefix + "exclude", ""))) {
+            region.exclude(rect[0], rect[1], rect[2], rect[3]);
+        }
+        String mask = CapabilitiesConfig.getProperty(prefix + "mask", "");
+        if (!mask.trim().isEmpty()) {
+            region.mask(mask.trim());
+        }
+        if (!region.isFull()) {
+            logger.info("Comparison region for {}: {} include, {} exclude{}", screen,
+                region.includes.size(), region.excludes.size(), region.maskPath != null ? ", mask" : "");
+        }
+        return region;
+    }
+
+    private static List<double[]> parseRects(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<double[]> rects = new ArrayList<>();
+        for (String part : value.split(";")) {
+            String[] numbers = part.trim().split(",");
+            if (numbers.length != 4) {
+                logger.warn("Ignoring malformed region rectangle: {}", part);
+                continue;
+            }
+            try {
+                rects.add(new double[] {
+                    Double.parseDouble(numbers[0].trim()), Double.parseDouble(numbers[1].trim()),
+                    Double.parseDouble(numbers[2].trim()), Double.parseDouble(numbers[3].trim())
+                });
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring malformed region rectangle: {}", part);
+            }
+        }
+        return rects;
+    }
+}
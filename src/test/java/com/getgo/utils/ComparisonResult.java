@@ -0,0 +1,151 @@
+package com.getgo.utils;
+
+import org.opencv.core.Mat;
+
+/**
+ * ComparisonResult is the outcome of an image comparison together with
+ * the path that decided it, so reports can tell a hash short-circuit from
+ * a full pixel/histogram comparison.
+ */
+public class ComparisonResult {
+
+    /**
+     * Which part of the comparison produced the similarity
+     */
+    public enum DecidedBy {
+        /** All perceptual hashes were close: clear match (similarity 100), full metrics skipped */
+        HASH_MATCH,
+        /** All perceptual hashes were far apart: clear mismatch (similarity 0), full metrics skipped */
+        HASH_MISMATCH,
+        /** Hashes were ambiguous, pixel and histogram comparison ran */
+        FULL_METRICS,
+        /** Hashes were ambiguous, multi-scale SSIM ran */
+        SSIM,
+        /** Hashes were ambiguous, ORB feature matching ran */
+        ORB,
+        /** No comparison: the capture was recorded as the new visual baseline */
+        BASELINE_RECORDED,
+        /** Images could not be loaded or compared */
+        ERROR
+    }
+
+    private final double similarity;
+    private final DecidedBy decidedBy;
+    private final int hashDistance;
+    private final double pixelSimilarity;
+    private final double histogramSimilarity;
+    // Compared inputs (cropped to their regions) and keep masks, kept so reports can reuse them
+    private Mat image1;
+    private Mat image2;
+    private Mat mask1;
+    private Mat mask2;
+
+    public ComparisonResult(double similarity, DecidedBy decidedBy, int hashDistance,
+                            double pixelSimilarity, double histogramSimilarity) {
+        this.similarity = similarity;
+        this.decidedBy = decidedBy;
+        this.hashDistance = hashDistance;
+        this.pixelSimilarity = pixelSimilarity;
+        this.histogramSimilarity = histogramSimilarity;
+    }
+
+    /**
+     * Get the final similarity
+     * @return Similarity percentage (0-100)
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    public DecidedBy getDecidedBy() {
+        return decidedBy;
+    }
+
+    /**
+     * Get the perceptual hash distance that was checked
+     * @return Hamming distance (0-64), or -1 if hashes were not computed
+     */
+    public int getHashDistance() {
+        return hashDistance;
+    }
+
+    /**
+     * Get the pixel similarity
+     * @return Similarity percentage, or NaN if the pixel comparison did not run
+     */
+    public double getPixelSimilarity() {
+        return pixelSimilarity;
+    }
+
+    /**
+     * Get the histogram similarity
+     * @return Similarity percentage, or NaN if the histogram comparison did not run
+     */
+    public double getHistogramSimilarity() {
+        return histogramSimilarity;
+    }
+
+    /**
+     * Keep the decoded images this result was computed from
+     * @param image1 Decoded first image
+     * @param image2 Decoded second image
+     * @return This result
+     */
+    ComparisonResult withImages(Mat image1, Mat image2) {
+        return withImages(image1, null, image2, null);
+    }
+
+    /**
+     * Keep the images this result was computed from, as compared: cropped, with their keep masks
+     * @param image1 First image, cropped to its region
+     * @param mask1 Keep mask of the first image (255 = compared), or null for all pixels
+     * @param image2 Second image, cropped to its region
+     * @param mask2 Keep mask of the second image, or null for all pixels
+     * @return This result
+     */
+    ComparisonResult withImages(Mat image1, Mat mask1, Mat image2, Mat mask2) {
+        this.image1 = image1;
+        this.mask1 = mask1;
+        this.image2 = image2;
+        this.mask2 = mask2;
+        return this;
+    }
+
+    /**
+     * Get the decoded first image
+     * @return Image, or null if the result does not carry its images
+     */
+    Mat getImage1() {
+        return image1;
+    }
+
+    /**
+     * Get the decoded second image
+     * @return Image, or null if the result does not carry its images
+     */
+    Mat getImage2() {
+        return image2;
+    }
+
+    /**
+     * Get the keep mask of the first image
+     * @return Mask, or null if all pixels were compared
+     */
+    Mat getMask1() {
+        return mask1;
+    }
+
+    /**
+     * Get the keep mask of the second image
+     * @return Mask, or null if all pixels were compared
+     */
+    Mat getMask2() {
+        return mask2;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.2f%% (decided by %s, hash distance %d, pixel %.2f%%, histogram %.2f%%)",
+            similarity, decidedBy, hashDistance, pixelSimilarity, histogramSimilarity);
+    }
+}
@@ -0,0 +1,161 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * DiffReporter builds image comparison reports (difference image and metric summary)
+ * on a background thread, so the comparison step returns as soon as it has its verdict.
+ * - Reports reuse the images the comparison already decoded, cropped and masked the same way
+ * - image.report.mode decides which comparisons get a report:
+ *   failure (default), near (failures and passes within image.report.near.margin points
+ *   of the threshold), always, never
+ * - Finished reports are collected per scenario thread and attached in the @After hook
+ * Difference images of failed comparisons are also kept in the ScreenshotStore.
+ */
+public class DiffReporter {
+
+    private static final Logger logger = LogManager.getLogger(DiffReporter.class);
+
+    private static final String MODE = CapabilitiesConfig.getProperty("image.report.mode", "failure").trim().toLowerCase();
+    private static final double NEAR_MARGIN = CapabilitiesConfig.getDoubleProperty("image.report.near.margin", 5.0);
+    private static final long COLLECT_TIMEOUT_MS = CapabilitiesConfig.getIntProperty("image.report.timeout.ms", 10000);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "diff-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<List<Future<Report>>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * A finished comparison report
+     */
+    public static class Report {
+        private final String name;
+        private final byte[] diffImage;
+        private final String summary;
+
+        Report(String name, byte[] diffImage, String summary) {
+            this.name = name;
+            this.diffImage = diffImage;
+            this.summary = summary;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the difference image
+         * @return PNG bytes, or null if the result carried no images
+         */
+        public byte[] getDiffImage() {
+            return diffImage;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+    }
+
+    /**
+     * Queue a report for a comparison if the configured mode wants one
+     * @param name Report name, e.g. "product_image_diff"
+     * @param result Comparison result; its decoded images are reused if it carries them
+     * @param minSimilarity Pass threshold the result was checked against
+     * @param passed Whether the comparison passed
+     * @return true if a report was queued
+     */
+    public static boolean submit(String name, ComparisonResult result, double minSimilarity, boolean passed) {
+        if (!wanted(result.getSimilarity(), minSimilarity, passed)) {
+            return false;
+        }
+        String scenario = ThreadContext.get("scenario");
+        pending.get().add(executor.submit(() -> build(scenario, name, result, minSimilarity, passed)));
+        logger.debug("Queued comparison report {} ({})", name, passed ? "passed" : "failed");
+        return true;
+    }
+
+    /**
+     * Wait for this thread's queued reports and hand them over
+     * Reports not finished within image.report.timeout.ms are skipped.
+     * @return Finished reports, in submission order
+     */
+    public static List<Report> collect() {
+        List<Future<Report>> futures = pending.get();
+        List<Report> reports = new ArrayList<>(futures.size());
+        long deadline = System.currentTimeMillis() + COLLECT_TIMEOUT_MS;
+        for (Future<Report> future : futures) {
+            try {
+                reports.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.warn("Comparison report failed: {}", e.getCause().toString());
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                logger.warn("Comparison report not ready after {} ms, skipped", COLLECT_TIMEOUT_MS);
+            }
+        }
+        futures.clear();
+        return reports;
+    }
+
+    private static boolean wanted(double similarity, double minSimilarity, boolean passed) {
+        switch (MODE) {
+            case "never":
+                return false;
+            case "always":
+                return true;
+            case "near":
+                return !passed || similarity < minSimilarity + NEAR_MARGIN;
+            default:
+                return !passed;
+        }
+    }
+
+    private static Report build(String scenario, String name, ComparisonResult result,
+                                double minSimilarity, boolean passed) {
+        // Cropped to the compared regions, with their keep masks, so the report matches the verdict
+        Mat image1 = result.getImage1();
+        Mat image2 = result.getImage2();
+        Mat mask1 = result.getMask1();
+        Mat mask2 = result.getMask2();
+        byte[] diff = null;
+        double pixel = result.getPixelSimilarity();
+        double histogram = result.getHistogramSimilarity();
+        if (image1 != null && image2 != null && !image1.empty() && !image2.empty()) {
+            diff = ImageComparisonUtil.createDiffImage(image1, mask1, image2, mask2);
+            // The hash pre-check or SSIM/ORB may have decided without these
+            if (Double.isNaN(pixel)) {
+                pixel = ImageComparisonUtil.pixelSimilarity(image1, mask1, image2, mask2);
+            }
+            if (Double.isNaN(histogram)) {
+                histogram = ImageComparisonUtil.histogramSimilarity(image1, mask1, image2, mask2);
+            }
+            if (!passed) {
+                ScreenshotStore.put(scenario != null ? scenario : "unscoped", name, diff, "png");
+            }
+        }
+        String summary = String.format("%s: %s%nThreshold: %.2f%% (%s)%nPixel-based: %.2f%%, Histogram-based: %.2f%%%n",
+            name, result, minSimilarity, passed ? "passed" : "failed", pixel, histogram);
+        logger.info("Comparison report {} - Pixel-based: {}%, Histogram-based: {}%",
+            name, Math.round(pixel * 100) / 100.0, Math.round(histogram * 100) / 100.0);
+        return new Report(name, diff, summary);
+    }
+}
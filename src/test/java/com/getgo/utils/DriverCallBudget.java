@@ -0,0 +1,24 @@
+package com.getgo.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of driver round trips one call of a page-object method or step
+ * definition may make. Checked by DriverCallGuard; going over warns or fails the
+ * step depending on driver.budget.mode.
+ * For a budget on every step of a scenario, tag it {@code @driverCallBudget=N} instead.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface DriverCallBudget {
+
+    /**
+     * @return Maximum number of driver commands per call
+     */
+    int value();
+}
@@ -0,0 +1,346 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * DriverCallGuard enforces driver round-trip budgets, so N+1 command patterns (one
+ * getAttribute per list item, and so on) are caught while the list is still short.
+ * - Methods annotated with {@link DriverCallBudget}: every command is attributed to
+ *   the annotated methods on the calling thread's stack; a call is over budget when
+ *   it made more commands than declared
+ * - Scenarios tagged {@code @driverCallBudget=N}: every step of the scenario may make
+ *   at most N commands
+ * - Blocks opened with {@link #enter(String, int)}: every command made inside the
+ *   try-with-resources block counts, and annotated calls made inside it end with it
+ * Violations name the commands that were made, most frequent first. They are logged
+ * as they happen and collected per step; with driver.budget.mode=fail the step fails.
+ * driver.budget.mode=off skips the stack walk on every command.
+ * <p>
+ * The walk stops at the Cucumber frame that invoked the step definition (or after
+ * driver.budget.stack.frames frames outside a step), so the Cucumber and test runner
+ * frames below it are never visited. Depths are counted from there.
+ * <p>
+ * Annotated calls are told apart by what the stack shows, so calls of an annotated
+ * method made back to back from the same call site (a loop) look like one call and
+ * are counted against one budget. Wrap the loop body in {@code enter} to split them:
+ * <pre>
+ * for (WebElement card : cards) {
+ *     try (DriverCallGuard.Call call = DriverCallGuard.enter("product card", 0)) {
+ *         page.readCard(card);
+ *     }
+ * }
+ * </pre>
+ */
+public class DriverCallGuard {
+
+    private static final Logger logger = LogManager.getLogger(DriverCallGuard.class);
+
+    private static final String MODE = CapabilitiesConfig.getProperty("driver.budget.mode", "warn").trim().toLowerCase();
+    private static final boolean ENABLED = !"off".equals(MODE);
+    private static final boolean FAIL_OVER_BUDGET = "fail".equals(MODE);
+    private static final String TAG_PREFIX = "@driverCallBudget=";
+    private static final int REPORT_TOP = 5;
+    private static final int MAX_FRAMES = Math.max(16, CapabilitiesConfig.getIntProperty("driver.budget.stack.frames", 64));
+    private static final String CUCUMBER = "io.cucumber.";
+
+    private static final StackWalker walker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    // "class#method descriptor" -> budget, 0 when the method is not annotated
+    private static final Map<String, Integer> budgets = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<List<Scope>> openScopes = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<Deque<Call>> openCalls = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<List<String>> violations = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<Integer> stepBudget = new ThreadLocal<>();
+    private static final ThreadLocal<StepMetrics.Snapshot> stepStart = new ThreadLocal<>();
+
+    /**
+     * One call of an annotated method, or one enter block. An annotated call is identified
+     * by the method, its stack depth and the bytecode index it was called from, so
+     * consecutive calls from the same call site share one scope unless an enter block
+     * around them closes it.
+     */
+    private static class Scope {
+        private final String method;
+        private final int depth;
+        private final int callerBci;
+        private final int budget;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int total;
+
+        Scope(String method, int depth, int callerBci, int budget) {
+            this.method = method;
+            this.depth = depth;
+            this.callerBci = callerBci;
+            this.budget = budget;
+        }
+
+        boolean isSameCall(Scope other) {
+            return depth == other.depth && callerBci == other.callerBci && method.equals(other.method);
+        }
+    }
+
+    /**
+     * Explicit call boundary opened by {@link #enter(String, int)}; close it with try-with-resources
+     */
+    public static final class Call implements AutoCloseable {
+        private final Scope scope;
+        private boolean closed;
+
+        private Call(Scope scope) {
+            this.scope = scope;
+        }
+
+        /**
+         * End the block: annotated calls made inside it are checked, then the block's own budget
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Iterator<Scope> iterator = openScopes.get().iterator();
+            while (iterator.hasNext()) {
+                Scope inner = iterator.next();
+                if (inner.depth > scope.depth) {
+                    DriverCallGuard.close(inner);
+                    iterator.remove();
+                }
+            }
+            openCalls.get().remove(this);
+            DriverCallGuard.close(scope);
+        }
+    }
+
+    /**
+     * Open an explicit call boundary around a block of driver work
+     * @param name Name used in violations, e.g. "product card"
+     * @param budget Maximum number of driver commands in the block; 0 only marks the boundary
+     * @return Open call, to be closed by try-with-resources
+     */
+    public static Call enter(String name, int budget) {
+        // Depth of the caller's frame, counted like annotatedCalls does
+        int depth = ENABLED ? walker.walk(DriverCallGuard::stepFrames).size() - 1 : 0;
+        Call call = new Call(new Scope(name, depth, -1, budget));
+        if (ENABLED) {
+            openCalls.get().push(call);
+        }
+        return call;
+    }
+
+    /**
+     * Attribute one driver command to the annotated methods it was made from.
+     * Called by TimedCommandExecutor on the thread that issued the command.
+     * @param command Command name, e.g. "getElementAttribute"
+     * @return Page-object method or step that made the command (as IdleClock attributes it),
+     *         or null with driver.budget.mode=off
+     */
+    public static String recordCommand(String command) {
+        if (!ENABLED) {
+            return null;
+        }
+        List<StackWalker.StackFrame> frames = walker.walk(DriverCallGuard::stepFrames);
+        List<Scope> current = annotatedCalls(frames);
+        List<Scope> scopes = openScopes.get();
+        Iterator<Scope> iterator = scopes.iterator();
+        while (iterator.hasNext()) {
+            Scope scope = iterator.next();
+            if (current.stream().noneMatch(scope::isSameCall)) {
+                close(scope);
+                iterator.remove();
+            }
+        }
+        for (Scope call : current) {
+            Scope scope = scopes.stream().filter(call::isSameCall).findFirst().orElse(null);
+            if (scope == null) {
+                scope = call;
+                scopes.add(scope);
+            }
+            scope.total++;
+            scope.counts.merge(command, 1, Integer::sum);
+        }
+        for (Call call : openCalls.get()) {
+            call.scope.total++;
+            call.scope.counts.merge(command, 1, Integer::sum);
+        }
+        return IdleClock.callerOf(frames.iterator());
+    }
+
+    /**
+     * Start a fresh account for the current scenario thread
+     */
+    public static void startScenario() {
+        openScopes.get().clear();
+        openCalls.get().clear();
+        violations.get().clear();
+        stepBudget.remove();
+        stepStart.remove();
+    }
+
+    /**
+     * Start counting a step
+     * @param tags Scenario tags; {@code @driverCallBudget=N} sets the budget of every step
+     */
+    public static void startStep(Collection<String> tags) {
+        Integer budget = null;
+        for (String tag : tags) {
+            if (tag.startsWith(TAG_PREFIX)) {
+                try {
+                    int value = Integer.parseInt(tag.substring(TAG_PREFIX.length()).trim());
+                    budget = budget == null ? value : Math.min(budget, value);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring malformed tag {}", tag);
+                }
+            }
+        }
+        if (budget != null) {
+            stepBudget.set(budget);
+        } else {
+            stepBudget.remove();
+        }
+        stepStart.set(StepMetrics.snapshot());
+    }
+
+    /**
+     * Close the current step's account: calls still open are checked, then the step
+     * itself against its tag budget
+     * @return Budget violations since the previous step, empty if none
+     */
+    public static List<String> finishStep() {
+        // Blocks left open (not closed by try-with-resources) end with the step
+        new ArrayList<>(openCalls.get()).forEach(Call::close);
+        List<Scope> scopes = openScopes.get();
+        scopes.forEach(DriverCallGuard::close);
+        scopes.clear();
+
+        Integer budget = stepBudget.get();
+        StepMetrics.Snapshot start = stepStart.get();
+        if (ENABLED && budget != null && start != null) {
+            StepMetrics.Snapshot step = StepMetrics.snapshot().since(start);
+            if (step.getCommands() > budget) {
+                Map<String, Integer> counts = new HashMap<>();
+                step.getCommandCounts().forEach((command, count) -> counts.put(command, count.intValue()));
+                violation("Step made " + step.getCommands() + " driver calls, budget is " + budget
+                    + " (" + TAG_PREFIX + budget + "): " + describe(counts));
+            }
+        }
+        stepBudget.remove();
+        stepStart.remove();
+
+        List<String> found = new ArrayList<>(violations.get());
+        violations.get().clear();
+        return found;
+    }
+
+    /**
+     * Fail if there are violations and driver.budget.mode is fail
+     * @param found Violations from finishStep
+     * @throws AssertionError if a budget was exceeded in fail mode
+     */
+    public static void enforceBudget(List<String> found) {
+        if (FAIL_OVER_BUDGET && found != null && !found.isEmpty()) {
+            throw new AssertionError("Driver call budget exceeded (driver.budget.mode=fail):"
+                + System.lineSeparator() + String.join(System.lineSeparator(), found));
+        }
+    }
+
+    /**
+     * Collect the frames above the Cucumber frame that invoked the step or hook, innermost first
+     */
+    private static List<StackWalker.StackFrame> stepFrames(Stream<StackWalker.StackFrame> stream) {
+        List<StackWalker.StackFrame> frames = new ArrayList<>(32);
+        Iterator<StackWalker.StackFrame> iterator = stream.limit(MAX_FRAMES).iterator();
+        while (iterator.hasNext()) {
+            StackWalker.StackFrame frame = iterator.next();
+            if (frame.getClassName().startsWith(CUCUMBER)) {
+                break;
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Find the calls of annotated methods among the walked frames, innermost first
+     */
+    private static List<Scope> annotatedCalls(List<StackWalker.StackFrame> frames) {
+        List<Scope> calls = new ArrayList<>(2);
+        for (int i = 0; i < frames.size(); i++) {
+            StackWalker.StackFrame frame = frames.get(i);
+            if (!frame.getClassName().startsWith("com.getgo.")) {
+                continue;
+            }
+            int budget = budgets.computeIfAbsent(frame.getClassName() + "#" + frame.getMethodName() + frame.getDescriptor(),
+                key -> budgetOf(frame));
+            if (budget > 0) {
+                int callerBci = i + 1 < frames.size() ? frames.get(i + 1).getByteCodeIndex() : -1;
+                calls.add(new Scope(site(frame), frames.size() - i, callerBci, budget));
+            }
+        }
+        return calls;
+    }
+
+    private static int budgetOf(StackWalker.StackFrame frame) {
+        for (Method method : frame.getDeclaringClass().getDeclaredMethods()) {
+            if (method.getName().equals(frame.getMethodName())
+                    && MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                        .toMethodDescriptorString().equals(frame.getDescriptor())) {
+                DriverCallBudget annotation = method.getAnnotation(DriverCallBudget.class);
+                return annotation != null ? Math.max(1, annotation.value()) : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static void close(Scope scope) {
+        if (scope.budget > 0 && scope.total > scope.budget) {
+            violation(scope.method + " made " + scope.total + " driver calls, budget is " + scope.budget
+                + ": " + describe(scope.counts));
+        }
+    }
+
+    private static void violation(String message) {
+        logger.warn("Driver call budget exceeded: {}", message);
+        violations.get().add(message);
+    }
+
+    /**
+     * Command counts, most frequent first, e.g. "getElementAttribute x180, findChildElements x12"
+     */
+    private static String describe(Map<String, Integer> counts) {
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(counts.entrySet());
+        ranked.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ranked.size(); i++) {
+            if (i == REPORT_TOP) {
+                text.append(", ...");
+                break;
+            }
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(ranked.get(i).getKey()).append(" x").append(ranked.get(i).getValue());
+        }
+        return text.toString();
+    }
+
+    private static String site(StackWalker.StackFrame frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+    }
+}
@@ -1,15 +1,14 @@
 package com.getgo.utils;
 
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.drivermanager.AppCrashedException;
 import com.getgo.drivermanager.DriverManager;
+import com.getgo.drivermanager.SessionHealthMonitor;
 import io.appium.java_client.AppiumDriver;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.*;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
-import java.io.File;
-import java.time.Duration;
 import java.util.List;
 
 /**
@@ -19,7 +18,7 @@ import java.util.List;
 public class ElementUtil {
     
     private static final Logger logger = LogManager.getLogger(ElementUtil.class);
-    private static final int DEFAULT_TIMEOUT = 20;
+    private static final int DEFAULT_TIMEOUT = CapabilitiesConfig.getTimeouts().getExplicitWait();
     
     /**
      * Click on element with wait
@@ -29,9 +28,11 @@ public class ElementUtil {
         try {
             WebElement element = waitForElementToBeClickable(locator, DEFAULT_TIMEOUT);
             element.click();
-            logger.info("Clicked on element: " + locator);
+            logger.info("Clicked on element: {}", locator);
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Failed to click on element: " + locator, e);
+            logger.error("Failed to click on element: {}", locator, e);
             throw new RuntimeException("Failed to click element: " + e.getMessage());
         }
     }
@@ -60,9 +61,11 @@ public class ElementUtil {
             WebElement element = waitForElementToBeVisible(locator, DEFAULT_TIMEOUT);
             element.clear();
             element.sendKeys(text);
-            logger.info("Sent keys to element: " + locator);
+            logger.info("Sent keys to element: {}", locator);
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Failed to send keys to element: " + locator, e);
+            logger.error("Failed to send keys to element: {}", locator, e);
             throw new RuntimeException("Failed to send keys: " + e.getMessage());
         }
     }
@@ -73,16 +76,17 @@ public class ElementUtil {
      * @return true if element is present, false otherwise
      */
     public static boolean isElementPresent(By locator) {
+        SessionHealthMonitor.assertHealthy();
         try {
             AppiumDriver driver = DriverManager.getDriver();
             driver.findElement(locator);
-            logger.info("Element is present: " + locator);
+            logger.info("Element is present: {}", locator);
             return true;
         } catch (NoSuchElementException e) {
-            logger.info("Element is not present: " + locator);
+            logger.info("Element is not present: {}", locator);
             return false;
         } catch (Exception e) {
-            logger.error("Error checking element presence: " + locator, e);
+            logger.error("Error checking element presence: {}", locator, e);
             return false;
         }
     }
@@ -94,7 +98,7 @@ public class ElementUtil {
      */
     public static boolean isElementNotPresent(By locator) {
         boolean notPresent = !isElementPresent(locator);
-        logger.info("Element is not present: " + locator + " - " + notPresent);
+        logger.info("Element is not present: {} - {}", locator, notPresent);
         return notPresent;
     }
     
@@ -104,13 +108,14 @@ public class ElementUtil {
      * @return true if element is displayed, false otherwise
      */
     public static boolean isElementDisplayed(By locator) {
+        SessionHealthMonitor.assertHealthy();
         try {
             WebElement element = DriverManager.getDriver().findElement(locator);
             boolean displayed = element.isDisplayed();
-            logger.info("Element is displayed: " + locator + " - " + displayed);
+            logger.info("Element is displayed: {} - {}", locator, displayed);
             return displayed;
         } catch (Exception e) {
-            logger.info("Element is not displayed: " + locator);
+            logger.info("Element is not displayed: {}", locator);
             return false;
         }
     }
@@ -118,17 +123,26 @@ public class ElementUtil {
     /**
      * Wait for element to be visible
      * @param locator By locator for element
-     * @param timeout Timeout in seconds
+     * @param timeout Timeout in seconds, used until the locator has timing history
      * @return WebElement
      */
     public static WebElement waitForElementToBeVisible(By locator, int timeout) {
         try {
-            WebDriverWait wait = new WebDriverWait(DriverManager.getDriver(), Duration.ofSeconds(timeout));
-            WebElement element = wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
-            logger.info("Element is visible: " + locator);
+            long start = System.currentTimeMillis();
+            WebElement element;
+            try {
+                element = WaitEngine.until(locator, WaitEngine.VISIBLE, AdaptiveTimeouts.resolveMillis(locator, timeout));
+            } catch (TimeoutException e) {
+                AdaptiveTimeouts.recordTimeout(locator, System.currentTimeMillis() - start);
+                throw e;
+            }
+            AdaptiveTimeouts.record(locator, System.currentTimeMillis() - start);
+            logger.info("Element is visible: {}", locator);
             return element;
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Element not visible within timeout: " + locator, e);
+            logger.error("Element not visible within timeout: {}", locator, e);
             throw new RuntimeException("Element not visible: " + e.getMessage());
         }
     }
@@ -136,17 +150,26 @@ public class ElementUtil {
     /**
      * Wait for element to be clickable
      * @param locator By locator for element
-     * @param timeout Timeout in seconds
+     * @param timeout Timeout in seconds, used until the locator has timing history
      * @return WebElement
      */
     public static WebElement waitForElementToBeClickable(By locator, int timeout) {
         try {
-            WebDriverWait wait = new WebDriverWait(DriverManager.getDriver(), Duration.ofSeconds(timeout));
-            WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
-            logger.info("Element is clickable: " + locator);
+            long start = System.currentTimeMillis();
+            WebElement element;
+            try {
+                element = WaitEngine.until(locator, WaitEngine.CLICKABLE, AdaptiveTimeouts.resolveMillis(locator, timeout));
+            } catch (TimeoutException e) {
+                AdaptiveTimeouts.recordTimeout(locator, System.currentTimeMillis() - start);
+                throw e;
+            }
+            AdaptiveTimeouts.record(locator, System.currentTimeMillis() - start);
+            logger.info("Element is clickable: {}", locator);
             return element;
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Element not clickable within timeout: " + locator, e);
+            logger.error("Element not clickable within timeout: {}", locator, e);
             throw new RuntimeException("Element not clickable: " + e.getMessage());
         }
     }
@@ -159,12 +182,13 @@ public class ElementUtil {
      */
     public static boolean waitForElementToBeInvisible(By locator, int timeout) {
         try {
-            WebDriverWait wait = new WebDriverWait(DriverManager.getDriver(), Duration.ofSeconds(timeout));
-            boolean invisible = wait.until(ExpectedConditions.invisibilityOfElementLocated(locator));
-            logger.info("Element is invisible: " + locator);
+            boolean invisible = WaitEngine.until(locator, WaitEngine.INVISIBLE, timeout * 1000L);
+            logger.info("Element is invisible: {}", locator);
             return invisible;
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Element still visible after timeout: " + locator, e);
+            logger.error("Element still visible after timeout: {}", locator, e);
             return false;
         }
     }
@@ -177,28 +201,27 @@ public class ElementUtil {
     public static List<WebElement> getElements(By locator) {
         try {
             List<WebElement> elements = DriverManager.getDriver().findElements(locator);
-            logger.info("Found " + elements.size() + " elements: " + locator);
+            logger.info("Found {} elements: {}", elements.size(), locator);
             return elements;
         } catch (Exception e) {
-            logger.error("Failed to get elements: " + locator, e);
+            logger.error("Failed to get elements: {}", locator, e);
             throw new RuntimeException("Failed to get elements: " + e.getMessage());
         }
     }
     
     /**
      * Take screenshot
-     * @param fileName Name for screenshot file
+     * Stored by content hash in ScreenshotStore and indexed under the current scenario;
+     * the file is written asynchronously
+     * @param fileName Name (step label) for the screenshot
      * @return Path to screenshot file
      */
     public static String takeScreenshot(String fileName) {
         try {
             TakesScreenshot screenshot = (TakesScreenshot) DriverManager.getDriver();
-            File srcFile = screenshot.getScreenshotAs(OutputType.FILE);
-            String destPath = "screenshots/" + fileName + "_" + System.currentTimeMillis() + ".png";
-            File destFile = new File(destPath);
-            destFile.getParentFile().mkdirs();
-            org.apache.commons.io.FileUtils.copyFile(srcFile, destFile);
-            logger.info("Screenshot saved: " + destPath);
+            byte[] png = screenshot.getScreenshotAs(OutputType.BYTES);
+            String destPath = ScreenshotStore.pathOf(ScreenshotStore.putImage(fileName, png)).toString();
+            logger.info("Screenshot stored: {}", destPath);
             return destPath;
         } catch (Exception e) {
             logger.error("Failed to take screenshot", e);
@@ -0,0 +1,163 @@
+package com.getgo.utils;
+
+import com.getgo.drivermanager.DriverManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebElement;
+import org.w3c.dom.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FrameCapture takes one full screenshot, keeps it decoded in memory, and crops
+ * any number of element images from it locally.
+ * - Elements are cropped by their rect, or by the bounds of every node a locator
+ *   matches in a page-source snapshot taken together with the frame
+ * - N element images cost one screenshot round trip instead of N element screenshots
+ * The screenshot also goes into the ArtifactRingBuffer, like every other capture.
+ */
+public class FrameCapture {
+
+    private static final Logger logger = LogManager.getLogger(FrameCapture.class);
+
+    private final byte[] screenshot;
+    private final Mat frame;
+    private Document pageSource;
+
+    private FrameCapture(byte[] screenshot, Mat frame, Document pageSource) {
+        this.screenshot = screenshot;
+        this.frame = frame;
+        this.pageSource = pageSource;
+    }
+
+    /**
+     * Take a screenshot of the current screen
+     * @param label Name of the capture in the artifact buffer
+     * @return Frame to crop element images from
+     */
+    public static FrameCapture take(String label) {
+        return of(ArtifactRingBuffer.captureScreenshot(label));
+    }
+
+    /**
+     * Take a page-source snapshot and a screenshot back to back, so node bounds match the frame
+     * @param label Name of the capture in the artifact buffer
+     * @return Frame to crop element images from, by element or by locator
+     */
+    public static FrameCapture takeWithPageSource(String label) {
+        Document snapshot = PageSourceQuery.snapshot(DriverManager.getDriver());
+        FrameCapture capture = take(label);
+        capture.pageSource = snapshot;
+        return capture;
+    }
+
+    /**
+     * Wrap an existing screenshot
+     * @param screenshot Encoded full-screen image
+     * @return Frame to crop element images from
+     */
+    public static FrameCapture of(byte[] screenshot) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            throw new IllegalStateException("OpenCV is required to crop element images");
+        }
+        Mat frame = ScreenshotCodec.decode(screenshot);
+        if (frame.empty()) {
+            throw new IllegalArgumentException("Screenshot could not be decoded");
+        }
+        return new FrameCapture(screenshot, frame, null);
+    }
+
+    /**
+     * Get the full screenshot
+     * @return Encoded screenshot as captured
+     */
+    public byte[] getScreenshot() {
+        return screenshot;
+    }
+
+    /**
+     * Get the decoded frame
+     * @return BGR image, shared; do not modify
+     */
+    Mat getFrame() {
+        return frame;
+    }
+
+    public int getWidth() {
+        return frame.cols();
+    }
+
+    public int getHeight() {
+        return frame.rows();
+    }
+
+    /**
+     * Crop a region of the frame
+     * @param bounds Region in screen pixels; clipped to the frame
+     * @return PNG bytes, or null if the region lies outside the frame
+     */
+    public byte[] crop(Rectangle bounds) {
+        int x = Math.max(0, bounds.getX());
+        int y = Math.max(0, bounds.getY());
+        int right = Math.min(frame.cols(), bounds.getX() + bounds.getWidth());
+        int bottom = Math.min(frame.rows(), bounds.getY() + bounds.getHeight());
+        if (right <= x || bottom <= y) {
+            logger.warn("Region {},{} {}x{} is outside the {}x{} frame", bounds.getX(), bounds.getY(),
+                bounds.getWidth(), bounds.getHeight(), frame.cols(), frame.rows());
+            return null;
+        }
+        return ScreenshotCodec.encode(frame.submat(new Rect(x, y, right - x, bottom - y)), ScreenshotCodec.Format.PNG_FAST);
+    }
+
+    /**
+     * Crop an element's image
+     * @param element Element on the captured screen
+     * @return PNG bytes, or null if the element lies outside the frame
+     */
+    public byte[] crop(WebElement element) {
+        return crop(element.getRect());
+    }
+
+    /**
+     * Crop the images of several elements
+     * @param elements Elements on the captured screen
+     * @return PNG bytes per element, in order (null entries for elements outside the frame)
+     */
+    public List<byte[]> crop(List<WebElement> elements) {
+        List<byte[]> images = new ArrayList<>(elements.size());
+        for (WebElement element : elements) {
+            images.add(crop(element));
+        }
+        return images;
+    }
+
+    /**
+     * Crop the image of every node a locator matches, using bounds from the page-source
+     * snapshot instead of one rect request per element
+     * @param locator Locator PageSourceQuery can evaluate
+     * @return PNG bytes per matching node, in document order (nodes outside the frame skipped)
+     */
+    public List<byte[]> cropAll(By locator) {
+        if (pageSource == null) {
+            throw new IllegalStateException("Frame was taken without a page source; use takeWithPageSource");
+        }
+        if (!PageSourceQuery.isSupported(locator)) {
+            throw new IllegalArgumentException("Locator cannot be evaluated from page source: " + locator);
+        }
+        List<Rectangle> bounds = PageSourceQuery.bounds(pageSource, locator);
+        List<byte[]> images = new ArrayList<>(bounds.size());
+        for (Rectangle rectangle : bounds) {
+            byte[] image = crop(rectangle);
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        logger.info("Cropped {} of {} nodes matching {} from one frame", images.size(), bounds.size(), locator);
+        return images;
+    }
+}
@@ -1,6 +1,8 @@
 package com.getgo.utils;
 
+import com.getgo.drivermanager.AppCrashedException;
 import com.getgo.drivermanager.DriverManager;
+import com.getgo.drivermanager.SessionHealthMonitor;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.TouchAction;
 import io.appium.java_client.touch.WaitOptions;
@@ -46,7 +48,7 @@ public class GestureUtil {
             swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
             
             driver.perform(Collections.singletonList(swipe));
-            logger.info(String.format("Swiped from (%d,%d) to (%d,%d)", startX, startY, endX, endY));
+            logger.info("Swiped from ({},{}) to ({},{})", startX, startY, endX, endY);
             
         } catch (Exception e) {
             logger.error("Error performing swipe", e);
@@ -54,6 +56,51 @@ public class GestureUtil {
         }
     }
     
+    /**
+     * Tap a point on the screen
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public static void tap(int x, int y) {
+        try {
+            AppiumDriver driver = DriverManager.getDriver();
+            
+            PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
+            Sequence tap = new Sequence(finger, 1);
+            
+            tap.addAction(finger.createPointerMove(Duration.ZERO,
+                PointerInput.Origin.viewport(), x, y));
+            tap.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
+            tap.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
+            
+            driver.perform(Collections.singletonList(tap));
+            logger.info("Tapped at ({},{})", x, y);
+            
+        } catch (Exception e) {
+            logger.error("Error performing tap", e);
+            throw new RuntimeException("Failed to perform tap: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tap the center of a screen region, e.g. a TemplateLocator match
+     * @param rect Region in screen pixels
+     */
+    public static void tap(Rectangle rect) {
+        tap(rect.getX() + rect.getWidth() / 2, rect.getY() + rect.getHeight() / 2);
+    }
+    
+    /**
+     * Swipe left across a screen region
+     * @param rect Region in screen pixels
+     */
+    public static void swipeLeftInRect(Rectangle rect) {
+        int startX = rect.getX() + (int) (rect.getWidth() * 0.8);
+        int endX = rect.getX() + (int) (rect.getWidth() * 0.2);
+        int centerY = rect.getY() + rect.getHeight() / 2;
+        swipe(startX, centerY, endX, centerY, 800);
+    }
+    
     /**
      * Swipe up on the screen
      */
@@ -108,15 +155,18 @@ public class GestureUtil {
     public static boolean scrollToElement(WebElement element, int maxScrolls) {
         try {
             for (int i = 0; i < maxScrolls; i++) {
+                SessionHealthMonitor.assertHealthy();
                 if (element.isDisplayed()) {
-                    logger.info("Element found after " + i + " scrolls");
+                    logger.info("Element found after {} scrolls", i);
                     return true;
                 }
                 swipeUp();
-                Thread.sleep(500);
+                IdleClock.sleep(500);
             }
-            logger.warn("Element not found after " + maxScrolls + " scrolls");
+            logger.warn("Element not found after {} scrolls", maxScrolls);
             return false;
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error scrolling to element", e);
             return false;
@@ -133,21 +183,24 @@ public class GestureUtil {
         try {
             AppiumDriver driver = DriverManager.getDriver();
             for (int i = 0; i < maxScrolls; i++) {
+                SessionHealthMonitor.assertHealthy();
                 try {
                     WebElement element = driver.findElement(
                         By.xpath("//*[contains(@text, '" + text + "')]"));
                     if (element.isDisplayed()) {
-                        logger.info("Element with text '" + text + "' found after " + i + " scrolls");
+                        logger.info("Element with text '{}' found after {} scrolls", text, i);
                         return true;
                     }
                 } catch (NoSuchElementException e) {
                     // Element not found yet, continue scrolling
                 }
                 swipeUp();
-                Thread.sleep(500);
+                IdleClock.sleep(500);
             }
-            logger.warn("Element with text '" + text + "' not found after " + maxScrolls + " scrolls");
+            logger.warn("Element with text '{}' not found after {} scrolls", text, maxScrolls);
             return false;
+        } catch (AppCrashedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error scrolling to element by text", e);
             return false;
@@ -0,0 +1,187 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IdleClock is the one place the framework blocks on purpose: fixed sleeps, wait
+ * slices and poll pauses all go through {@link #sleep(long)}.
+ * - Every millisecond is attributed to the page-object method (or step, if no page
+ *   object is involved) that asked for it, found by walking the stack
+ * - Totals are kept per scenario thread and reported at the end of the scenario
+ * - idle.budget.ms caps a scenario's idle time; idle.budget.mode decides whether going
+ *   over warns (default) or fails the scenario
+ * Idle time also feeds the sleep column of the step timing report.
+ */
+public class IdleClock {
+
+    private static final Logger logger = LogManager.getLogger(IdleClock.class);
+
+    private static final long BUDGET_MS = CapabilitiesConfig.getIntProperty("idle.budget.ms", 0);
+    private static final boolean FAIL_OVER_BUDGET =
+        "fail".equalsIgnoreCase(CapabilitiesConfig.getProperty("idle.budget.mode", "warn").trim());
+    private static final int REPORT_TOP = 10;
+
+    private static final StackWalker walker = StackWalker.getInstance();
+    private static final String BASE_PAGE = "com.getgo.pages.BasePage";
+    private static final String DRIVER_MANAGER = "com.getgo.drivermanager.";
+
+    // Call site -> {sleeps, nanos}
+    private static final ThreadLocal<Map<String, long[]>> idle = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Sleep on purpose, attributing the time to the calling page-object method
+     * Drop-in replacement for Thread.sleep.
+     * @param millis Time to sleep
+     * @throws InterruptedException if the thread is interrupted while sleeping
+     */
+    public static void sleep(long millis) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(millis);
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Start a fresh account for the current scenario thread
+     */
+    public static void startScenario() {
+        idle.get().clear();
+    }
+
+    /**
+     * Close the current scenario's account
+     * @return Idle time report of the scenario
+     */
+    public static Report finishScenario() {
+        Map<String, long[]> sites = idle.get();
+        Report report = new Report(new HashMap<>(sites));
+        sites.clear();
+        if (BUDGET_MS > 0 && report.getTotalMillis() > BUDGET_MS) {
+            logger.warn("Scenario idle time {} ms exceeds the budget of {} ms{}{}",
+                report.getTotalMillis(), BUDGET_MS, System.lineSeparator(), report);
+        } else {
+            logger.info("Scenario idle time: {}", report);
+        }
+        return report;
+    }
+
+    /**
+     * Fail if a report is over idle.budget.ms and idle.budget.mode is fail
+     * @param report Scenario report from finishScenario
+     * @throws AssertionError if the budget is exceeded in fail mode
+     */
+    public static void enforceBudget(Report report) {
+        if (FAIL_OVER_BUDGET && report != null && report.isOverBudget()) {
+            throw new AssertionError("Scenario spent " + report.getTotalMillis() + " ms idle, budget is "
+                + BUDGET_MS + " ms (idle.budget.ms)" + System.lineSeparator() + report);
+        }
+    }
+
+    private static void record(long nanos) {
+        String site = caller();
+        long[] totals = idle.get().computeIfAbsent(site, key -> new long[2]);
+        totals[0]++;
+        totals[1] += nanos;
+        StepMetrics.recordSleep(nanos);
+    }
+
+    /**
+     * Find who asked for the sleep (or lookup): the innermost page-object method (BasePage helpers
+     * are skipped in favour of the page calling them), else the step definition, else
+     * the innermost framework class outside the wait utilities and the driver plumbing
+     */
+    static String caller() {
+        return walker.walk(frames -> callerOf(frames.iterator()));
+    }
+
+    /**
+     * Same as {@link #caller()}, over frames already walked (innermost first)
+     */
+    static String callerOf(Iterator<StackWalker.StackFrame> frames) {
+        String fallback = null;
+        while (frames.hasNext()) {
+            StackWalker.StackFrame frame = frames.next();
+            String className = frame.getClassName();
+            if (!className.startsWith("com.getgo.")) {
+                continue;
+            }
+            if (className.startsWith("com.getgo.pages.") && !className.equals(BASE_PAGE)
+                    || className.startsWith("com.getgo.stepdefinitions.")) {
+                return site(frame);
+            }
+            if (fallback == null && !className.equals(IdleClock.class.getName())
+                    && !className.equals(WaitEngine.class.getName()) && !className.equals(WaitUtil.class.getName())
+                    && !className.equals(LocatorProfiler.class.getName()) && !className.equals(DriverCallGuard.class.getName())
+                    && !className.startsWith(DRIVER_MANAGER)) {
+                fallback = site(frame);
+            }
+        }
+        return fallback != null ? fallback : "unattributed";
+    }
+
+    private static String site(StackWalker.StackFrame frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+    }
+
+    /**
+     * Idle time of one scenario, by call site
+     */
+    public static class Report {
+        private final Map<String, long[]> sites;
+        private final long totalNanos;
+
+        Report(Map<String, long[]> sites) {
+            this.sites = sites;
+            this.totalNanos = sites.values().stream().mapToLong(totals -> totals[1]).sum();
+        }
+
+        public long getTotalMillis() {
+            return totalNanos / 1_000_000;
+        }
+
+        public boolean isOverBudget() {
+            return BUDGET_MS > 0 && getTotalMillis() > BUDGET_MS;
+        }
+
+        /**
+         * Get idle time per call site
+         * @return Call site ("Class.method") to milliseconds, largest first
+         */
+        public List<Map.Entry<String, Long>> getSites() {
+            List<Map.Entry<String, Long>> ranked = new ArrayList<>(sites.size());
+            sites.forEach((site, totals) -> ranked.add(Map.entry(site, totals[1] / 1_000_000)));
+            ranked.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            return ranked;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(getTotalMillis()).append(" ms idle");
+            if (BUDGET_MS > 0) {
+                text.append(" (budget ").append(BUDGET_MS).append(" ms)");
+            }
+            int shown = 0;
+            for (Map.Entry<String, Long> site : getSites()) {
+                if (shown++ == REPORT_TOP) {
+                    text.append(System.lineSeparator()).append("  ...");
+                    break;
+                }
+                text.append(System.lineSeparator()).append(String.format("  %7d ms %4d x  %s",
+                    site.getValue(), sites.get(site.getKey())[0], site.getKey()));
+            }
+            return text.toString();
+        }
+    }
+}
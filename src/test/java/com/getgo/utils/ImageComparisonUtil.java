@@ -1,12 +1,16 @@
 package com.getgo.utils;
 
-import nu.pattern.OpenCV;
+import com.getgo.config.CapabilitiesConfig;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
 /**
  * ImageComparisonUtil provides methods for comparing images
  * Supports 80-90% match threshold for image comparison
@@ -14,18 +18,29 @@ import org.opencv.imgproc.Imgproc;
 public class ImageComparisonUtil {
     
     private static final Logger logger = LogManager.getLogger(ImageComparisonUtil.class);
-    private static boolean opencvLoaded = false;
     
-    static {
-        try {
-            OpenCV.loadLocally();
-            opencvLoaded = true;
-            logger.info("OpenCV loaded successfully");
-        } catch (Exception e) {
-            logger.error("Failed to load OpenCV", e);
-        }
+    // Perceptual hash pre-check: decide clear matches/mismatches without the full-resolution metrics
+    private static final boolean HASH_PRECHECK = CapabilitiesConfig.getBooleanProperty("image.hash.precheck.enabled", true);
+    private static final int HASH_MATCH_MAX_DISTANCE = CapabilitiesConfig.getIntProperty("image.hash.match.max.distance", 6);
+    private static final int HASH_MISMATCH_MIN_DISTANCE = CapabilitiesConfig.getIntProperty("image.hash.mismatch.min.distance", 28);
+    
+    /**
+     * Implementation that runs the pixel and histogram metrics
+     */
+    public enum Backend {
+        /** Native OpenCV (all metrics) */
+        OPENCV,
+        /** Pure Java (pixel and histogram metrics only), see JavaPixelBackend */
+        JAVA
     }
     
+    // "auto" uses OpenCV when it loads and falls back to the pure-Java backend otherwise; OpenCV is
+    // loaded on first use (see OpenCvLoader), so "java" never touches the native library
+    private static final String BACKEND = CapabilitiesConfig.getProperty("image.compare.backend", "auto").trim().toLowerCase();
+    
+    // Metric for the ambiguous band: "robust" (max of pixel and histogram, the calibrated default), "ssim" or "orb"
+    private static final String METRIC = CapabilitiesConfig.getProperty("image.compare.metric", "robust").trim().toLowerCase();
+    
     /**
      * Compare two images and return similarity percentage
      * @param imagePath1 Path to first image
@@ -33,15 +48,58 @@ public class ImageComparisonUtil {
      * @return Similarity percentage (0-100)
      */
     public static double compareImages(String imagePath1, String imagePath2) {
-        if (!opencvLoaded) {
+        if (backend() == Backend.JAVA) {
+            return compareImages(readBytes(imagePath1), readBytes(imagePath2), Backend.JAVA);
+        }
+        return compareImages(read(imagePath1), read(imagePath2));
+    }
+    
+    /**
+     * Compare two in-memory encoded images and return similarity percentage
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImages(byte[] image1, byte[] image2) {
+        return compareImages(image1, image2, backend());
+    }
+    
+    /**
+     * Compare two in-memory encoded images with a specific backend
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @param backend Backend to run the comparison on
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImages(byte[] image1, byte[] image2, Backend backend) {
+        if (backend == Backend.JAVA) {
+            JavaPixelBackend.Raster img1 = JavaPixelBackend.Raster.decode(image1);
+            JavaPixelBackend.Raster img2 = JavaPixelBackend.Raster.decode(image2);
+            if (img1 == null || img2 == null) {
+                logger.error("One or both images could not be loaded");
+                return 0.0;
+            }
+            double similarity = JavaPixelBackend.compareImages(img1, img2);
+            logger.info("Image comparison result (Java backend): {}% similarity", () -> String.format("%.2f", similarity));
+            return similarity;
+        }
+        if (!OpenCvLoader.ensureLoaded()) {
             logger.error("OpenCV not loaded. Cannot compare images.");
             return 0.0;
         }
-        
+        return compareImages(decode(image1), decode(image2));
+    }
+    
+    private static double compareImages(Mat img1, Mat img2) {
+        return compareImages(img1, img2, null);
+    }
+    
+    /**
+     * Pixel comparison, optionally limited to a mask
+     * @param mask 8-bit mask the size of img1 (255 = compare), or null for all pixels
+     */
+    private static double compareImages(Mat img1, Mat img2, Mat mask) {
         try {
-            Mat img1 = Imgcodecs.imread(imagePath1);
-            Mat img2 = Imgcodecs.imread(imagePath2);
-            
             if (img1.empty() || img2.empty()) {
                 logger.error("One or both images could not be loaded");
                 return 0.0;
@@ -64,10 +122,15 @@ public class ImageComparisonUtil {
             
             // Calculate similarity
             double totalPixels = diff.rows() * diff.cols();
+            if (mask != null) {
+                // Only pixels inside the mask count
+                Core.bitwise_and(diff, mask, diff);
+                totalPixels = Math.max(1, Core.countNonZero(mask));
+            }
             double nonZeroPixels = Core.countNonZero(diff);
             double similarity = ((totalPixels - nonZeroPixels) / totalPixels) * 100;
             
-            logger.info(String.format("Image comparison result: %.2f%% similarity", similarity));
+            logger.info("Image comparison result: {}% similarity", () -> String.format("%.2f", similarity));
             
             return similarity;
             
@@ -85,55 +148,72 @@ public class ImageComparisonUtil {
      * @return Similarity percentage (0-100)
      */
     public static double compareImagesHistogram(String imagePath1, String imagePath2) {
-        if (!opencvLoaded) {
+        if (backend() == Backend.JAVA) {
+            return compareImagesHistogram(readBytes(imagePath1), readBytes(imagePath2), Backend.JAVA);
+        }
+        return compareImagesHistogram(read(imagePath1), read(imagePath2));
+    }
+    
+    /**
+     * Compare two in-memory encoded images using histogram comparison
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesHistogram(byte[] image1, byte[] image2) {
+        return compareImagesHistogram(image1, image2, backend());
+    }
+    
+    /**
+     * Compare two in-memory encoded images using histogram comparison with a specific backend
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @param backend Backend to run the comparison on
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesHistogram(byte[] image1, byte[] image2, Backend backend) {
+        if (backend == Backend.JAVA) {
+            JavaPixelBackend.Raster img1 = JavaPixelBackend.Raster.decode(image1);
+            JavaPixelBackend.Raster img2 = JavaPixelBackend.Raster.decode(image2);
+            if (img1 == null || img2 == null) {
+                logger.error("One or both images could not be loaded");
+                return 0.0;
+            }
+            double similarity = JavaPixelBackend.compareImagesHistogram(img1, img2);
+            logger.info("Histogram comparison result (Java backend): {}% similarity", () -> String.format("%.2f", similarity));
+            return similarity;
+        }
+        if (!OpenCvLoader.ensureLoaded()) {
             logger.error("OpenCV not loaded. Cannot compare images.");
             return 0.0;
         }
-        
+        return compareImagesHistogram(decode(image1), decode(image2));
+    }
+    
+    private static double compareImagesHistogram(Mat img1, Mat img2) {
+        return compareImagesHistogram(img1, img2, null, null);
+    }
+    
+    /**
+     * Histogram comparison, optionally limited to masks
+     * @param mask1 8-bit mask the size of img1 (255 = count), or null for all pixels
+     * @param mask2 8-bit mask the size of img2, or null for all pixels
+     */
+    private static double compareImagesHistogram(Mat img1, Mat img2, Mat mask1, Mat mask2) {
         try {
-            Mat img1 = Imgcodecs.imread(imagePath1);
-            Mat img2 = Imgcodecs.imread(imagePath2);
-            
             if (img1.empty() || img2.empty()) {
                 logger.error("One or both images could not be loaded");
                 return 0.0;
             }
             
-            // Convert to HSV color space (better for color comparison)
-            Mat hsv1 = new Mat();
-            Mat hsv2 = new Mat();
-            Imgproc.cvtColor(img1, hsv1, Imgproc.COLOR_BGR2HSV);
-            Imgproc.cvtColor(img2, hsv2, Imgproc.COLOR_BGR2HSV);
-            
-            // Calculate histograms
-            Mat hist1 = new Mat();
-            Mat hist2 = new Mat();
-            
-            int hBins = 50, sBins = 60;
-            int[] histSize = {hBins, sBins};
-            float[] hRanges = {0, 180};
-            float[] sRanges = {0, 256};
-            float[][] ranges = {hRanges, sRanges};
-            int[] channels = {0, 1};
-            
-            java.util.List<Mat> hsvList1 = java.util.Arrays.asList(hsv1);
-            java.util.List<Mat> hsvList2 = java.util.Arrays.asList(hsv2);
-            
-            Imgproc.calcHist(hsvList1, new org.opencv.core.MatOfInt(channels), 
-                new Mat(), hist1, new org.opencv.core.MatOfInt(histSize), 
-                new org.opencv.core.MatOfFloat(hRanges[0], hRanges[1], sRanges[0], sRanges[1]));
-            Core.normalize(hist1, hist1, 0, 1, Core.NORM_MINMAX);
-            
-            Imgproc.calcHist(hsvList2, new org.opencv.core.MatOfInt(channels), 
-                new Mat(), hist2, new org.opencv.core.MatOfInt(histSize), 
-                new org.opencv.core.MatOfFloat(hRanges[0], hRanges[1], sRanges[0], sRanges[1]));
-            Core.normalize(hist2, hist2, 0, 1, Core.NORM_MINMAX);
+            Mat hist1 = hsvHistogram(img1, mask1);
+            Mat hist2 = hsvHistogram(img2, mask2);
             
             // Compare histograms using correlation method
             double correlation = Imgproc.compareHist(hist1, hist2, Imgproc.HISTCMP_CORREL);
             double similarity = correlation * 100; // Convert to percentage
             
-            logger.info(String.format("Histogram comparison result: %.2f%% similarity", similarity));
+            logger.info("Histogram comparison result: {}% similarity", () -> String.format("%.2f", similarity));
             
             return similarity;
             
@@ -143,6 +223,137 @@ public class ImageComparisonUtil {
         }
     }
     
+    /**
+     * Normalised hue/saturation histogram used by the histogram comparison
+     * @param image BGR image
+     * @param mask 8-bit mask the size of the image (255 = count), or null for all pixels
+     * @return 50x60 histogram normalised to 0-1
+     */
+    static Mat hsvHistogram(Mat image, Mat mask) {
+        // Convert to HSV color space (better for color comparison)
+        Mat hsv = new Mat();
+        Imgproc.cvtColor(image, hsv, Imgproc.COLOR_BGR2HSV);
+        
+        int hBins = 50, sBins = 60;
+        int[] histSize = {hBins, sBins};
+        float[] hRanges = {0, 180};
+        float[] sRanges = {0, 256};
+        int[] channels = {0, 1};
+        
+        Mat hist = new Mat();
+        Imgproc.calcHist(java.util.Arrays.asList(hsv), new org.opencv.core.MatOfInt(channels), 
+            mask != null ? mask : new Mat(), hist, new org.opencv.core.MatOfInt(histSize), 
+            new org.opencv.core.MatOfFloat(hRanges[0], hRanges[1], sRanges[0], sRanges[1]));
+        Core.normalize(hist, hist, 0, 1, Core.NORM_MINMAX);
+        return hist;
+    }
+    
+    /**
+     * Compare images using multi-scale structural similarity (SSIM)
+     * Handles different sizes and keeps spatial layout; see SsimComparator
+     * @param imagePath1 Path to first image
+     * @param imagePath2 Path to second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesSsim(String imagePath1, String imagePath2) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot compare images.");
+            return 0.0;
+        }
+        return compareImagesSsim(read(imagePath1), read(imagePath2));
+    }
+    
+    /**
+     * Compare two in-memory encoded images using multi-scale structural similarity (SSIM)
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesSsim(byte[] image1, byte[] image2) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot compare images.");
+            return 0.0;
+        }
+        return compareImagesSsim(decode(image1), decode(image2));
+    }
+    
+    private static double compareImagesSsim(Mat img1, Mat img2) {
+        try {
+            if (img1.empty() || img2.empty()) {
+                logger.error("One or both images could not be loaded");
+                return 0.0;
+            }
+            double similarity = SsimComparator.compare(img1, img2);
+            logger.info("SSIM comparison result: {}% similarity", () -> String.format("%.2f", similarity));
+            return similarity;
+        } catch (Exception e) {
+            logger.error("Error comparing images with SSIM", e);
+            return 0.0;
+        }
+    }
+    
+    /**
+     * Compare images by ORB feature matching (robust to scale, crop and padding)
+     * Features are cached per file, so comparing one reference against many candidates describes it once
+     * @param imagePath1 Path to first image
+     * @param imagePath2 Path to second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesOrb(String imagePath1, String imagePath2) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot compare images.");
+            return 0.0;
+        }
+        return compareImagesOrb(fileKey(imagePath1), () -> read(imagePath1), fileKey(imagePath2), () -> read(imagePath2));
+    }
+    
+    /**
+     * Compare two in-memory encoded images by ORB feature matching
+     * Features are cached by content hash
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesOrb(byte[] image1, byte[] image2) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot compare images.");
+            return 0.0;
+        }
+        if (image1 == null || image2 == null) {
+            logger.error("One or both images could not be loaded");
+            return 0.0;
+        }
+        // Decoding is deferred so cached images are not decoded again
+        return compareImagesOrb(ScreenshotStore.contentHash(image1), () -> decode(image1),
+            ScreenshotStore.contentHash(image2), () -> decode(image2));
+    }
+    
+    private static double compareImagesOrb(String key1, Supplier<Mat> img1, String key2, Supplier<Mat> img2) {
+        try {
+            double similarity = OrbComparator.compare(key1, loaded(img1), key2, loaded(img2));
+            logger.info("ORB comparison result: {}% similarity", () -> String.format("%.2f", similarity));
+            return similarity;
+        } catch (Exception e) {
+            logger.error("Error comparing images with ORB", e);
+            return 0.0;
+        }
+    }
+    
+    private static Supplier<Mat> loaded(Supplier<Mat> image) {
+        return () -> {
+            Mat mat = image.get();
+            if (mat.empty()) {
+                throw new IllegalArgumentException("Image could not be loaded");
+            }
+            return mat;
+        };
+    }
+    
+    private static String fileKey(String imagePath) {
+        java.io.File file = new java.io.File(imagePath);
+        return file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length();
+    }
+    
     /**
      * Compare images with better handling for different sizes
      * Uses both pixel comparison and histogram comparison
@@ -151,28 +362,397 @@ public class ImageComparisonUtil {
      * @return Similarity percentage (0-100)
      */
     public static double compareImagesRobust(String imagePath1, String imagePath2) {
-        if (!opencvLoaded) {
-            logger.error("OpenCV not loaded. Cannot compare images.");
-            return 0.0;
+        return compareImagesDetailed(imagePath1, imagePath2).getSimilarity();
+    }
+    
+    /**
+     * Compare two in-memory encoded images using both pixel and histogram comparison
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesRobust(byte[] image1, byte[] image2) {
+        return compareImagesDetailed(image1, image2).getSimilarity();
+    }
+    
+    /**
+     * Compare two in-memory encoded images using both pixel and histogram comparison with a specific backend
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @param backend Backend to run the comparison on
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImagesRobust(byte[] image1, byte[] image2, Backend backend) {
+        return compareImagesDetailed(image1, image2, backend).getSimilarity();
+    }
+    
+    /**
+     * Compare images like compareImagesRobust and report which path decided
+     * @param imagePath1 Path to first image
+     * @param imagePath2 Path to second image
+     * @return Comparison result
+     * @throws IllegalStateException if image.compare.backend=opencv and OpenCV cannot be loaded
+     */
+    public static ComparisonResult compareImagesDetailed(String imagePath1, String imagePath2) {
+        if (backend() == Backend.JAVA) {
+            return compareImagesDetailed(readBytes(imagePath1), readBytes(imagePath2), Backend.JAVA);
         }
+        requireOpenCv();
         
+        // Decode each image once for all comparisons
+        return compareImagesDetailed(read(imagePath1), read(imagePath2));
+    }
+    
+    /**
+     * Compare in-memory encoded images like compareImagesRobust and report which path decided
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @return Comparison result
+     */
+    public static ComparisonResult compareImagesDetailed(byte[] image1, byte[] image2) {
+        return compareImagesDetailed(image1, image2, backend());
+    }
+    
+    /**
+     * Compare in-memory encoded images like compareImagesRobust with a specific backend
+     * The Java backend has no hash pre-check or SSIM/ORB metric and always runs pixel and histogram.
+     * @param image1 Encoded first image (e.g. PNG bytes)
+     * @param image2 Encoded second image
+     * @param backend Backend to run the comparison on
+     * @return Comparison result
+     * @throws IllegalStateException if image.compare.backend=opencv and OpenCV cannot be loaded
+     */
+    public static ComparisonResult compareImagesDetailed(byte[] image1, byte[] image2, Backend backend) {
+        if (backend == Backend.JAVA) {
+            return compareImagesDetailed(image1, ComparisonRegion.full(), image2, ComparisonRegion.full(), Backend.JAVA);
+        }
+        requireOpenCv();
+        return compareImagesDetailed(decode(image1), decode(image2));
+    }
+    
+    /**
+     * Compare in-memory encoded images of the same screen, limited to a region
+     * @param image1 Encoded first image
+     * @param image2 Encoded second image
+     * @param region Pixels to compare in both images
+     * @return Comparison result
+     */
+    public static ComparisonResult compareImagesDetailed(byte[] image1, byte[] image2, ComparisonRegion region) {
+        return compareImagesDetailed(image1, region, image2, region);
+    }
+    
+    /**
+     * Compare in-memory encoded images, each limited to the region of its own screen
+     * Metrics run on cropped sub-matrices, and excluded pixels are ignored
+     * @param image1 Encoded first image
+     * @param region1 Pixels to compare in the first image (e.g. ComparisonRegion.forScreen("search_result"))
+     * @param image2 Encoded second image
+     * @param region2 Pixels to compare in the second image
+     * @return Comparison result
+     */
+    public static ComparisonResult compareImagesDetailed(byte[] image1, ComparisonRegion region1,
+                                                         byte[] image2, ComparisonRegion region2) {
+        return compareImagesDetailed(image1, region1, image2, region2, backend());
+    }
+    
+    /**
+     * Compare in-memory encoded images, each limited to the region of its own screen, with a specific backend
+     * The Java backend crops to the included rectangle and runs pixel and histogram; regions with
+     * excluded areas, several includes or a mask image need OpenCV.
+     * @param image1 Encoded first image
+     * @param region1 Pixels to compare in the first image
+     * @param image2 Encoded second image
+     * @param region2 Pixels to compare in the second image
+     * @param backend Backend to run the comparison on
+     * @return Comparison result
+     * @throws IllegalStateException if OpenCV is needed but cannot be loaded
+     */
+    public static ComparisonResult compareImagesDetailed(byte[] image1, ComparisonRegion region1,
+                                                         byte[] image2, ComparisonRegion region2, Backend backend) {
+        if (backend == Backend.JAVA) {
+            if (!region1.isRectangle() || !region2.isRectangle()) {
+                throw new IllegalStateException("Comparison regions with excluded areas or masks need OpenCV, which "
+                    + (OpenCvLoader.ensureLoaded() ? "is disabled by image.compare.backend=java" : "could not be loaded"));
+            }
+            JavaPixelBackend.Raster img1 = JavaPixelBackend.Raster.decode(image1);
+            JavaPixelBackend.Raster img2 = JavaPixelBackend.Raster.decode(image2);
+            if (img1 == null || img2 == null) {
+                logger.error("One or both images could not be loaded");
+                return failed();
+            }
+            img1 = crop(img1, region1);
+            img2 = crop(img2, region2);
+            double pixelSimilarity = JavaPixelBackend.compareImages(img1, img2);
+            double histogramSimilarity = JavaPixelBackend.compareImagesHistogram(img1, img2);
+            double finalSimilarity = Math.max(pixelSimilarity, histogramSimilarity);
+            logger.info("Robust comparison (Java backend) - Pixel: {}%, Histogram: {}%, Final: {}%",
+                () -> String.format("%.2f", pixelSimilarity), () -> String.format("%.2f", histogramSimilarity), () -> String.format("%.2f", finalSimilarity));
+            return new ComparisonResult(finalSimilarity, ComparisonResult.DecidedBy.FULL_METRICS,
+                -1, pixelSimilarity, histogramSimilarity);
+        }
+        requireOpenCv();
+        Mat img1 = decode(image1);
+        Mat img2 = decode(image2);
+        if (img1.empty() || img2.empty()) {
+            logger.error("One or both images could not be loaded");
+            return failed();
+        }
+        Mat crop1 = region1.crop(img1);
+        Mat keep1 = region1.keepMask(img1.size());
+        Mat crop2 = region2.crop(img2);
+        Mat keep2 = region2.keepMask(img2.size());
+        // Reports are built from what was compared, not the full frames
+        return compareImagesDetailed(crop1, keep1, crop2, keep2).withImages(crop1, keep1, crop2, keep2);
+    }
+    
+    /**
+     * Compare a capture against a stored visual baseline with the configured path
+     * The baseline's signatures (hashes, histogram, gray downscale, ORB features) are used
+     * as stored; only the capture's are computed. The pixel metric runs on the gray downscale.
+     * The Java backend compares the full-size golden image like compareImagesDetailed.
+     * @param baseline Visual baseline (see VisualBaselineStore)
+     * @param image Encoded capture
+     * @return Comparison result
+     * @throws IllegalStateException if image.compare.backend=opencv and OpenCV cannot be loaded
+     */
+    public static ComparisonResult compareWithBaseline(VisualBaseline baseline, byte[] image) {
+        if (backend() == Backend.JAVA) {
+            // The stored signatures are OpenCV matrices; compare against the golden image instead
+            return compareImagesDetailed(baseline.getGolden(), image, Backend.JAVA);
+        }
+        requireOpenCv();
+        try {
+            Mat img = decode(image);
+            if (img.empty()) {
+                logger.error("Image could not be loaded");
+                return failed();
+            }
+            
+            int hashDistance = -1;
+            if (HASH_PRECHECK) {
+                PerceptualHash hash = PerceptualHash.of(img);
+                int farthest = baseline.getHash().maxDistance(hash);
+                int nearest = baseline.getHash().minDistance(hash);
+                if (farthest <= HASH_MATCH_MAX_DISTANCE) {
+                    return decidedByHash(ComparisonResult.DecidedBy.HASH_MATCH, farthest);
+                }
+                if (nearest >= HASH_MISMATCH_MIN_DISTANCE) {
+                    return decidedByHash(ComparisonResult.DecidedBy.HASH_MISMATCH, nearest);
+                }
+                hashDistance = farthest;
+            }
+            
+            if ("orb".equals(METRIC)) {
+                double orb = OrbComparator.compare(baseline.getFeatures(), OrbComparator.detect(img));
+                logger.info("ORB baseline comparison result: {}% similarity", () -> String.format("%.2f", orb));
+                return new ComparisonResult(orb, ComparisonResult.DecidedBy.ORB, hashDistance, Double.NaN, Double.NaN);
+            }
+            if ("ssim".equals(METRIC)) {
+                double ssim = SsimComparator.compare(baseline.getGray(), img);
+                logger.info("SSIM baseline comparison result: {}% similarity", () -> String.format("%.2f", ssim));
+                return new ComparisonResult(ssim, ComparisonResult.DecidedBy.SSIM, hashDistance, Double.NaN, Double.NaN);
+            }
+            
+            Mat expected = baseline.getGray();
+            Mat actual = VisualBaseline.grayDownscale(img);
+            if (actual.size().width != expected.size().width || actual.size().height != expected.size().height) {
+                Imgproc.resize(actual, actual, expected.size(), 0, 0, Imgproc.INTER_AREA);
+            }
+            Mat diff = new Mat();
+            Core.absdiff(expected, actual, diff);
+            double totalPixels = diff.rows() * diff.cols();
+            double pixelSimilarity = ((totalPixels - Core.countNonZero(diff)) / totalPixels) * 100;
+            double histogramSimilarity = Imgproc.compareHist(baseline.getHistogram(), hsvHistogram(img, null),
+                Imgproc.HISTCMP_CORREL) * 100;
+            double finalSimilarity = Math.max(pixelSimilarity, histogramSimilarity);
+            
+            logger.info("Baseline comparison - Pixel: {}%, Histogram: {}%, Final: {}%",
+                () -> String.format("%.2f", pixelSimilarity), () -> String.format("%.2f", histogramSimilarity), () -> String.format("%.2f", finalSimilarity));
+            
+            return new ComparisonResult(finalSimilarity, ComparisonResult.DecidedBy.FULL_METRICS,
+                hashDistance, pixelSimilarity, histogramSimilarity);
+            
+        } catch (Exception e) {
+            logger.error("Error comparing image with visual baseline", e);
+            return failed();
+        }
+    }
+    
+    /**
+     * Compare one reference image against many candidates in parallel
+     * @param reference Encoded reference image (decoded once and shared)
+     * @param candidates Encoded candidate images
+     * @return Results in completion order; BatchResult.getIndex() gives the candidate position
+     */
+    public static List<BatchImageComparator.BatchResult> compareAgainstReference(byte[] reference, List<byte[]> candidates) {
+        List<BatchImageComparator.BatchResult> results = new ArrayList<>(candidates.size());
+        BatchImageComparator.compareAgainstReference(reference, candidates, results::add);
+        return results;
+    }
+    
+    /**
+     * Compare many image pairs in parallel
+     * @param pairs Image pairs
+     * @return Results in completion order; BatchResult.getIndex() gives the pair position
+     */
+    public static List<BatchImageComparator.BatchResult> compareBatch(List<BatchImageComparator.ImagePair> pairs) {
+        return BatchImageComparator.comparePairs(pairs);
+    }
+    
+    /**
+     * Compare two decoded images with the configured path (hash pre-check, then full metric)
+     * The first image is only read, so it can be shared between threads
+     * @param img1 Decoded first image
+     * @param img2 Decoded second image
+     * @return Comparison result
+     */
+    static ComparisonResult compareDecoded(Mat img1, Mat img2) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot compare images.");
+            return failed();
+        }
+        return compareImagesDetailed(img1, img2);
+    }
+    
+    /**
+     * Decode an in-memory encoded image for callers in this package
+     * @param image Encoded image bytes
+     * @return Decoded BGR image (empty if it could not be decoded or OpenCV is not loaded)
+     */
+    static Mat decodeImage(byte[] image) {
+        return OpenCvLoader.ensureLoaded() ? decode(image) : new Mat();
+    }
+    
+    /**
+     * Perceptual hashes first: if all three agree the images clearly match or clearly
+     * differ, the verdict is returned as 100% or 0% so it lands on the right side of any
+     * threshold. Only the ambiguous band between the two distance thresholds pays for
+     * the configured full metric.
+     */
+    private static ComparisonResult compareImagesDetailed(Mat img1, Mat img2) {
+        return compareImagesDetailed(img1, null, img2, null);
+    }
+    
+    /**
+     * @param keep1 Mask of pixels to compare in img1 (255 = compare), or null for all
+     * @param keep2 Mask of pixels to compare in img2, or null for all
+     */
+    private static ComparisonResult compareImagesDetailed(Mat img1, Mat keep1, Mat img2, Mat keep2) {
         try {
-            // Get both similarity scores
-            double pixelSimilarity = compareImages(imagePath1, imagePath2);
-            double histogramSimilarity = compareImagesHistogram(imagePath1, imagePath2);
+            if (img1.empty() || img2.empty()) {
+                logger.error("One or both images could not be loaded");
+                return failed();
+            }
+            
+            // Structure-based metrics see masked-out pixels as flat black in both images
+            Mat flat1 = neutralise(img1, keep1);
+            Mat flat2 = neutralise(img2, keep2);
+            
+            int hashDistance = -1;
+            if (HASH_PRECHECK) {
+                PerceptualHash hash1 = PerceptualHash.of(flat1);
+                PerceptualHash hash2 = PerceptualHash.of(flat2);
+                int farthest = hash1.maxDistance(hash2);
+                int nearest = hash1.minDistance(hash2);
+                if (farthest <= HASH_MATCH_MAX_DISTANCE) {
+                    return decidedByHash(ComparisonResult.DecidedBy.HASH_MATCH, farthest);
+                }
+                if (nearest >= HASH_MISMATCH_MIN_DISTANCE) {
+                    return decidedByHash(ComparisonResult.DecidedBy.HASH_MISMATCH, nearest);
+                }
+                hashDistance = farthest;
+            }
+            
+            if ("orb".equals(METRIC)) {
+                double orb = OrbComparator.compare(null, () -> flat1, null, () -> flat2);
+                logger.info("ORB comparison result: {}% similarity", () -> String.format("%.2f", orb));
+                return new ComparisonResult(orb, ComparisonResult.DecidedBy.ORB, hashDistance, Double.NaN, Double.NaN);
+            }
+            if ("ssim".equals(METRIC)) {
+                // One spatially aware metric instead of two that each miss something
+                double ssim = SsimComparator.compare(flat1, flat2);
+                logger.info("SSIM comparison result: {}% similarity", () -> String.format("%.2f", ssim));
+                return new ComparisonResult(ssim, ComparisonResult.DecidedBy.SSIM, hashDistance, Double.NaN, Double.NaN);
+            }
+            
+            // Get both similarity scores (pixel comparison may resize its second input, so pass a copy)
+            double pixelSimilarity = compareImages(img1, img2.clone(), pixelMask(img1.size(), keep1, keep2));
+            double histogramSimilarity = compareImagesHistogram(img1, img2, keep1, keep2);
             
             // Use the higher score (more forgiving for size differences)
             double finalSimilarity = Math.max(pixelSimilarity, histogramSimilarity);
             
-            logger.info(String.format("Robust comparison - Pixel: %.2f%%, Histogram: %.2f%%, Final: %.2f%%", 
-                pixelSimilarity, histogramSimilarity, finalSimilarity));
+            logger.info("Robust comparison - Pixel: {}%, Histogram: {}%, Final: {}%",
+                () -> String.format("%.2f", pixelSimilarity), () -> String.format("%.2f", histogramSimilarity), () -> String.format("%.2f", finalSimilarity));
             
-            return finalSimilarity;
+            return new ComparisonResult(finalSimilarity, ComparisonResult.DecidedBy.FULL_METRICS,
+                hashDistance, pixelSimilarity, histogramSimilarity);
             
         } catch (Exception e) {
             logger.error("Error in robust image comparison", e);
-            return 0.0;
+            return failed();
+        }
+    }
+    
+    private static Mat neutralise(Mat image, Mat keep) {
+        if (keep == null) {
+            return image;
         }
+        Mat ignored = new Mat();
+        Core.bitwise_not(keep, ignored);
+        Mat copy = image.clone();
+        copy.setTo(Scalar.all(0), ignored);
+        return copy;
+    }
+    
+    /**
+     * Combine both keep masks in img1's geometry (the pixel comparison resizes img2 to img1)
+     */
+    private static Mat pixelMask(Size size, Mat keep1, Mat keep2) {
+        if (keep2 == null) {
+            return keep1;
+        }
+        Mat scaled = new Mat();
+        Imgproc.resize(keep2, scaled, size, 0, 0, Imgproc.INTER_NEAREST);
+        if (keep1 != null) {
+            Core.bitwise_and(scaled, keep1, scaled);
+        }
+        return scaled;
+    }
+    
+    private static ComparisonResult decidedByHash(ComparisonResult.DecidedBy decidedBy, int distance) {
+        // A Hamming-distance percentage is not on the full metrics' scale (a clear match at
+        // distance 6 would read 90.6%), so report the verdict itself; the distance stays on the result
+        double similarity = decidedBy == ComparisonResult.DecidedBy.HASH_MATCH ? 100.0 : 0.0;
+        logger.info("Perceptual hash comparison - distance: {}, {}: {}%",
+            () -> distance, () -> decidedBy, () -> String.format("%.2f", similarity));
+        return new ComparisonResult(similarity, decidedBy, distance, Double.NaN, Double.NaN);
+    }
+    
+    private static ComparisonResult failed() {
+        return new ComparisonResult(0.0, ComparisonResult.DecidedBy.ERROR, -1, Double.NaN, Double.NaN);
+    }
+    
+    /**
+     * Compare two images held in the ScreenshotStore
+     * @param hash1 Content hash of the first image
+     * @param hash2 Content hash of the second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareStoredImages(String hash1, String hash2) {
+        return compareImagesRobust(ScreenshotStore.get(hash1), ScreenshotStore.get(hash2));
+    }
+    
+    /**
+     * Create a difference image and put it in the ScreenshotStore
+     * @param actualImage Encoded actual image
+     * @param expectedImage Encoded expected image
+     * @param step Step label to index the diff under for the current scenario
+     * @return Content hash of the diff image, or null if it could not be created
+     */
+    public static String storeDiffImage(byte[] actualImage, byte[] expectedImage, String step) {
+        byte[] diff = createDiffImage(actualImage, expectedImage);
+        return diff != null ? ScreenshotStore.put(step, diff, "png") : null;
     }
     
     /**
@@ -185,14 +765,14 @@ public class ImageComparisonUtil {
     public static double saveComparisonReport(String actualImagePath, 
                                              String expectedImagePath, 
                                              String outputPath) {
-        if (!opencvLoaded) {
+        if (!OpenCvLoader.ensureLoaded()) {
             logger.error("OpenCV not loaded. Cannot create comparison report.");
             return 0.0;
         }
         
         try {
-            Mat img1 = Imgcodecs.imread(actualImagePath);
-            Mat img2 = Imgcodecs.imread(expectedImagePath);
+            Mat img1 = read(actualImagePath);
+            Mat img2 = read(expectedImagePath);
             
             if (img1.empty() || img2.empty()) {
                 logger.error("One or both images could not be loaded");
@@ -226,4 +806,171 @@ public class ImageComparisonUtil {
             return 0.0;
         }
     }
+
+    /**
+     * Create a difference image of two in-memory encoded images
+     * @param actualImage Encoded actual image
+     * @param expectedImage Encoded expected image
+     * @return PNG-encoded absolute difference, or null if it could not be created
+     */
+    public static byte[] createDiffImage(byte[] actualImage, byte[] expectedImage) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            logger.error("OpenCV not loaded. Cannot create difference image.");
+            return null;
+        }
+        
+        try {
+            Mat img1 = decode(actualImage);
+            Mat img2 = decode(expectedImage);
+            
+            if (img1.empty() || img2.empty()) {
+                logger.error("One or both images could not be loaded");
+                return null;
+            }
+            
+            return createDiffImage(img1, img2);
+            
+        } catch (Exception e) {
+            logger.error("Error creating difference image", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Create a difference image of two decoded images without modifying them
+     * @param actual Decoded actual image
+     * @param expected Decoded expected image (resized to the actual image if needed)
+     * @return PNG-encoded absolute difference
+     */
+    static byte[] createDiffImage(Mat actual, Mat expected) {
+        return createDiffImage(actual, null, expected, null);
+    }
+    
+    /**
+     * Difference image of two decoded images in actual's geometry, blank where either mask excludes
+     * @param keepActual Keep mask of actual (255 = compared), or null for all pixels
+     * @param keepExpected Keep mask of expected, or null for all pixels
+     */
+    static byte[] createDiffImage(Mat actual, Mat keepActual, Mat expected, Mat keepExpected) {
+        Mat resized = expected;
+        if (actual.size().width != expected.size().width || actual.size().height != expected.size().height) {
+            resized = new Mat();
+            Imgproc.resize(expected, resized, actual.size());
+        }
+        
+        Mat diff = new Mat();
+        Core.absdiff(actual, resized, diff);
+        Mat keep = pixelMask(actual.size(), keepActual, keepExpected);
+        if (keep != null) {
+            Mat ignored = new Mat();
+            Core.bitwise_not(keep, ignored);
+            diff.setTo(Scalar.all(0), ignored);
+        }
+        MatOfByte encoded = new MatOfByte();
+        Imgcodecs.imencode(".png", diff, encoded);
+        return encoded.toArray();
+    }
+    
+    /**
+     * Pixel similarity of two decoded images without modifying them
+     * @param img1 Decoded first image
+     * @param img2 Decoded second image
+     * @return Similarity percentage (0-100)
+     */
+    static double pixelSimilarity(Mat img1, Mat img2) {
+        return pixelSimilarity(img1, null, img2, null);
+    }
+    
+    /**
+     * Pixel similarity of two decoded images, counting only pixels both keep masks include
+     * @param keep1 Keep mask of img1, or null for all pixels
+     * @param keep2 Keep mask of img2, or null for all pixels
+     */
+    static double pixelSimilarity(Mat img1, Mat keep1, Mat img2, Mat keep2) {
+        // The pixel comparison resizes its second input in place
+        return compareImages(img1, img2.clone(), pixelMask(img1.size(), keep1, keep2));
+    }
+    
+    /**
+     * Histogram similarity of two decoded images
+     * @param img1 Decoded first image
+     * @param img2 Decoded second image
+     * @return Similarity percentage (0-100)
+     */
+    static double histogramSimilarity(Mat img1, Mat img2) {
+        return histogramSimilarity(img1, null, img2, null);
+    }
+    
+    /**
+     * Histogram similarity of two decoded images, each limited to its keep mask
+     * @param keep1 Keep mask of img1, or null for all pixels
+     * @param keep2 Keep mask of img2, or null for all pixels
+     */
+    static double histogramSimilarity(Mat img1, Mat keep1, Mat img2, Mat keep2) {
+        return compareImagesHistogram(img1, img2, keep1, keep2);
+    }
+    
+    /**
+     * Decode an in-memory encoded image
+     * @param image Encoded image bytes
+     * @return Decoded BGR image (empty if it could not be decoded)
+     */
+    private static Mat decode(byte[] image) {
+        return ScreenshotCodec.decode(image);
+    }
+    
+    /**
+     * Backend for calls that do not choose one
+     * @return Configured backend; for "auto", OpenCV if it loaded and Java otherwise
+     */
+    public static Backend backend() {
+        if ("java".equals(BACKEND)) {
+            return Backend.JAVA;
+        }
+        if ("opencv".equals(BACKEND)) {
+            return Backend.OPENCV;
+        }
+        return OpenCvLoader.ensureLoaded() ? Backend.OPENCV : Backend.JAVA;
+    }
+    
+    private static void requireOpenCv() {
+        if (!OpenCvLoader.ensureLoaded()) {
+            throw new IllegalStateException("OpenCV could not be loaded and image.compare.backend=opencv;"
+                + " use image.compare.backend=auto or java to compare without it");
+        }
+    }
+    
+    private static JavaPixelBackend.Raster crop(JavaPixelBackend.Raster image, ComparisonRegion region) {
+        if (region.isFull()) {
+            return image;
+        }
+        Rect bounds = region.bounds(new Size(image.getWidth(), image.getHeight()));
+        return image.crop(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+    
+    /**
+     * Read an encoded image file, waiting for any pending asynchronous write of that file first
+     * @param imagePath Path to image
+     * @return File content, or null if it could not be read
+     */
+    private static byte[] readBytes(String imagePath) {
+        java.nio.file.Path path = java.nio.file.Paths.get(imagePath);
+        ScreenshotWriter.awaitPending(path);
+        try {
+            return java.nio.file.Files.readAllBytes(path);
+        } catch (java.io.IOException e) {
+            logger.error("Could not read image " + imagePath, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Read an image in any format ScreenshotCodec decodes, waiting for any pending
+     * asynchronous write of that file first
+     * @param imagePath Path to image
+     * @return Decoded image (empty if it could not be read)
+     */
+    private static Mat read(String imagePath) {
+        return decode(readBytes(imagePath));
+    }
 }
@@ -0,0 +1,526 @@
+package com.getgo.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * JavaPixelBackend is a native-free implementation of the pixel and histogram comparisons
+ * in {@link ImageComparisonUtil}, working on raw BGR/RGBA/gray byte arrays.
+ * - Conversions reproduce OpenCV's fixed-point arithmetic (gray, HSV, bilinear resize) bit for
+ *   bit, so both backends give the same numbers, also when one image has to be resized
+ * - The diff, count and statistics loops are plain counted loops over primitive arrays without
+ *   branches or calls, the shape HotSpot's superword pass turns into SIMD code
+ * Used automatically when OpenCV cannot be loaded, or selected with image.compare.backend=java.
+ */
+public class JavaPixelBackend {
+
+    private static final Logger logger = LogManager.getLogger(JavaPixelBackend.class);
+
+    // OpenCV cvtColor BGR2GRAY fixed-point coefficients (Y = 0.299 R + 0.587 G + 0.114 B)
+    private static final int GRAY_SHIFT = 15;
+    private static final int R2Y = 9798;
+    private static final int G2Y = 19235;
+    private static final int B2Y = 3735;
+
+    // OpenCV cvtColor BGR2HSV (8-bit, hue 0-180) division tables
+    private static final int HSV_SHIFT = 12;
+    private static final int[] SDIV = new int[256];
+    private static final int[] HDIV = new int[256];
+    // Bin of each 8-bit hue/saturation value, computed in double like calcHist's lookup tables
+    private static final int[] H_BIN = new int[256];
+    private static final int[] S_BIN = new int[256];
+
+    // OpenCV INTER_LINEAR fixed-point weights
+    private static final int RESIZE_COEF_BITS = 11;
+    private static final int RESIZE_COEF_SCALE = 1 << RESIZE_COEF_BITS;
+
+    // Same binning as ImageComparisonUtil.hsvHistogram
+    private static final int H_BINS = 50;
+    private static final int S_BINS = 60;
+
+    static {
+        for (int i = 1; i < 256; i++) {
+            SDIV[i] = (int) Math.rint((255 << HSV_SHIFT) / (double) i);
+            HDIV[i] = (int) Math.rint((180 << HSV_SHIFT) / (6.0 * i));
+        }
+        for (int i = 0; i < 256; i++) {
+            H_BIN[i] = Math.min(H_BINS - 1, (int) Math.floor(i * (H_BINS / 180.0)));
+            S_BIN[i] = Math.min(S_BINS - 1, (int) Math.floor(i * (S_BINS / 256.0)));
+        }
+    }
+
+    /**
+     * Raw pixels: interleaved BGR (3 channels) or gray (1 channel), rows packed without padding
+     */
+    public static class Raster {
+        private final int width;
+        private final int height;
+        private final int channels;
+        private final byte[] data;
+
+        private Raster(int width, int height, int channels, byte[] data) {
+            if (data.length != width * height * channels) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected %d bytes for %dx%dx%d pixels, got %d", width * height * channels, width, height, channels, data.length));
+            }
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+            this.data = data;
+        }
+
+        /**
+         * Wrap interleaved BGR pixels (OpenCV's layout)
+         * @param data width * height * 3 bytes
+         * @param width Width in pixels
+         * @param height Height in pixels
+         * @return Raster sharing the array
+         */
+        public static Raster bgr(byte[] data, int width, int height) {
+            return new Raster(width, height, 3, data);
+        }
+
+        /**
+         * Wrap 8-bit gray pixels
+         * @param data width * height bytes
+         * @param width Width in pixels
+         * @param height Height in pixels
+         * @return Raster sharing the array
+         */
+        public static Raster gray(byte[] data, int width, int height) {
+            return new Raster(width, height, 1, data);
+        }
+
+        /**
+         * Convert interleaved RGBA pixels (e.g. a device frame buffer); alpha is dropped like imdecode does
+         * @param data width * height * 4 bytes
+         * @param width Width in pixels
+         * @param height Height in pixels
+         * @return BGR raster
+         */
+        public static Raster rgba(byte[] data, int width, int height) {
+            int pixels = width * height;
+            if (data.length != pixels * 4) {
+                throw new IllegalArgumentException("Expected " + pixels * 4 + " RGBA bytes, got " + data.length);
+            }
+            byte[] bgr = new byte[pixels * 3];
+            for (int i = 0; i < pixels; i++) {
+                bgr[i * 3] = data[i * 4 + 2];
+                bgr[i * 3 + 1] = data[i * 4 + 1];
+                bgr[i * 3 + 2] = data[i * 4];
+            }
+            return new Raster(width, height, 3, bgr);
+        }
+
+        /**
+         * Decode an encoded image (PNG, JPEG, ...) with ImageIO into BGR; QOI is decoded by ScreenshotCodec
+         * PNG and QOI decode to the same pixels as OpenCV; JPEG decoders may differ slightly.
+         * @param image Encoded image bytes
+         * @return BGR raster, or null if the image could not be decoded
+         */
+        public static Raster decode(byte[] image) {
+            if (image == null || image.length == 0) {
+                return null;
+            }
+            if (ScreenshotCodec.isQoi(image)) {
+                return ScreenshotCodec.decodeQoi(image);
+            }
+            BufferedImage decoded;
+            try {
+                decoded = ImageIO.read(new ByteArrayInputStream(image));
+            } catch (IOException e) {
+                logger.warn("Could not decode image: {}", e.getMessage());
+                return null;
+            }
+            return decoded != null ? fromBufferedImage(decoded) : null;
+        }
+
+        private static Raster fromBufferedImage(BufferedImage image) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int pixels = width * height;
+            byte[] bgr = new byte[pixels * 3];
+            switch (image.getType()) {
+                case BufferedImage.TYPE_3BYTE_BGR: {
+                    byte[] src = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                    System.arraycopy(src, 0, bgr, 0, bgr.length);
+                    break;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR: {
+                    byte[] src = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                    for (int i = 0; i < pixels; i++) {
+                        bgr[i * 3] = src[i * 4 + 1];
+                        bgr[i * 3 + 1] = src[i * 4 + 2];
+                        bgr[i * 3 + 2] = src[i * 4 + 3];
+                    }
+                    break;
+                }
+                case BufferedImage.TYPE_BYTE_GRAY: {
+                    // Raw samples: getRGB would apply a gamma conversion OpenCV does not
+                    byte[] src = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                    for (int i = 0; i < pixels; i++) {
+                        bgr[i * 3] = src[i];
+                        bgr[i * 3 + 1] = src[i];
+                        bgr[i * 3 + 2] = src[i];
+                    }
+                    break;
+                }
+                default: {
+                    int[] row = new int[width];
+                    for (int y = 0; y < height; y++) {
+                        image.getRGB(0, y, width, 1, row, 0, width);
+                        for (int x = 0; x < width; x++) {
+                            int i = (y * width + x) * 3;
+                            bgr[i] = (byte) row[x];
+                            bgr[i + 1] = (byte) (row[x] >> 8);
+                            bgr[i + 2] = (byte) (row[x] >> 16);
+                        }
+                    }
+                }
+            }
+            return new Raster(width, height, 3, bgr);
+        }
+
+        /**
+         * Copy a rectangle out of the raster
+         * @param x Left edge in pixels
+         * @param y Top edge in pixels
+         * @param width Width in pixels
+         * @param height Height in pixels
+         * @return New raster with the same channels
+         */
+        public Raster crop(int x, int y, int width, int height) {
+            if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width || y + height > this.height) {
+                throw new IllegalArgumentException(String.format("Crop %d,%d %dx%d is outside the %dx%d raster",
+                    x, y, width, height, this.width, this.height));
+            }
+            int rowBytes = width * channels;
+            byte[] cropped = new byte[rowBytes * height];
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(data, ((y + row) * this.width + x) * channels, cropped, row * rowBytes, rowBytes);
+            }
+            return new Raster(width, height, channels, cropped);
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Pixel comparison, same as ImageComparisonUtil.compareImages: the second image is resized
+     * to the first, both are converted to gray, and identical pixels are counted
+     * @param img1 First image
+     * @param img2 Second image
+     * @return Similarity percentage (0-100)
+     */
+    public static double compareImages(Raster img1, Raster img2) {
+        Raster resized = resize(img2, img1.width, img1.height);
+        byte[] gray1 = toGray(img1);
+        byte[] gray2 = toGray(resized);
+        double totalPixels = gray1.length;
+        double nonZeroPixels = countNonZeroDiff(gray1, gray2);
+        return ((totalPixels - nonZeroPixels) / totalPixels) * 100;
+    }
+
+    /**
+     * Histogram comparison, same as ImageComparisonUtil.compareImagesHistogram: correlation of
+     * min-max normalised 50x60 hue/saturation histograms
+     * @param img1 First image (BGR)
+     * @param img2 Second image (BGR)
+     * @return Similarity percentage (-100 to 100)
+     */
+    public static double compareImagesHistogram(Raster img1, Raster img2) {
+        return correlation(hsvHistogram(img1), hsvHistogram(img2)) * 100;
+    }
+
+    /**
+     * Convert to 8-bit gray with OpenCV's BGR2GRAY rounding
+     * @param image BGR or gray image
+     * @return Gray pixels (the raster's own array if it is already gray)
+     */
+    public static byte[] toGray(Raster image) {
+        if (image.channels == 1) {
+            return image.data;
+        }
+        byte[] src = image.data;
+        byte[] gray = new byte[image.width * image.height];
+        int round = 1 << (GRAY_SHIFT - 1);
+        for (int i = 0; i < gray.length; i++) {
+            int b = src[i * 3] & 0xff;
+            int g = src[i * 3 + 1] & 0xff;
+            int r = src[i * 3 + 2] & 0xff;
+            gray[i] = (byte) ((b * B2Y + g * G2Y + r * R2Y + round) >> GRAY_SHIFT);
+        }
+        return gray;
+    }
+
+    /**
+     * Bilinear resize, bit-exact with OpenCV's 8-bit INTER_LINEAR: float pixel-centre mapping,
+     * 11-bit weights rounded one by one, the vectorised vertical pass's reduced-precision
+     * arithmetic, and the 2x2 box filter OpenCV switches to for exact halving
+     * @param image Source image
+     * @param width Target width
+     * @param height Target height
+     * @return Resized image (the source itself if the size already matches)
+     */
+    public static Raster resize(Raster image, int width, int height) {
+        if (image.width == width && image.height == height) {
+            return image;
+        }
+        if (image.width == width * 2 && image.height == height * 2) {
+            return halve(image);
+        }
+        int channels = image.channels;
+        int[] xOffset = new int[width];
+        int[] xWeight0 = new int[width];
+        int[] xWeight1 = new int[width];
+        mapAxis(image.width, width, true, xOffset, xWeight0, xWeight1);
+        int[] yOffset = new int[height];
+        int[] yWeight0 = new int[height];
+        int[] yWeight1 = new int[height];
+        mapAxis(image.height, height, false, yOffset, yWeight0, yWeight1);
+
+        byte[] src = image.data;
+        byte[] dst = new byte[width * height * channels];
+        int rowLength = width * channels;
+        int[] row0 = new int[rowLength];
+        int[] row1 = new int[rowLength];
+        for (int y = 0; y < height; y++) {
+            int sy0 = Math.max(0, Math.min(yOffset[y], image.height - 1));
+            int sy1 = Math.max(0, Math.min(yOffset[y] + 1, image.height - 1));
+            horizontal(src, sy0 * image.width * channels, channels, xOffset, xWeight0, xWeight1, row0);
+            horizontal(src, sy1 * image.width * channels, channels, xOffset, xWeight0, xWeight1, row1);
+            int w0 = yWeight0[y];
+            int w1 = yWeight1[y];
+            int out = y * rowLength;
+            // OpenCV's SIMD pass: 16-bit products keeping the high half, then a rounding shift by 2
+            for (int i = 0; i < rowLength; i++) {
+                int v = ((((row0[i] >> 4) * w0) >> 16) + (((row1[i] >> 4) * w1) >> 16) + 2) >> 2;
+                dst[out + i] = (byte) Math.min(255, Math.max(0, v));
+            }
+        }
+        return new Raster(width, height, channels, dst);
+    }
+
+    /**
+     * Per-pixel absolute difference
+     * @param a First image pixels
+     * @param b Second image pixels, same length
+     * @param out Receives |a - b|
+     */
+    public static void absDiff(byte[] a, byte[] b, byte[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) Math.abs((a[i] & 0xff) - (b[i] & 0xff));
+        }
+    }
+
+    /**
+     * Count nonzero pixels
+     * @param pixels 8-bit pixels
+     * @return Number of nonzero values
+     */
+    public static int countNonZero(byte[] pixels) {
+        int count = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            // (v | -v) has its sign bit set exactly when v != 0, so no branch in the loop
+            int v = pixels[i] & 0xff;
+            count += (v | -v) >>> 31;
+        }
+        return count;
+    }
+
+    /**
+     * countNonZero(absDiff(a, b)) in one pass without the intermediate array
+     * @param a First image pixels
+     * @param b Second image pixels, same length
+     * @return Number of positions where the pixels differ
+     */
+    public static int countNonZeroDiff(byte[] a, byte[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            int v = a[i] ^ b[i];
+            count += (v | -v) >>> 31;
+        }
+        return count;
+    }
+
+    /**
+     * Mean and variance of 8-bit pixels (like Core.meanStdDev, variance = stddev squared)
+     * @param pixels 8-bit pixels
+     * @return {mean, variance}
+     */
+    public static double[] meanVariance(byte[] pixels) {
+        // Exact integer sums: 2^31 pixels of 255^2 still fit in a long
+        long sum = 0;
+        long sumSquares = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            int v = pixels[i] & 0xff;
+            sum += v;
+            sumSquares += v * v;
+        }
+        double n = Math.max(1, pixels.length);
+        double mean = sum / n;
+        return new double[] {mean, Math.max(0.0, sumSquares / n - mean * mean)};
+    }
+
+    /**
+     * Hue/saturation histogram with OpenCV's 8-bit HSV conversion, min-max normalised to 0-1
+     * @param image BGR image
+     * @return 50 x 60 bins, row-major by hue
+     */
+    public static float[] hsvHistogram(Raster image) {
+        if (image.channels != 3) {
+            throw new IllegalArgumentException("HSV histogram needs a BGR image");
+        }
+        byte[] src = image.data;
+        int pixels = image.width * image.height;
+        int[] counts = new int[H_BINS * S_BINS];
+        int round = 1 << (HSV_SHIFT - 1);
+        for (int i = 0; i < pixels; i++) {
+            int b = src[i * 3] & 0xff;
+            int g = src[i * 3 + 1] & 0xff;
+            int r = src[i * 3 + 2] & 0xff;
+            int v = Math.max(b, Math.max(g, r));
+            int diff = v - Math.min(b, Math.min(g, r));
+            int s = (diff * SDIV[v] + round) >> HSV_SHIFT;
+            int h;
+            if (v == r) {
+                h = g - b;
+            } else if (v == g) {
+                h = b - r + 2 * diff;
+            } else {
+                h = r - g + 4 * diff;
+            }
+            h = (h * HDIV[diff] + round) >> HSV_SHIFT;
+            if (h < 0) {
+                h += 180;
+            }
+            counts[H_BIN[h] * S_BINS + S_BIN[s]]++;
+        }
+        return normalizeMinMax(counts);
+    }
+
+    /**
+     * Correlation of two histograms (Imgproc.HISTCMP_CORREL)
+     * @param hist1 First histogram
+     * @param hist2 Second histogram, same length
+     * @return Correlation (-1 to 1)
+     */
+    public static double correlation(float[] hist1, float[] hist2) {
+        double s1 = 0;
+        double s2 = 0;
+        double s11 = 0;
+        double s12 = 0;
+        double s22 = 0;
+        for (int i = 0; i < hist1.length; i++) {
+            double a = hist1[i];
+            double b = hist2[i];
+            s1 += a;
+            s2 += b;
+            s11 += a * a;
+            s12 += a * b;
+            s22 += b * b;
+        }
+        double scale = 1.0 / hist1.length;
+        double numerator = s12 - s1 * s2 * scale;
+        double denominator = (s11 - s1 * s1 * scale) * (s22 - s2 * s2 * scale);
+        return Math.abs(denominator) > Math.ulp(1.0) ? numerator / Math.sqrt(denominator) : 1.0;
+    }
+
+    private static float[] normalizeMinMax(int[] counts) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int count : counts) {
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        double scale = max > min ? 1.0 / (max - min) : 0.0;
+        float[] normalized = new float[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            normalized[i] = (float) ((counts[i] - min) * scale);
+        }
+        return normalized;
+    }
+
+    /**
+     * Source index and fixed-point weights of both neighbours for each target pixel, computed
+     * in float and rounded separately like OpenCV does; only the x axis clamps its weights
+     */
+    private static void mapAxis(int srcSize, int dstSize, boolean clamp, int[] offsets, int[] weights0, int[] weights1) {
+        double scale = 1.0 / ((double) dstSize / srcSize);
+        for (int d = 0; d < dstSize; d++) {
+            float f = (float) ((d + 0.5) * scale - 0.5);
+            int s = (int) Math.floor(f);
+            f -= s;
+            if (clamp && s < 0) {
+                s = 0;
+                f = 0;
+            }
+            if (clamp && s >= srcSize - 1) {
+                s = srcSize - 1;
+                f = 0;
+            }
+            offsets[d] = s;
+            weights0[d] = (int) Math.rint((1.0f - f) * RESIZE_COEF_SCALE);
+            weights1[d] = (int) Math.rint(f * RESIZE_COEF_SCALE);
+        }
+    }
+
+    private static void horizontal(byte[] src, int rowStart, int channels,
+                                   int[] xOffset, int[] xWeight0, int[] xWeight1, int[] out) {
+        for (int x = 0; x < xOffset.length; x++) {
+            int s0 = rowStart + xOffset[x] * channels;
+            int w0 = xWeight0[x];
+            int w1 = xWeight1[x];
+            for (int c = 0; c < channels; c++) {
+                // At the clamped right edge the missing neighbour has weight 0
+                out[x * channels + c] = (src[s0 + c] & 0xff) * w0 + (w1 != 0 ? (src[s0 + channels + c] & 0xff) * w1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Exact 2x downscale: OpenCV resizes these with INTER_AREA, the rounded mean of each 2x2 block
+     */
+    private static Raster halve(Raster image) {
+        int width = image.width / 2;
+        int height = image.height / 2;
+        int channels = image.channels;
+        int srcRow = image.width * channels;
+        byte[] src = image.data;
+        byte[] dst = new byte[width * height * channels];
+        for (int y = 0; y < height; y++) {
+            int top = y * 2 * srcRow;
+            int bottom = top + srcRow;
+            int out = y * width * channels;
+            for (int x = 0; x < width; x++) {
+                for (int c = 0; c < channels; c++) {
+                    int i = x * 2 * channels + c;
+                    int sum = (src[top + i] & 0xff) + (src[top + i + channels] & 0xff)
+                        + (src[bottom + i] & 0xff) + (src[bottom + i + channels] & 0xff);
+                    dst[out + x * channels + c] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        }
+        return new Raster(width, height, channels, dst);
+    }
+}
@@ -0,0 +1,293 @@
+package com.getgo.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LocatorProfiler keeps a profile of every element lookup the driver made during the
+ * run, keyed by locator strategy and selector. TimedCommandExecutor feeds it, so
+ * ElementUtil, the wait utilities, page objects and PageFactory fields all show up:
+ * - Latency distribution (median, 90th percentile, max) and total time
+ * - Hits and misses (nothing found, or the lookup failed), and the time lost to misses
+ * - Where the locator is used from (page-object method or step)
+ * - A cheaper strategy, when one is obvious from the selector
+ * Profiles are kept for the whole run (all threads); LocatorProfilePlugin writes them out.
+ */
+public class LocatorProfiler {
+
+    // Latencies kept per locator for the percentiles; later lookups still count in the totals
+    private static final int MAX_SAMPLES = 100_000;
+    private static final int TOP_SITES = 3;
+    // A locator is called miss-heavy when misses outnumber hits
+    private static final double MISS_HEAVY_RATIO = 0.5;
+
+    private static final Pattern UI_MATCHES = Pattern.compile("(text|description|resourceId|className)Matches\\(\"((?:[^\"\\\\]|\\\\.)*)\"\\)");
+    private static final Pattern UI_RESOURCE_ID_ONLY = Pattern.compile("^new UiSelector\\(\\)\\.resourceId\\(\"([^\"]+)\"\\)$");
+    private static final Pattern UI_DESCRIPTION_ONLY = Pattern.compile("^new UiSelector\\(\\)\\.description\\(\"([^\"]+)\"\\)$");
+    private static final Pattern XPATH_ATTRIBUTE_EQUALS = Pattern.compile("^//\\*\\[@(resource-id|content-desc)=['\"]([^'\"]+)['\"]\\]$");
+    private static final Pattern XPATH_ATTRIBUTE_CONTAINS = Pattern.compile("^//\\*\\[contains\\(@(text|content-desc), ?['\"]([^'\"]+)['\"]\\)\\]$");
+    private static final Pattern REGEX_LITERAL = Pattern.compile("[^.*+?\\[\\](){}|^$\\\\]+");
+
+    private static final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Check whether a driver command is an element lookup
+     * @param command Command name
+     * @return true for findElement(s) and findChildElement(s)
+     */
+    public static boolean isLookup(String command) {
+        return "findElement".equals(command) || "findElements".equals(command)
+            || "findChildElement".equals(command) || "findChildElements".equals(command);
+    }
+
+    /**
+     * Record one element lookup made on the current thread
+     * @param command Lookup command name, e.g. "findElements"
+     * @param parameters Command parameters ("using" and "value")
+     * @param found true if at least one element was returned
+     * @param nanos Round-trip time
+     */
+    public static void recordLookup(String command, Map<String, ?> parameters, boolean found, long nanos) {
+        recordLookup(command, parameters, found, nanos, null);
+    }
+
+    /**
+     * Record one element lookup made on the current thread
+     * @param command Lookup command name, e.g. "findElements"
+     * @param parameters Command parameters ("using" and "value")
+     * @param found true if at least one element was returned
+     * @param nanos Round-trip time
+     * @param site Call site the lookup was made from, e.g. from DriverCallGuard.recordCommand;
+     *             null to find it by walking the stack
+     */
+    public static void recordLookup(String command, Map<String, ?> parameters, boolean found, long nanos, String site) {
+        Object using = parameters.get("using");
+        Object value = parameters.get("value");
+        if (using == null || value == null) {
+            return;
+        }
+        String strategy = strategyOf(String.valueOf(using), String.valueOf(value));
+        boolean withinElement = command.startsWith("findChild");
+        String key = strategy + (withinElement ? " > " : " ") + value;
+        profiles.computeIfAbsent(key, k -> new Profile(strategy, String.valueOf(value), withinElement))
+            .record(nanos, found, site != null ? site : IdleClock.caller());
+    }
+
+    /**
+     * Get the profile of every locator used so far
+     * @return Profiles, most total time first
+     */
+    public static List<Profile> getProfiles() {
+        List<Profile> ranked = new ArrayList<>(profiles.values());
+        ranked.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return ranked;
+    }
+
+    /**
+     * Forget all profiles
+     */
+    public static void reset() {
+        profiles.clear();
+    }
+
+    /**
+     * Normalize the wire strategy name
+     */
+    static String strategyOf(String using, String value) {
+        switch (using) {
+            case "-android uiautomator":
+                return "uiautomator";
+            case "css selector":
+                // Depending on the Selenium version, By.id arrives as a CSS id selector
+                return value.startsWith("#") || value.startsWith("[id=") ? "id" : "css";
+            default:
+                return using;
+        }
+    }
+
+    /**
+     * Suggest a cheaper way to find the same elements, from the strategy and selector
+     * @return Suggestion, or null if the locator is already cheap
+     */
+    static String suggest(String strategy, String selector) {
+        if ("xpath".equals(strategy)) {
+            Matcher equals = XPATH_ATTRIBUTE_EQUALS.matcher(selector);
+            if (equals.matches()) {
+                return "resource-id".equals(equals.group(1))
+                    ? "By.id(\"" + equals.group(2) + "\")"
+                    : "AppiumBy.accessibilityId(\"" + equals.group(2) + "\")";
+            }
+            Matcher contains = XPATH_ATTRIBUTE_CONTAINS.matcher(selector);
+            if (contains.matches()) {
+                return "UiAutomator " + ("text".equals(contains.group(1)) ? "textContains" : "descriptionContains")
+                    + "(\"" + contains.group(2) + "\"), which skips the page-source dump XPath needs";
+            }
+            return "XPath is evaluated on a full page-source dump; use an id, accessibility id or UiAutomator selector";
+        }
+        if ("uiautomator".equals(strategy)) {
+            Matcher resourceId = UI_RESOURCE_ID_ONLY.matcher(selector);
+            if (resourceId.matches()) {
+                return "By.id(\"" + resourceId.group(1) + "\")";
+            }
+            Matcher description = UI_DESCRIPTION_ONLY.matcher(selector);
+            if (description.matches()) {
+                return "AppiumBy.accessibilityId(\"" + description.group(1) + "\")";
+            }
+            List<String> hints = new ArrayList<>();
+            Matcher regex = UI_MATCHES.matcher(selector);
+            while (regex.find()) {
+                String attribute = regex.group(1);
+                String pattern = regex.group(2);
+                if (REGEX_LITERAL.matcher(pattern).matches()) {
+                    hints.add(attribute + "(\"" + pattern + "\") instead of " + attribute + "Matches");
+                } else if (pattern.startsWith(".*") && pattern.endsWith(".*") && pattern.length() > 4
+                        && REGEX_LITERAL.matcher(pattern.substring(2, pattern.length() - 2)).matches()
+                        && ("text".equals(attribute) || "description".equals(attribute))) {
+                    hints.add(attribute + "Contains(\"" + pattern.substring(2, pattern.length() - 2) + "\") instead of a regex");
+                } else {
+                    hints.add(attribute + "Matches runs a regex on every node; anchor it with resourceId or a literal match");
+                }
+            }
+            if (selector.contains(".childSelector(") || selector.contains(".fromParent(")) {
+                hints.add("childSelector/fromParent searches around every match; select the target element directly");
+            }
+            return hints.isEmpty() ? null : String.join("; ", hints);
+        }
+        if ("class name".equals(strategy)) {
+            return "a class name matches every node of that class; scope it to a container or use an id";
+        }
+        return null;
+    }
+
+    /**
+     * Lookups of one locator across the run
+     */
+    public static class Profile {
+        private final String strategy;
+        private final String selector;
+        private final boolean withinElement;
+        private long lookups;
+        private long hits;
+        private long totalNanos;
+        private long missNanos;
+        private long maxNanos;
+        private long[] samples = new long[16];
+        private int sampleCount;
+        private final Map<String, Long> sites = new HashMap<>();
+
+        Profile(String strategy, String selector, boolean withinElement) {
+            this.strategy = strategy;
+            this.selector = selector;
+            this.withinElement = withinElement;
+        }
+
+        private synchronized void record(long nanos, boolean found, String site) {
+            lookups++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (found) {
+                hits++;
+            } else {
+                missNanos += nanos;
+            }
+            if (sampleCount < MAX_SAMPLES) {
+                if (sampleCount == samples.length) {
+                    samples = Arrays.copyOf(samples, Math.min(MAX_SAMPLES, samples.length * 2));
+                }
+                samples[sampleCount++] = nanos;
+            }
+            sites.merge(site, 1L, Long::sum);
+        }
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public String getSelector() {
+            return selector;
+        }
+
+        /**
+         * @return true if the locator was used to search inside an element
+         */
+        public boolean isWithinElement() {
+            return withinElement;
+        }
+
+        public synchronized long getLookups() {
+            return lookups;
+        }
+
+        public synchronized long getHits() {
+            return hits;
+        }
+
+        public synchronized long getMisses() {
+            return lookups - hits;
+        }
+
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public synchronized long getMissNanos() {
+            return missNanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Get a latency percentile
+         * @param percentile 0 to 100
+         * @return Latency in nanoseconds (nearest rank), 0 if there were no lookups
+         */
+        public synchronized long getPercentileNanos(double percentile) {
+            if (sampleCount == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        /**
+         * Get the methods the locator is used from
+         * @return Up to three call sites ("Class.method"), most lookups first
+         */
+        public synchronized List<String> getSites() {
+            List<Map.Entry<String, Long>> ranked = new ArrayList<>(sites.entrySet());
+            ranked.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            List<String> top = new ArrayList<>(TOP_SITES);
+            for (int i = 0; i < Math.min(TOP_SITES, ranked.size()); i++) {
+                top.add(ranked.get(i).getKey());
+            }
+            return top;
+        }
+
+        /**
+         * Get a cheaper alternative to this locator
+         * @return Suggestion, or null if nothing obvious applies
+         */
+        public synchronized String getSuggestion() {
+            List<String> hints = new ArrayList<>(2);
+            String strategyHint = suggest(strategy, selector);
+            if (strategyHint != null) {
+                hints.add(strategyHint);
+            }
+            if (lookups > 1 && getMisses() > lookups * MISS_HEAVY_RATIO) {
+                hints.add("mostly misses (" + missNanos / 1_000_000 + " ms lost): check once with findElements"
+                    + " instead of polling, or drop the lookup");
+            }
+            return hints.isEmpty() ? null : String.join("; ", hints);
+        }
+    }
+}
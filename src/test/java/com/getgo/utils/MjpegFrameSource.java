@@ -0,0 +1,486 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.HasSettings;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * MjpegFrameSource reads the UiAutomator2 MJPEG screen stream on a background thread,
+ * so visual polling does not cost a screenshot command per sample.
+ * - Frames are read into a small ring of reusable buffers; each keeps the JPEG and a
+ *   reduced grayscale decode (JPEG DCT scaling, no full decode) used for change detection
+ * - {@link #latestFrame()}, {@link #waitForChange} and {@link #waitForStable} give
+ *   settle detection and transition timing; full-color decode happens only on request
+ * - {@link #open(URL)} works with any MJPEG (multipart/x-mixed-replace) server, e.g. a local stub
+ * Enable with mjpeg.enabled; the session then gets the mjpegServerPort capability and the
+ * mjpegScalingFactor / mjpegServerFramerate / mjpegServerScreenshotQuality settings.
+ */
+public class MjpegFrameSource implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MjpegFrameSource.class);
+    private static final RateLimitedLogger streamErrors = RateLimitedLogger.of(logger, Level.WARN, 3, 60_000);
+
+    private static final ThreadLocal<MjpegFrameSource> source = new ThreadLocal<>();
+
+    private static final int RING_SIZE = Math.max(2, CapabilitiesConfig.getIntProperty("mjpeg.ring.size", 3));
+    private static final int READ_TIMEOUT_MS = CapabilitiesConfig.getIntProperty("mjpeg.read.timeout.ms", 5000);
+    // Gray levels a pixel must move by to count as changed (ignores JPEG noise)
+    private static final int PIXEL_DELTA = CapabilitiesConfig.getIntProperty("mjpeg.change.pixel.delta", 25);
+    private static final long RECONNECT_DELAY_MS = 500;
+    private static final int MAX_HEADER_LINE = 1024;
+
+    private final URL url;
+    private final Thread reader;
+    private final Slot[] ring = new Slot[RING_SIZE];
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private volatile HttpURLConnection connection;
+    // Guarded by lock; the reader only ever writes a slot other than the latest
+    private int latest = -1;
+    private long sequence;
+    // Reader thread only
+    private Mat encoded = new Mat();
+
+    /**
+     * One ring buffer entry, reused for every frame written into it
+     */
+    private static class Slot {
+        private byte[] jpeg = new byte[64 * 1024];
+        private int length;
+        private final Mat gray = new Mat();
+        private long sequence;
+        private long receivedNanos;
+
+        void ensureCapacity(int capacity) {
+            if (jpeg.length < capacity) {
+                jpeg = Arrays.copyOf(jpeg, Math.max(capacity, jpeg.length * 2));
+            }
+        }
+    }
+
+    /**
+     * A frame copied out of the ring, safe to keep after newer frames arrive
+     */
+    public static class Frame {
+        private final long sequence;
+        private final long receivedNanos;
+        private final byte[] jpeg;
+        private final Mat gray;
+
+        Frame(long sequence, long receivedNanos, byte[] jpeg, Mat gray) {
+            this.sequence = sequence;
+            this.receivedNanos = receivedNanos;
+            this.jpeg = jpeg;
+            this.gray = gray;
+        }
+
+        /**
+         * Get the frame number
+         * @return Sequence number, increasing by one per frame received
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Get when the frame was received, for transition timing
+         * @return System.nanoTime() at receipt
+         */
+        public long getReceivedNanos() {
+            return receivedNanos;
+        }
+
+        public byte[] getJpeg() {
+            return jpeg;
+        }
+
+        /**
+         * Decode the full frame
+         * @return BGR image at the stream's scaling factor
+         */
+        public Mat toMat() {
+            return ScreenshotCodec.decode(jpeg);
+        }
+
+        Mat getGray() {
+            return gray;
+        }
+    }
+
+    private MjpegFrameSource(URL url) {
+        this.url = url;
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slot();
+        }
+        reader = new Thread(this::readLoop, "mjpeg-frame-source");
+        reader.setDaemon(true);
+    }
+
+    /**
+     * Start reading a stream
+     * @param url MJPEG stream URL
+     * @return Running frame source; close it when done
+     */
+    public static MjpegFrameSource open(URL url) {
+        if (!OpenCvLoader.ensureLoaded()) {
+            throw new IllegalStateException("OpenCV is required to decode MJPEG frames");
+        }
+        MjpegFrameSource frameSource = new MjpegFrameSource(url);
+        frameSource.reader.start();
+        logger.info("Reading MJPEG stream from {}", url);
+        return frameSource;
+    }
+
+    /**
+     * Configure the session's MJPEG server and start reading it for the current scenario thread
+     * Does nothing unless mjpeg.enabled is set.
+     * @param driver Active driver (must support settings)
+     * @return Frame source, or null if disabled or unavailable
+     */
+    public static MjpegFrameSource start(AppiumDriver driver) {
+        stop();
+        if (!CapabilitiesConfig.getBooleanProperty("mjpeg.enabled", false)) {
+            return null;
+        }
+        try {
+            if (driver instanceof HasSettings) {
+                HasSettings settings = (HasSettings) driver;
+                settings.setSetting("mjpegScalingFactor", CapabilitiesConfig.getIntProperty("mjpeg.scaling.factor", 50));
+                settings.setSetting("mjpegServerFramerate", CapabilitiesConfig.getIntProperty("mjpeg.framerate", 10));
+                settings.setSetting("mjpegServerScreenshotQuality", CapabilitiesConfig.getIntProperty("mjpeg.quality", 50));
+            }
+            MjpegFrameSource frameSource = open(new URL(streamUrl()));
+            source.set(frameSource);
+            return frameSource;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("MJPEG frame source unavailable, visual polling falls back to screenshots: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Get the frame source of the current scenario thread
+     * @return Frame source, or null if none is running
+     */
+    public static MjpegFrameSource current() {
+        return source.get();
+    }
+
+    /**
+     * Stop the frame source of the current scenario thread
+     */
+    public static void stop() {
+        MjpegFrameSource frameSource = source.get();
+        if (frameSource != null) {
+            frameSource.close();
+            source.remove();
+        }
+    }
+
+    /**
+     * Get the stream URL for the session
+     * @return mjpeg.url, or http://127.0.0.1:&lt;mjpeg.port&gt; if not set
+     */
+    public static String streamUrl() {
+        String configured = CapabilitiesConfig.getProperty("mjpeg.url", "").trim();
+        return configured.isEmpty()
+            ? "http://127.0.0.1:" + CapabilitiesConfig.getIntProperty("mjpeg.port", 7810)
+            : configured;
+    }
+
+    /**
+     * Get the newest frame
+     * @return Copy of the newest frame, or null if none has arrived yet
+     */
+    public Frame latestFrame() {
+        synchronized (lock) {
+            return latest < 0 ? null : copy(ring[latest]);
+        }
+    }
+
+    /**
+     * Wait for a frame newer than a given one
+     * @param afterSequence Sequence number the frame must be newer than (-1 for any frame)
+     * @param timeout Maximum time to wait
+     * @return Copy of the newest frame, or null on timeout
+     */
+    public Frame nextFrame(long afterSequence, Duration timeout) {
+        return nextFrame(afterSequence, System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Wait until the screen differs from a reference frame
+     * @param reference Frame to compare against
+     * @param minChangePercent Percentage of pixels that must change
+     * @param timeout Maximum time to wait
+     * @return First frame that differs enough, or null on timeout
+     */
+    public Frame waitForChange(Frame reference, double minChangePercent, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long seen = reference.getSequence();
+        Frame next;
+        while ((next = nextFrame(seen, deadline)) != null) {
+            if (changePercent(reference, next) >= minChangePercent) {
+                return next;
+            }
+            seen = next.getSequence();
+        }
+        return null;
+    }
+
+    /**
+     * Wait until the screen stops changing (animations, transitions, lazy-loaded images)
+     * @param quietPeriod How long no frame may differ from the settled one
+     * @param maxChangePercent Percentage of changed pixels still treated as unchanged
+     * @param timeout Maximum time to wait
+     * @return Newest frame of the settled screen, or null if it did not settle in time
+     */
+    public Frame waitForStable(Duration quietPeriod, double maxChangePercent, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Frame anchor = nextFrame(-1, deadline);
+        Frame last = anchor;
+        while (anchor != null) {
+            long quietEnds = anchor.getReceivedNanos() + quietPeriod.toNanos();
+            Frame next = nextFrame(last.getSequence(), Math.min(deadline, quietEnds));
+            if (next == null) {
+                // No new frame: the server only slows down when nothing moves
+                return System.nanoTime() >= quietEnds ? last : null;
+            }
+            if (changePercent(anchor, next) > maxChangePercent) {
+                anchor = next;
+            } else if (next.getReceivedNanos() >= quietEnds) {
+                return next;
+            }
+            last = next;
+        }
+        return null;
+    }
+
+    /**
+     * Measure how much of the screen changed between two frames
+     * @param a First frame
+     * @param b Second frame
+     * @return Percentage of pixels that moved by more than mjpeg.change.pixel.delta gray levels
+     */
+    public static double changePercent(Frame a, Frame b) {
+        Mat grayA = a.getGray();
+        Mat grayB = b.getGray();
+        if (grayA.empty() || grayB.empty() || !grayA.size().equals(grayB.size())) {
+            return 100.0;
+        }
+        Mat diff = new Mat();
+        Core.absdiff(grayA, grayB, diff);
+        Imgproc.threshold(diff, diff, PIXEL_DELTA, 255, Imgproc.THRESH_BINARY);
+        double changed = Core.countNonZero(diff) * 100.0 / diff.total();
+        diff.release();
+        return changed;
+    }
+
+    /**
+     * Get the number of frames received so far
+     * @return Frame count
+     */
+    public long getFrameCount() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /**
+     * Stop reading the stream
+     */
+    @Override
+    public void close() {
+        running = false;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            // Unblocks the reader thread
+            current.disconnect();
+        }
+        reader.interrupt();
+        try {
+            reader.join(READ_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("MJPEG frame source closed after {} frames", getFrameCount());
+    }
+
+    private Frame nextFrame(long afterSequence, long deadlineNanos) {
+        synchronized (lock) {
+            while (sequence <= afterSequence || latest < 0) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0 || !running) {
+                    return null;
+                }
+                try {
+                    lock.wait(Math.max(1, remaining / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return copy(ring[latest]);
+        }
+    }
+
+    private static Frame copy(Slot slot) {
+        return new Frame(slot.sequence, slot.receivedNanos, Arrays.copyOf(slot.jpeg, slot.length), slot.gray.clone());
+    }
+
+    private void readLoop() {
+        while (running) {
+            try {
+                HttpURLConnection http = (HttpURLConnection) url.openConnection();
+                http.setConnectTimeout(READ_TIMEOUT_MS);
+                http.setReadTimeout(READ_TIMEOUT_MS);
+                connection = http;
+                try (InputStream in = new BufferedInputStream(http.getInputStream(), 64 * 1024)) {
+                    while (running) {
+                        int next;
+                        synchronized (lock) {
+                            next = (latest + 1) % ring.length;
+                        }
+                        Slot slot = ring[next];
+                        if (!readPart(in, slot)) {
+                            break;
+                        }
+                        if (decodeGray(slot)) {
+                            publish(next, slot);
+                        }
+                    }
+                } finally {
+                    http.disconnect();
+                }
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    streamErrors.log("MJPEG stream {} interrupted ({}), reconnecting", url, e.toString());
+                }
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        encoded.release();
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private void publish(int index, Slot slot) {
+        synchronized (lock) {
+            slot.sequence = ++sequence;
+            latest = index;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Read one multipart part into a slot
+     * @return false at the end of the stream
+     */
+    private boolean readPart(InputStream in, Slot slot) throws IOException {
+        int contentLength = -1;
+        boolean inPart = false;
+        String line;
+        // Boundary line, then part headers up to a blank line
+        while ((line = readLine(in)) != null) {
+            if (line.isEmpty()) {
+                if (inPart) {
+                    break;
+                }
+                continue;
+            }
+            inPart = true;
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        if (line == null) {
+            return false;
+        }
+        if (contentLength >= 0) {
+            slot.ensureCapacity(contentLength);
+            int read = 0;
+            while (read < contentLength) {
+                int n = in.read(slot.jpeg, read, contentLength - read);
+                if (n < 0) {
+                    throw new EOFException("Stream ended inside a frame");
+                }
+                read += n;
+            }
+            slot.length = contentLength;
+        } else {
+            // No Content-Length: the JPEG runs up to its end-of-image marker
+            int length = 0;
+            int previous = -1;
+            int b;
+            while ((b = in.read()) >= 0) {
+                slot.ensureCapacity(length + 1);
+                slot.jpeg[length++] = (byte) b;
+                if (previous == 0xff && b == 0xd9) {
+                    break;
+                }
+                previous = b;
+            }
+            if (b < 0) {
+                return false;
+            }
+            slot.length = length;
+        }
+        slot.receivedNanos = System.nanoTime();
+        return true;
+    }
+
+    private boolean decodeGray(Slot slot) {
+        if (encoded.cols() < slot.length) {
+            encoded.release();
+            encoded = new Mat(1, Math.max(slot.length, slot.jpeg.length), CvType.CV_8UC1);
+        }
+        encoded.put(0, 0, slot.jpeg, 0, slot.length);
+        Mat bytes = encoded.colRange(0, slot.length);
+        // The JPEG decoder scales in the DCT domain, far cheaper than a full decode
+        Mat decoded = Imgcodecs.imdecode(bytes, Imgcodecs.IMREAD_REDUCED_GRAYSCALE_4);
+        bytes.release();
+        if (decoded.empty()) {
+            streamErrors.log("Skipping MJPEG frame that could not be decoded ({} bytes)", slot.length);
+            return false;
+        }
+        decoded.copyTo(slot.gray);
+        decoded.release();
+        return true;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r' && line.length() < MAX_HEADER_LINE) {
+                line.append((char) b);
+            }
+        }
+        return b < 0 && line.length() == 0 ? null : line.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.getgo.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MjpegFrameSourceTest runs MjpegFrameSource against a local multipart/x-mixed-replace stub,
+ * so no device or Appium server is needed
+ */
+public class MjpegFrameSourceTest {
+
+    private static final int WIDTH = 270;
+    private static final int HEIGHT = 480;
+    private static final long FRAME_INTERVAL_MS = 50;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile boolean serving = true;
+    private volatile boolean sendContentLength = true;
+    // Screen the stub streams; null means fresh random noise for every frame
+    private volatile Scalar screen = new Scalar(90, 120, 150);
+
+    @Before
+    public void startServer() throws IOException {
+        Assume.assumeTrue("OpenCV native library not available", OpenCvLoader.ensureLoaded());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "multipart/x-mixed-replace; boundary=--frame");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                while (serving) {
+                    byte[] jpeg = encode(screen);
+                    String headers = "--frame\r\nContent-Type: image/jpeg\r\n"
+                        + (sendContentLength ? "Content-Length: " + jpeg.length + "\r\n" : "") + "\r\n";
+                    out.write(headers.getBytes(StandardCharsets.US_ASCII));
+                    out.write(jpeg);
+                    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    Thread.sleep(FRAME_INTERVAL_MS);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client disconnected or server stopped
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        serving = false;
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void receivesFirstFrame() {
+        try (MjpegFrameSource source = open()) {
+            MjpegFrameSource.Frame frame = source.nextFrame(-1, Duration.ofSeconds(5));
+            assertNotNull("No frame received", frame);
+            Mat image = frame.toMat();
+            assertEquals(WIDTH, image.cols());
+            assertEquals(HEIGHT, image.rows());
+            image.release();
+            assertNotNull(source.latestFrame());
+            assertTrue(source.getFrameCount() >= 1);
+        }
+    }
+
+    @Test
+    public void receivesFramesWithoutContentLength() {
+        sendContentLength = false;
+        try (MjpegFrameSource source = open()) {
+            MjpegFrameSource.Frame first = source.nextFrame(-1, Duration.ofSeconds(5));
+            assertNotNull("No frame received", first);
+            MjpegFrameSource.Frame second = source.nextFrame(first.getSequence(), Duration.ofSeconds(5));
+            assertNotNull("Stream stopped after the first frame", second);
+            assertEquals(WIDTH, second.toMat().cols());
+        }
+    }
+
+    @Test
+    public void waitForStableReturnsOnceMotionStops() {
+        screen = null;
+        try (MjpegFrameSource source = open()) {
+            assertNotNull(source.nextFrame(-1, Duration.ofSeconds(5)));
+            long motionStopped = System.nanoTime() + 500_000_000L;
+            new Thread(() -> {
+                sleepUntil(motionStopped);
+                screen = new Scalar(90, 120, 150);
+            }).start();
+            MjpegFrameSource.Frame settled = source.waitForStable(Duration.ofMillis(300), 0.5, Duration.ofSeconds(5));
+            assertNotNull("Screen did not settle", settled);
+            assertTrue("Settled while the screen was still moving", settled.getReceivedNanos() >= motionStopped);
+        }
+    }
+
+    @Test
+    public void waitForStableTimesOutWhileMoving() {
+        screen = null;
+        try (MjpegFrameSource source = open()) {
+            assertNull(source.waitForStable(Duration.ofMillis(300), 0.5, Duration.ofSeconds(1)));
+        }
+    }
+
+    @Test
+    public void waitForChangeReturnsChangedFrame() {
+        try (MjpegFrameSource source = open()) {
+            MjpegFrameSource.Frame reference = source.nextFrame(-1, Duration.ofSeconds(5));
+            assertNotNull("No frame received", reference);
+            assertNull("Unchanged screen reported as changed",
+                source.waitForChange(reference, 5, Duration.ofMillis(300)));
+            screen = new Scalar(200, 40, 10);
+            MjpegFrameSource.Frame changed = source.waitForChange(reference, 50, Duration.ofSeconds(5));
+            assertNotNull("Change not detected", changed);
+            assertTrue(MjpegFrameSource.changePercent(reference, changed) >= 50);
+        }
+    }
+
+    private MjpegFrameSource open() {
+        try {
+            return MjpegFrameSource.open(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encode(Scalar color) {
+        Mat frame = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+        if (color == null) {
+            Core.randu(frame, 0, 255);
+        } else {
+            frame.setTo(color);
+        }
+        MatOfByte jpeg = new MatOfByte();
+        Imgcodecs.imencode(".jpg", frame, jpeg);
+        frame.release();
+        byte[] bytes = jpeg.toArray();
+        jpeg.release();
+        return bytes;
+    }
+
+    private static void sleepUntil(long nanos) {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(Math.max(1, remaining / 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
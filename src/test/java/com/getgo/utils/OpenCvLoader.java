@@ -0,0 +1,182 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import nu.pattern.OpenCV;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * OpenCvLoader loads the OpenCV native library on first use instead of at class load.
+ * - The library is extracted once into a persistent cache directory keyed by OpenCV
+ *   version, OS and architecture, and loaded from there on every later JVM start
+ * - If the cached copy cannot be used, it falls back to OpenCV.loadLocally()
+ * - Runs that never compare images never touch the native library
+ * Cache directory: opencv.cache.dir (default ~/.cache/getgo/opencv).
+ */
+public class OpenCvLoader {
+
+    private static final Logger logger = LogManager.getLogger(OpenCvLoader.class);
+
+    /**
+     * Native library state
+     */
+    public enum State {
+        /** Not requested yet */
+        NOT_LOADED,
+        /** Loaded and usable */
+        LOADED,
+        /** Loading failed; callers fall back to the Java backend */
+        FAILED
+    }
+
+    private static final Path CACHE_DIR = Paths.get(CapabilitiesConfig.getProperty("opencv.cache.dir",
+        Paths.get(System.getProperty("user.home"), ".cache", "getgo", "opencv").toString()));
+
+    private static volatile State state = State.NOT_LOADED;
+    private static volatile long loadTimeMillis = -1;
+    private static volatile String source = "none";
+
+    /**
+     * Load the native library if that has not been tried yet
+     * @return true if OpenCV is usable
+     */
+    public static boolean ensureLoaded() {
+        if (state == State.NOT_LOADED) {
+            synchronized (OpenCvLoader.class) {
+                if (state == State.NOT_LOADED) {
+                    load();
+                }
+            }
+        }
+        return state == State.LOADED;
+    }
+
+    /**
+     * Check readiness without triggering a load
+     * @return true if OpenCV has been loaded
+     */
+    public static boolean isReady() {
+        return state == State.LOADED;
+    }
+
+    public static State getState() {
+        return state;
+    }
+
+    /**
+     * Get how long loading took
+     * @return Milliseconds, or -1 if no load was attempted
+     */
+    public static long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    /**
+     * Get where the library was loaded from
+     * @return "cache" (existing cached copy), "extracted" (copied into the cache now),
+     *         "loadLocally" (fallback), or "none"
+     */
+    public static String getSource() {
+        return source;
+    }
+
+    private static void load() {
+        long start = System.nanoTime();
+        try {
+            source = loadFromCache();
+            state = State.LOADED;
+        } catch (IOException | LinkageError | RuntimeException e) {
+            logger.warn("Could not load OpenCV from cache {} ({}), falling back to loadLocally", CACHE_DIR, e.toString());
+            try {
+                OpenCV.loadLocally();
+                source = "loadLocally";
+                state = State.LOADED;
+            } catch (LinkageError | RuntimeException fallback) {
+                logger.error("Failed to load OpenCV; image comparisons use the Java backend", fallback);
+                state = State.FAILED;
+            }
+        }
+        loadTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        if (state == State.LOADED) {
+            logger.info("OpenCV {} loaded from {} in {} ms", Core.VERSION, source, loadTimeMillis);
+        }
+    }
+
+    /**
+     * Load the library from the cache directory, extracting it there first if needed
+     * @return "cache" or "extracted"
+     */
+    private static String loadFromCache() throws IOException {
+        String library = System.mapLibraryName(Core.NATIVE_LIBRARY_NAME);
+        String resource = "/nu/pattern/opencv/" + osName() + "/" + archName() + "/" + library;
+        URL url = OpenCvLoader.class.getResource(resource);
+        if (url == null) {
+            throw new IOException("No bundled native library " + resource);
+        }
+        URLConnection connection = url.openConnection();
+        long expectedSize = connection.getContentLengthLong();
+
+        Path target = CACHE_DIR.resolve(Core.VERSION + "-" + osName() + "-" + archName()).resolve(library);
+        String loadedFrom = "cache";
+        // Size check catches a copy truncated by a killed JVM; the version key covers upgrades
+        if (!Files.isRegularFile(target) || (expectedSize >= 0 && Files.size(target) != expectedSize)) {
+            Files.createDirectories(target.getParent());
+            // Unique temp file and a move, so parallel JVMs never load a half-written library
+            Path tmp = Files.createTempFile(target.getParent(), library, ".tmp");
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            loadedFrom = "extracted";
+            logger.info("Extracted OpenCV native library to {}", target);
+        }
+        System.load(target.toAbsolutePath().toString());
+        return loadedFrom;
+    }
+
+    private static String osName() {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win")) {
+            return "windows";
+        }
+        if (os.contains("mac") || os.contains("darwin")) {
+            return "osx";
+        }
+        return "linux";
+    }
+
+    private static String archName() {
+        String arch = System.getProperty("os.arch").toLowerCase();
+        switch (arch) {
+            case "amd64":
+            case "x86_64":
+                return "x86_64";
+            case "x86":
+            case "i386":
+            case "i686":
+                return "x86_32";
+            case "aarch64":
+            case "arm64":
+                return "ARMv8";
+            default:
+                return arch.startsWith("arm") ? "ARMv7" : arch;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.DMatch;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDMatch;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.features2d.BFMatcher;
+import org.opencv.features2d.ORB;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * OrbComparator matches ORB keypoints between two images, which tolerates the
+ * scale, crop and padding differences between a search thumbnail and a detail image.
+ * - Keypoints are capped and images downscaled first so a comparison stays in the low milliseconds
+ * - Lowe's ratio test filters ambiguous matches
+ * - Matching runs in chunks and stops as soon as RANSAC confirms enough geometric inliers
+ * - Features are cached per image key, so one reference against many candidates is described once
+ * Similarity is the inlier count (beyond RANSAC's minimal sample) relative to the
+ * confirmation target, capped at 100%.
+ */
+public class OrbComparator {
+
+    private static final Logger logger = LogManager.getLogger(OrbComparator.class);
+
+    private static final int MAX_KEYPOINTS = CapabilitiesConfig.getIntProperty("image.orb.max.keypoints", 500);
+    private static final int MAX_SIDE = CapabilitiesConfig.getIntProperty("image.orb.max.side", 480);
+    private static final double RATIO = CapabilitiesConfig.getDoubleProperty("image.orb.ratio", 0.75);
+    private static final int CONFIRM_INLIERS = CapabilitiesConfig.getIntProperty("image.orb.confirm.inliers", 25);
+    private static final int CHUNK_SIZE = CapabilitiesConfig.getIntProperty("image.orb.chunk", 64);
+    private static final int CACHE_SIZE = CapabilitiesConfig.getIntProperty("image.orb.cache.size", 64);
+    private static final double RANSAC_THRESHOLD = 5.0;
+    // Matching pairs are mostly outliers: bound RANSAC instead of letting it run to its 2000-iteration default
+    private static final int RANSAC_MAX_ITERATIONS = 300;
+    private static final double RANSAC_CONFIDENCE = 0.99;
+    private static final int MIN_HOMOGRAPHY_POINTS = 4;
+
+    private static final ThreadLocal<ORB> detector = ThreadLocal.withInitial(() -> ORB.create(MAX_KEYPOINTS));
+    private static final ThreadLocal<BFMatcher> matcher =
+        ThreadLocal.withInitial(() -> BFMatcher.create(Core.NORM_HAMMING, false));
+
+    private static final Map<String, Features> cache = new LinkedHashMap<String, Features>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Features> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Compare two images
+     * @param key1 Cache key of the first image (content hash or path), or null to skip caching
+     * @param img1 Supplies the first image (BGR or grayscale); not called on a cache hit
+     * @param key2 Cache key of the second image, or null to skip caching
+     * @param img2 Supplies the second image; not called on a cache hit
+     * @return Similarity percentage (0-100)
+     */
+    public static double compare(String key1, Supplier<Mat> img1, String key2, Supplier<Mat> img2) {
+        return compare(features(key1, img1), features(key2, img2));
+    }
+
+    /**
+     * Compare two sets of already described features, e.g. a stored baseline against a capture
+     * @param query Features of the first image
+     * @param train Features of the second image
+     * @return Similarity percentage (0-100)
+     */
+    static double compare(Features query, Features train) {
+        if (query.size() < MIN_HOMOGRAPHY_POINTS || train.size() < MIN_HOMOGRAPHY_POINTS) {
+            logger.warn("Too few ORB keypoints to compare ({} vs {})", query.size(), train.size());
+            return 0.0;
+        }
+
+        BFMatcher bf = matcher.get();
+        List<Point> queryPoints = new ArrayList<>();
+        List<Point> trainPoints = new ArrayList<>();
+        int inliers = 0;
+        int checkedAt = 0;
+        for (int start = 0; start < query.size(); start += CHUNK_SIZE) {
+            Mat chunk = query.descriptors.rowRange(start, Math.min(query.size(), start + CHUNK_SIZE));
+            List<MatOfDMatch> knn = new ArrayList<>();
+            bf.knnMatch(chunk, train.descriptors, knn, 2);
+            for (MatOfDMatch pair : knn) {
+                DMatch[] best = pair.toArray();
+                if (best.length == 2 && best[0].distance < RATIO * best[1].distance) {
+                    queryPoints.add(query.points[start + best[0].queryIdx]);
+                    trainPoints.add(train.points[best[0].trainIdx]);
+                }
+            }
+            if (queryPoints.size() >= CONFIRM_INLIERS && queryPoints.size() > checkedAt) {
+                checkedAt = queryPoints.size();
+                inliers = countInliers(queryPoints, trainPoints);
+                if (inliers >= CONFIRM_INLIERS) {
+                    logger.debug("ORB match confirmed after {} of {} descriptors: {} inliers",
+                        Math.min(query.size(), start + CHUNK_SIZE), query.size(), inliers);
+                    return 100.0;
+                }
+            }
+        }
+        if (queryPoints.size() >= MIN_HOMOGRAPHY_POINTS && queryPoints.size() < CONFIRM_INLIERS) {
+            inliers = countInliers(queryPoints, trainPoints);
+        }
+        logger.debug("ORB: {} ratio-test matches, {} inliers", queryPoints.size(), inliers);
+        // RANSAC always explains its minimal sample, so those inliers carry no evidence
+        double evidence = Math.max(0, inliers - MIN_HOMOGRAPHY_POINTS);
+        return 100.0 * Math.min(1.0, evidence / (CONFIRM_INLIERS - MIN_HOMOGRAPHY_POINTS));
+    }
+
+    /**
+     * Drop all cached features
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static int countInliers(List<Point> queryPoints, List<Point> trainPoints) {
+        MatOfPoint2f src = new MatOfPoint2f(queryPoints.toArray(new Point[0]));
+        MatOfPoint2f dst = new MatOfPoint2f(trainPoints.toArray(new Point[0]));
+        Mat mask = new Mat();
+        Mat homography = Calib3d.findHomography(src, dst, Calib3d.RANSAC, RANSAC_THRESHOLD, mask,
+            RANSAC_MAX_ITERATIONS, RANSAC_CONFIDENCE);
+        return homography.empty() ? 0 : Core.countNonZero(mask);
+    }
+
+    private static Features features(String key, Supplier<Mat> image) {
+        if (key != null) {
+            synchronized (cache) {
+                Features cached = cache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        Features computed = detect(image.get());
+        if (key != null) {
+            synchronized (cache) {
+                cache.put(key, computed);
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * Detect and describe keypoints, bypassing the cache
+     * @param image BGR or grayscale image
+     * @return Keypoint locations (in original image coordinates) and descriptors
+     */
+    static Features detect(Mat image) {
+        Mat gray = new Mat();
+        if (image.channels() == 1) {
+            image.copyTo(gray);
+        } else {
+            Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        }
+        double scale = Math.min(1.0, (double) MAX_SIDE / Math.max(gray.cols(), gray.rows()));
+        if (scale < 1.0) {
+            Imgproc.resize(gray, gray, new Size(gray.cols() * scale, gray.rows() * scale), 0, 0, Imgproc.INTER_AREA);
+        }
+        MatOfKeyPoint keypoints = new MatOfKeyPoint();
+        Mat descriptors = new Mat();
+        detector.get().detectAndCompute(gray, new Mat(), keypoints, descriptors);
+        KeyPoint[] detected = keypoints.toArray();
+        Point[] points = new Point[detected.length];
+        for (int i = 0; i < detected.length; i++) {
+            // Back to original coordinates so homographies are comparable across scales
+            points[i] = new Point(detected[i].pt.x / scale, detected[i].pt.y / scale);
+        }
+        return new Features(points, descriptors);
+    }
+
+    /**
+     * Keypoint locations and their descriptors for one image
+     */
+    static class Features {
+        private final Point[] points;
+        private final Mat descriptors;
+
+        Features(Point[] points, Mat descriptors) {
+            this.points = points;
+            this.descriptors = descriptors;
+        }
+
+        Point[] getPoints() {
+            return points;
+        }
+
+        Mat getDescriptors() {
+            return descriptors;
+        }
+
+        int size() {
+            return descriptors.empty() ? 0 : descriptors.rows();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.getgo.utils;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.AppiumDriver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * PageSourceQuery evaluates locators locally against one page-source snapshot.
+ * This lets several candidate locators be resolved with a single driver round
+ * trip instead of one findElement (and one implicit wait) per locator.
+ * Supports id, accessibility id, class name, XPath and simple UiSelector chains;
+ * anything else (childSelector, UiScrollable, ...) is reported as unsupported.
+ * Matching nodes' bounds are available too, so element images can be cropped from
+ * a screenshot taken together with the snapshot (see {@link FrameCapture}).
+ */
+public class PageSourceQuery {
+
+    private static final Logger logger = LogManager.getLogger(PageSourceQuery.class);
+
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = ThreadLocal.withInitial(() -> {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create XML parser", e);
+        }
+    });
+    private static final ThreadLocal<XPath> xpath = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+
+    // Compiled matchers per locator; UNSUPPORTED marks a locator that cannot be evaluated locally
+    private static final Map<String, Matcher> matchers = new ConcurrentHashMap<>();
+    private static final Matcher UNSUPPORTED = (document, evaluator, limit) -> Collections.emptyList();
+    private static final Pattern BOUNDS = Pattern.compile("\\[(-?\\d+),(-?\\d+)\\]\\[(-?\\d+),(-?\\d+)\\]");
+
+    /**
+     * Functional matcher against a parsed page source
+     */
+    private interface Matcher {
+        /**
+         * @param limit Stop after this many matches
+         * @return Matching elements in document order
+         */
+        List<Element> find(Document document, XPath evaluator, int limit) throws Exception;
+    }
+
+    /**
+     * Check whether a locator can be evaluated against a page source
+     * @param locator By locator
+     * @return true if supported
+     */
+    public static boolean isSupported(By locator) {
+        return matcherFor(locator) != UNSUPPORTED;
+    }
+
+    /**
+     * Fetch and parse the current page source
+     * @param driver Active driver
+     * @return Parsed snapshot
+     */
+    public static Document snapshot(AppiumDriver driver) {
+        String source = driver.getPageSource();
+        try {
+            DocumentBuilder builder = documentBuilder.get();
+            builder.reset();
+            return builder.parse(new InputSource(new StringReader(source)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not parse page source: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find the first locator that matches the snapshot
+     * @param document Parsed page source
+     * @param locators Candidate locators in priority order (all must be supported)
+     * @return Index of the first matching locator, or -1 if none match
+     */
+    public static int firstMatch(Document document, By... locators) {
+        XPath evaluator = xpath.get();
+        for (int i = 0; i < locators.length; i++) {
+            try {
+                if (!matcherFor(locators[i]).find(document, evaluator, 1).isEmpty()) {
+                    return i;
+                }
+            } catch (Exception e) {
+                logger.debug("Could not evaluate {} against page source: {}", locators[i], e.getMessage());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether a single locator matches the snapshot
+     * @param document Parsed page source
+     * @param locator Supported locator
+     * @return true if at least one node matches
+     */
+    public static boolean matches(Document document, By locator) {
+        return firstMatch(document, locator) == 0;
+    }
+
+    /**
+     * Get the on-screen bounds of every node matching a locator
+     * @param document Parsed page source
+     * @param locator Supported locator
+     * @return Bounds in screen pixels, in document order (empty if none match or the locator is unsupported)
+     */
+    public static List<Rectangle> bounds(Document document, By locator) {
+        List<Element> elements;
+        try {
+            elements = matcherFor(locator).find(document, xpath.get(), Integer.MAX_VALUE);
+        } catch (Exception e) {
+            logger.debug("Could not evaluate {} against page source: {}", locator, e.getMessage());
+            return Collections.emptyList();
+        }
+        List<Rectangle> bounds = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            java.util.regex.Matcher m = BOUNDS.matcher(element.getAttribute("bounds"));
+            if (m.matches()) {
+                int x1 = Integer.parseInt(m.group(1));
+                int y1 = Integer.parseInt(m.group(2));
+                bounds.add(new Rectangle(x1, y1, Integer.parseInt(m.group(4)) - y1, Integer.parseInt(m.group(3)) - x1));
+            }
+        }
+        return bounds;
+    }
+
+    private static Matcher matcherFor(By locator) {
+        return matchers.computeIfAbsent(locator.toString(), key -> {
+            Matcher matcher = compile(locator);
+            if (matcher == null) {
+                logger.debug("Locator cannot be evaluated from page source: {}", locator);
+                return UNSUPPORTED;
+            }
+            return matcher;
+        });
+    }
+
+    private static Matcher compile(By locator) {
+        String using;
+        String value;
+        if (locator instanceof AppiumBy) {
+            By.Remotable.Parameters parameters = ((AppiumBy) locator).getRemoteParameters();
+            using = parameters.using();
+            value = String.valueOf(parameters.value());
+        } else {
+            String text = locator.toString();
+            int colon = text.indexOf(": ");
+            if (!text.startsWith("By.") || colon < 0) {
+                return null;
+            }
+            using = text.substring(3, colon);
+            value = text.substring(colon + 2);
+        }
+
+        switch (using) {
+            case "id":
+                return attributeMatcher(new AttributeTest[] {idTest(value)});
+            case "accessibility id":
+                return attributeMatcher(new AttributeTest[] {equalsTest("content-desc", value)});
+            case "class name":
+            case "className":
+                return attributeMatcher(new AttributeTest[] {equalsTest("class", value)});
+            case "xpath":
+                return xpathMatcher(value);
+            case "-android uiautomator":
+                return uiSelectorMatcher(value);
+            default:
+                return null;
+        }
+    }
+
+    private static Matcher xpathMatcher(String expression) {
+        try {
+            // XPathExpression is not thread-safe, so compile per thread on first use
+            ThreadLocal<XPathExpression> compiled = ThreadLocal.withInitial(() -> {
+                try {
+                    return xpath.get().compile(expression);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            compiled.get();
+            return (document, evaluator, limit) -> {
+                NodeList nodes = (NodeList) compiled.get().evaluate(document, XPathConstants.NODESET);
+                List<Element> found = new ArrayList<>();
+                for (int i = 0; i < nodes.getLength() && found.size() < limit; i++) {
+                    if (nodes.item(i) instanceof Element) {
+                        found.add((Element) nodes.item(i));
+                    }
+                }
+                return found;
+            };
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Predicate on a single node's attributes
+     */
+    private interface AttributeTest {
+        boolean test(Element element);
+    }
+
+    private static Matcher attributeMatcher(AttributeTest[] tests) {
+        return attributeMatcher(tests, -1);
+    }
+
+    /**
+     * @param instance UiSelector instance() value: only the n-th match counts, -1 for all matches
+     */
+    private static Matcher attributeMatcher(AttributeTest[] tests, int instance) {
+        return (document, evaluator, limit) -> {
+            NodeList nodes = document.getElementsByTagName("*");
+            List<Element> found = new ArrayList<>();
+            int seen = 0;
+            for (int i = 0; i < nodes.getLength() && found.size() < limit; i++) {
+                Element element = (Element) nodes.item(i);
+                if (allMatch(tests, element)) {
+                    if (instance < 0) {
+                        found.add(element);
+                    } else if (seen++ == instance) {
+                        found.add(element);
+                        break;
+                    }
+                }
+            }
+            return found;
+        };
+    }
+
+    private static boolean allMatch(AttributeTest[] tests, Element element) {
+        for (AttributeTest test : tests) {
+            if (!test.test(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AttributeTest idTest(String id) {
+        // UiAutomator2 prefixes bare ids with the app package
+        String suffix = ":id/" + id;
+        return element -> {
+            String resourceId = element.getAttribute("resource-id");
+            return resourceId.equals(id) || resourceId.endsWith(suffix);
+        };
+    }
+
+    private static AttributeTest equalsTest(String attribute, String value) {
+        return element -> value.equals(element.getAttribute(attribute));
+    }
+
+    private static AttributeTest containsTest(String attribute, String value) {
+        return element -> element.getAttribute(attribute).contains(value);
+    }
+
+    private static AttributeTest startsWithTest(String attribute, String value) {
+        return element -> element.getAttribute(attribute).startsWith(value);
+    }
+
+    private static AttributeTest regexTest(String attribute, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return element -> pattern.matcher(element.getAttribute(attribute)).matches();
+    }
+
+    /**
+     * Translate a flat "new UiSelector().a(..).b(..)" chain into attribute tests
+     * @param selector UiSelector source
+     * @return Matcher, or null if the selector uses unsupported features
+     */
+    private static Matcher uiSelectorMatcher(String selector) {
+        String prefix = "new UiSelector()";
+        String source = selector.trim();
+        if (source.endsWith(";")) {
+            source = source.substring(0, source.length() - 1);
+        }
+        if (!source.startsWith(prefix)) {
+            return null;
+        }
+
+        List<AttributeTest> tests = new ArrayList<>();
+        int instance = -1;
+        int pos = prefix.length();
+        try {
+            while (pos < source.length()) {
+                if (source.charAt(pos) != '.') {
+                    return null;
+                }
+                int open = source.indexOf('(', pos);
+                String method = source.substring(pos + 1, open);
+                int close;
+                String argument;
+                if (source.charAt(open + 1) == '"') {
+                    StringBuilder literal = new StringBuilder();
+                    int i = open + 2;
+                    while (source.charAt(i) != '"') {
+                        char c = source.charAt(i);
+                        // Only quotes and backslashes are escaped; keep regex escapes like \$ intact
+                        if (c == '\\' && (source.charAt(i + 1) == '"' || source.charAt(i + 1) == '\\')) {
+                            c = source.charAt(++i);
+                        }
+                        literal.append(c);
+                        i++;
+                    }
+                    argument = literal.toString();
+                    close = i + 1;
+                } else {
+                    close = source.indexOf(')', open);
+                    argument = source.substring(open + 1, close).trim();
+                }
+                if (source.charAt(close) != ')') {
+                    return null;
+                }
+                pos = close + 1;
+
+                switch (method) {
+                    case "resourceId":
+                        tests.add(equalsTest("resource-id", argument));
+                        break;
+                    case "resourceIdMatches":
+                        tests.add(regexTest("resource-id", argument));
+                        break;
+                    case "text":
+                        tests.add(equalsTest("text", argument));
+                        break;
+                    case "textContains":
+                        tests.add(containsTest("text", argument));
+                        break;
+                    case "textStartsWith":
+                        tests.add(startsWithTest("text", argument));
+                        break;
+                    case "textMatches":
+                        tests.add(regexTest("text", argument));
+                        break;
+                    case "description":
+                        tests.add(equalsTest("content-desc", argument));
+                        break;
+                    case "descriptionContains":
+                        tests.add(containsTest("content-desc", argument));
+                        break;
+                    case "descriptionStartsWith":
+                        tests.add(startsWithTest("content-desc", argument));
+                        break;
+                    case "descriptionMatches":
+                        tests.add(regexTest("content-desc", argument));
+                        break;
+                    case "className":
+                        tests.add(equalsTest("class", argument));
+                        break;
+                    case "classNameMatches":
+                        tests.add(regexTest("class", argument));
+                        break;
+                    case "clickable":
+                    case "enabled":
+                    case "checked":
+                    case "selected":
+                    case "focused":
+                    case "scrollable":
+                        tests.add(equalsTest(method, String.valueOf(Boolean.parseBoolean(argument))));
+                        break;
+                    case "index":
+                        tests.add(equalsTest("index", String.valueOf(Integer.parseInt(argument))));
+                        break;
+                    case "instance":
+                        instance = Integer.parseInt(argument);
+                        break;
+                    default:
+                        // childSelector, fromParent and friends need the real UiAutomator
+                        return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return attributeMatcher(tests.toArray(new AttributeTest[0]), instance);
+    }
+}
@@ -0,0 +1,170 @@
+package com.getgo.utils;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+/**
+ * PerceptualHash computes 64-bit perceptual hashes from a tiny downscale of an image.
+ * - aHash: 8x8 grayscale, bit set where the pixel is brighter than the mean
+ * - dHash: 9x8 grayscale, bit set where a pixel is brighter than its right neighbour
+ * - pHash: 32x32 DCT, bit set where a low-frequency coefficient exceeds the median
+ * Hashes do not depend on the input size, so a thumbnail and a full-size image of
+ * the same picture hash close together. Compare with {@link #distance(long, long)}.
+ */
+public class PerceptualHash {
+
+    /** Number of bits in each hash */
+    public static final int BITS = 64;
+
+    private final long aHash;
+    private final long dHash;
+    private final long pHash;
+
+    private PerceptualHash(long aHash, long dHash, long pHash) {
+        this.aHash = aHash;
+        this.dHash = dHash;
+        this.pHash = pHash;
+    }
+
+    /**
+     * Compute all three hashes of an image
+     * @param image BGR or grayscale image
+     * @return Hashes of the image
+     */
+    public static PerceptualHash of(Mat image) {
+        Mat gray = new Mat();
+        if (image.channels() == 1) {
+            image.copyTo(gray);
+        } else {
+            Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        }
+        return new PerceptualHash(aHash(gray), dHash(gray), pHash(gray));
+    }
+
+    /**
+     * Rebuild hashes computed earlier, e.g. read back from a visual baseline
+     * @param aHash Average hash
+     * @param dHash Difference hash
+     * @param pHash DCT hash
+     * @return Hashes with the given bits
+     */
+    public static PerceptualHash of(long aHash, long dHash, long pHash) {
+        return new PerceptualHash(aHash, dHash, pHash);
+    }
+
+    /**
+     * Hamming distance between two hashes
+     * @param hash1 First hash
+     * @param hash2 Second hash
+     * @return Number of differing bits (0-64)
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    /**
+     * Largest distance over the three hash types; small only if all of them agree the images match
+     * @param other Hashes of the other image
+     * @return Distance (0-64)
+     */
+    public int maxDistance(PerceptualHash other) {
+        return Math.max(distance(aHash, other.aHash), Math.max(distance(dHash, other.dHash), distance(pHash, other.pHash)));
+    }
+
+    /**
+     * Smallest distance over the three hash types; large only if all of them agree the images differ
+     * @param other Hashes of the other image
+     * @return Distance (0-64)
+     */
+    public int minDistance(PerceptualHash other) {
+        return Math.min(distance(aHash, other.aHash), Math.min(distance(dHash, other.dHash), distance(pHash, other.pHash)));
+    }
+
+    public long getAHash() {
+        return aHash;
+    }
+
+    public long getDHash() {
+        return dHash;
+    }
+
+    public long getPHash() {
+        return pHash;
+    }
+
+    private static long aHash(Mat gray) {
+        int[] pixels = downscale(gray, 8, 8);
+        long sum = 0;
+        for (int pixel : pixels) {
+            sum += pixel;
+        }
+        double mean = sum / 64.0;
+        long hash = 0;
+        for (int i = 0; i < 64; i++) {
+            if (pixels[i] > mean) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    private static long dHash(Mat gray) {
+        int[] pixels = downscale(gray, 9, 8);
+        long hash = 0;
+        int bit = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (pixels[y * 9 + x] > pixels[y * 9 + x + 1]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    private static long pHash(Mat gray) {
+        Mat small = new Mat();
+        Imgproc.resize(gray, small, new Size(32, 32), 0, 0, Imgproc.INTER_AREA);
+        Mat floats = new Mat();
+        small.convertTo(floats, CvType.CV_32F);
+        Mat dct = new Mat();
+        Core.dct(floats, dct);
+
+        // Top-left 8x8 block holds the lowest frequencies
+        float[] coefficients = new float[64];
+        float[] row = new float[8];
+        for (int y = 0; y < 8; y++) {
+            dct.get(y, 0, row);
+            System.arraycopy(row, 0, coefficients, y * 8, 8);
+        }
+        // The DC term only reflects overall brightness, so leave it out of the median
+        float[] sorted = Arrays.copyOfRange(coefficients, 1, 64);
+        Arrays.sort(sorted);
+        float median = sorted[sorted.length / 2];
+        long hash = 0;
+        for (int i = 1; i < 64; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    private static int[] downscale(Mat gray, int width, int height) {
+        Mat small = new Mat();
+        Imgproc.resize(gray, small, new Size(width, height), 0, 0, Imgproc.INTER_AREA);
+        byte[] raw = new byte[width * height];
+        small.get(0, 0, raw);
+        int[] pixels = new int[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            pixels[i] = raw[i] & 0xff;
+        }
+        return pixels;
+    }
+}
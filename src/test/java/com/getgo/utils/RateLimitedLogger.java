@@ -0,0 +1,89 @@
+package com.getgo.utils;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * RateLimitedLogger caps how often a single call site may log.
+ * Intended for per-element loops (product cards, ratings, resource-ids) that
+ * would otherwise write one line per element on every call.
+ * At most {@code maxPerWindow} messages are written per window; the number
+ * of suppressed messages is reported when the next window opens.
+ * Messages are parameterised and nothing is formatted when suppressed.
+ */
+public class RateLimitedLogger {
+
+    private final Logger logger;
+    private final Level level;
+    private final int maxPerWindow;
+    private final long windowNanos;
+
+    private long windowStart;
+    private int written;
+    private int suppressed;
+
+    private RateLimitedLogger(Logger logger, Level level, int maxPerWindow, long windowMillis) {
+        this.logger = logger;
+        this.level = level;
+        this.maxPerWindow = maxPerWindow;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Create a rate-limited view of a logger for one call site
+     * @param logger Underlying logger
+     * @param level Level to log at
+     * @param maxPerWindow Maximum messages per window
+     * @param windowMillis Window length in milliseconds
+     * @return RateLimitedLogger
+     */
+    public static RateLimitedLogger of(Logger logger, Level level, int maxPerWindow, long windowMillis) {
+        return new RateLimitedLogger(logger, level, maxPerWindow, windowMillis);
+    }
+
+    /**
+     * Log a message with one parameter if the rate limit allows it
+     */
+    public void log(String message, Object p0) {
+        if (acquire()) {
+            logger.log(level, message, p0);
+        }
+    }
+
+    /**
+     * Log a message with two parameters if the rate limit allows it
+     */
+    public void log(String message, Object p0, Object p1) {
+        if (acquire()) {
+            logger.log(level, message, p0, p1);
+        }
+    }
+
+    private boolean acquire() {
+        if (!logger.isEnabled(level)) {
+            return false;
+        }
+        int dropped = 0;
+        boolean allowed;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart >= windowNanos) {
+                dropped = suppressed;
+                windowStart = now;
+                written = 0;
+                suppressed = 0;
+            }
+            allowed = written < maxPerWindow;
+            if (allowed) {
+                written++;
+            } else {
+                suppressed++;
+            }
+        }
+        if (dropped > 0) {
+            logger.log(level, "... {} similar messages suppressed", dropped);
+        }
+        return allowed;
+    }
+}
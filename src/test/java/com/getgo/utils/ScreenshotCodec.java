@@ -0,0 +1,428 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * ScreenshotCodec encodes and decodes stored screenshots in several formats.
+ * - PNG: standard zlib level 6, comparable to what the device returns
+ * - PNG_FAST: OpenCV's speed-tuned PNG defaults, around ten times faster to write and slightly larger
+ * - QOI: lossless "Quite OK Image" format, fastest to encode on large screens and somewhat faster to decode, but larger
+ * - JPEG / WEBP: lossy, for archive-only artifacts nobody compares against
+ * Decoding detects the format from the content, so callers never need to know how an image was stored.
+ * Run {@link #main(String[])} to see the size and speed trade-off on real screenshots.
+ */
+public class ScreenshotCodec {
+
+    private static final Logger logger = LogManager.getLogger(ScreenshotCodec.class);
+
+    private static final int JPEG_QUALITY = CapabilitiesConfig.getIntProperty("screenshot.jpeg.quality", 85);
+    private static final int WEBP_QUALITY = CapabilitiesConfig.getIntProperty("screenshot.webp.quality", 80);
+
+    /**
+     * Storage format of a screenshot
+     */
+    public enum Format {
+        PNG("png", "image/png"),
+        PNG_FAST("png", "image/png"),
+        QOI("qoi", "image/qoi"),
+        JPEG("jpg", "image/jpeg"),
+        WEBP("webp", "image/webp");
+
+        private final String extension;
+        private final String mediaType;
+
+        Format(String extension, String mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Parse a format name as used in capabilities.properties
+         * @param name e.g. "png", "png-fast", "qoi", "jpeg", "webp"
+         * @return Format
+         */
+        public static Format fromName(String name) {
+            String normalized = name.trim().toUpperCase().replace('-', '_');
+            return "JPG".equals(normalized) ? JPEG : valueOf(normalized);
+        }
+    }
+
+    // QOI ops and header, see https://qoiformat.org/qoi-specification.pdf
+    private static final int QOI_OP_INDEX = 0x00;
+    private static final int QOI_OP_DIFF = 0x40;
+    private static final int QOI_OP_LUMA = 0x80;
+    private static final int QOI_OP_RUN = 0xc0;
+    private static final int QOI_OP_RGB = 0xfe;
+    private static final int QOI_OP_RGBA = 0xff;
+    private static final int QOI_MASK = 0xc0;
+    private static final int QOI_HEADER_SIZE = 14;
+    private static final byte[] QOI_END = {0, 0, 0, 0, 0, 0, 0, 1};
+
+    /**
+     * Encode a decoded image
+     * @param image BGR image
+     * @param format Target format
+     * @return Encoded bytes
+     */
+    public static byte[] encode(Mat image, Format format) {
+        if (format == Format.QOI) {
+            Mat continuous = image.isContinuous() ? image : image.clone();
+            byte[] bgr = new byte[(int) (continuous.total() * continuous.channels())];
+            continuous.get(0, 0, bgr);
+            return encodeQoi(JavaPixelBackend.Raster.bgr(bgr, image.cols(), image.rows()));
+        }
+        MatOfInt params;
+        switch (format) {
+            case PNG:
+                params = new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, 6);
+                break;
+            case JPEG:
+                params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+                break;
+            case WEBP:
+                params = new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, WEBP_QUALITY);
+                break;
+            default:
+                params = new MatOfInt();
+        }
+        MatOfByte encoded = new MatOfByte();
+        if (!Imgcodecs.imencode("." + format.getExtension(), image, encoded, params)) {
+            throw new IllegalStateException("Could not encode image as " + format);
+        }
+        return encoded.toArray();
+    }
+
+    /**
+     * Decode an image in any supported format
+     * @param image Encoded bytes (PNG, QOI, JPEG, WebP, ...)
+     * @return BGR image (empty if it could not be decoded)
+     */
+    public static Mat decode(byte[] image) {
+        if (image == null || image.length == 0) {
+            return new Mat();
+        }
+        if (isQoi(image)) {
+            JavaPixelBackend.Raster raster = decodeQoi(image);
+            Mat mat = new Mat(raster.getHeight(), raster.getWidth(), CvType.CV_8UC3);
+            mat.put(0, 0, raster.getData());
+            return mat;
+        }
+        return Imgcodecs.imdecode(new MatOfByte(image), Imgcodecs.IMREAD_COLOR);
+    }
+
+    /**
+     * Re-encode an image, skipping the work if it is already in the target format
+     * @param image Encoded bytes
+     * @param format Target format
+     * @return Encoded bytes in the target format (the input itself if nothing changed)
+     */
+    public static byte[] transcode(byte[] image, Format format) {
+        if (format == Format.PNG && isPng(image) || format == Format.QOI && isQoi(image)) {
+            return image;
+        }
+        Mat decoded = decode(image);
+        if (decoded.empty()) {
+            throw new IllegalArgumentException("Image could not be decoded");
+        }
+        return encode(decoded, format);
+    }
+
+    /**
+     * Build a reduced-resolution copy for comparisons that do not need full resolution
+     * @param image Encoded bytes
+     * @param factor Reduction per side, e.g. 4 for a quarter of the width and height
+     * @param format Format of the copy
+     * @return Encoded decimated image
+     */
+    public static byte[] decimate(byte[] image, int factor, Format format) {
+        Mat decoded = decode(image);
+        if (decoded.empty()) {
+            throw new IllegalArgumentException("Image could not be decoded");
+        }
+        Mat small = new Mat();
+        Imgproc.resize(decoded, small, new Size(Math.max(1, decoded.cols() / factor), Math.max(1, decoded.rows() / factor)),
+            0, 0, Imgproc.INTER_AREA);
+        return encode(small, format);
+    }
+
+    /**
+     * Detect the format of encoded bytes
+     * @param image Encoded bytes
+     * @return Format, or null if it is not one of the supported ones (PNG and PNG_FAST both report PNG)
+     */
+    public static Format detect(byte[] image) {
+        if (isPng(image)) {
+            return Format.PNG;
+        }
+        if (isQoi(image)) {
+            return Format.QOI;
+        }
+        if (image.length > 2 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8) {
+            return Format.JPEG;
+        }
+        if (image.length > 12 && image[0] == 'R' && image[1] == 'I' && image[2] == 'F' && image[3] == 'F'
+                && image[8] == 'W' && image[9] == 'E' && image[10] == 'B' && image[11] == 'P') {
+            return Format.WEBP;
+        }
+        return null;
+    }
+
+    static boolean isPng(byte[] image) {
+        return image.length > 8 && (image[0] & 0xff) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G';
+    }
+
+    static boolean isQoi(byte[] image) {
+        return image.length > QOI_HEADER_SIZE && image[0] == 'q' && image[1] == 'o' && image[2] == 'i' && image[3] == 'f';
+    }
+
+    /**
+     * Encode BGR pixels as QOI (3 channels, sRGB)
+     * @param image BGR raster
+     * @return QOI bytes
+     */
+    public static byte[] encodeQoi(JavaPixelBackend.Raster image) {
+        if (image.getChannels() != 3) {
+            throw new IllegalArgumentException("QOI encoding needs a BGR image");
+        }
+        byte[] bgr = image.getData();
+        int pixels = image.getWidth() * image.getHeight();
+        // Worst case is one 4-byte RGB op per pixel
+        byte[] out = new byte[QOI_HEADER_SIZE + pixels * 4 + QOI_END.length];
+        int p = 0;
+        out[p++] = 'q';
+        out[p++] = 'o';
+        out[p++] = 'i';
+        out[p++] = 'f';
+        p = putInt(out, p, image.getWidth());
+        p = putInt(out, p, image.getHeight());
+        out[p++] = 3;
+        out[p++] = 0;
+
+        int[] index = new int[64];
+        int prevR = 0;
+        int prevG = 0;
+        int prevB = 0;
+        int run = 0;
+        for (int i = 0; i < pixels; i++) {
+            int b = bgr[i * 3] & 0xff;
+            int g = bgr[i * 3 + 1] & 0xff;
+            int r = bgr[i * 3 + 2] & 0xff;
+            if (r == prevR && g == prevG && b == prevB) {
+                run++;
+                if (run == 62 || i == pixels - 1) {
+                    out[p++] = (byte) (QOI_OP_RUN | (run - 1));
+                    run = 0;
+                }
+                continue;
+            }
+            if (run > 0) {
+                out[p++] = (byte) (QOI_OP_RUN | (run - 1));
+                run = 0;
+            }
+            // Alpha is always 255; packing it in keeps an empty (all-zero) slot from matching black
+            int hash = (r * 3 + g * 5 + b * 7 + 255 * 11) & 63;
+            int packed = (r << 24) | (g << 16) | (b << 8) | 0xff;
+            if (index[hash] == packed) {
+                out[p++] = (byte) (QOI_OP_INDEX | hash);
+            } else {
+                index[hash] = packed;
+                int dr = (byte) (r - prevR);
+                int dg = (byte) (g - prevG);
+                int db = (byte) (b - prevB);
+                int drDg = dr - dg;
+                int dbDg = db - dg;
+                if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                    out[p++] = (byte) (QOI_OP_DIFF | (dr + 2) << 4 | (dg + 2) << 2 | (db + 2));
+                } else if (dg >= -32 && dg <= 31 && drDg >= -8 && drDg <= 7 && dbDg >= -8 && dbDg <= 7) {
+                    out[p++] = (byte) (QOI_OP_LUMA | (dg + 32));
+                    out[p++] = (byte) ((drDg + 8) << 4 | (dbDg + 8));
+                } else {
+                    out[p++] = (byte) QOI_OP_RGB;
+                    out[p++] = (byte) r;
+                    out[p++] = (byte) g;
+                    out[p++] = (byte) b;
+                }
+            }
+            prevR = r;
+            prevG = g;
+            prevB = b;
+        }
+        System.arraycopy(QOI_END, 0, out, p, QOI_END.length);
+        p += QOI_END.length;
+        byte[] result = new byte[p];
+        System.arraycopy(out, 0, result, 0, p);
+        return result;
+    }
+
+    /**
+     * Decode QOI bytes into BGR pixels (alpha is dropped)
+     * @param qoi QOI bytes
+     * @return BGR raster
+     */
+    public static JavaPixelBackend.Raster decodeQoi(byte[] qoi) {
+        if (!isQoi(qoi)) {
+            throw new IllegalArgumentException("Not a QOI image");
+        }
+        int width = getInt(qoi, 4);
+        int height = getInt(qoi, 8);
+        int pixels = width * height;
+        byte[] bgr = new byte[pixels * 3];
+        int[] index = new int[64];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 255;
+        int p = QOI_HEADER_SIZE;
+        int end = qoi.length - QOI_END.length;
+        int run = 0;
+        for (int i = 0; i < pixels; i++) {
+            if (run > 0) {
+                run--;
+            } else if (p < end) {
+                int op = qoi[p++] & 0xff;
+                if (op == QOI_OP_RGB) {
+                    r = qoi[p++] & 0xff;
+                    g = qoi[p++] & 0xff;
+                    b = qoi[p++] & 0xff;
+                } else if (op == QOI_OP_RGBA) {
+                    r = qoi[p++] & 0xff;
+                    g = qoi[p++] & 0xff;
+                    b = qoi[p++] & 0xff;
+                    a = qoi[p++] & 0xff;
+                } else if ((op & QOI_MASK) == QOI_OP_INDEX) {
+                    int packed = index[op];
+                    r = (packed >>> 24) & 0xff;
+                    g = (packed >>> 16) & 0xff;
+                    b = (packed >>> 8) & 0xff;
+                    a = packed & 0xff;
+                } else if ((op & QOI_MASK) == QOI_OP_DIFF) {
+                    r = (r + ((op >> 4) & 3) - 2) & 0xff;
+                    g = (g + ((op >> 2) & 3) - 2) & 0xff;
+                    b = (b + (op & 3) - 2) & 0xff;
+                } else if ((op & QOI_MASK) == QOI_OP_LUMA) {
+                    int second = qoi[p++] & 0xff;
+                    int dg = (op & 0x3f) - 32;
+                    r = (r + dg - 8 + ((second >> 4) & 0x0f)) & 0xff;
+                    g = (g + dg) & 0xff;
+                    b = (b + dg - 8 + (second & 0x0f)) & 0xff;
+                } else {
+                    run = op & 0x3f;
+                }
+                index[(r * 3 + g * 5 + b * 7 + a * 11) & 63] = (r << 24) | (g << 16) | (b << 8) | a;
+            }
+            bgr[i * 3] = (byte) b;
+            bgr[i * 3 + 1] = (byte) g;
+            bgr[i * 3 + 2] = (byte) r;
+        }
+        return JavaPixelBackend.Raster.bgr(bgr, width, height);
+    }
+
+    private static int putInt(byte[] out, int p, int value) {
+        out[p] = (byte) (value >>> 24);
+        out[p + 1] = (byte) (value >>> 16);
+        out[p + 2] = (byte) (value >>> 8);
+        out[p + 3] = (byte) value;
+        return p + 4;
+    }
+
+    private static int getInt(byte[] in, int p) {
+        return (in[p] & 0xff) << 24 | (in[p + 1] & 0xff) << 16 | (in[p + 2] & 0xff) << 8 | (in[p + 3] & 0xff);
+    }
+
+    /**
+     * Benchmark encode time, decode time and size of every format
+     * @param args Image files to measure; a synthetic 1080x2400 screen if none are given
+     */
+    public static void main(String[] args) throws Exception {
+        if (!OpenCvLoader.ensureLoaded()) {
+            throw new IllegalStateException("OpenCV is required for the codec benchmark");
+        }
+        int iterations = Integer.getInteger("iterations", 10);
+        if (args.length == 0) {
+            benchmark("synthetic 1080x2400", encode(syntheticScreen(1080, 2400), Format.PNG), iterations);
+        }
+        for (String path : args) {
+            benchmark(path, Files.readAllBytes(Paths.get(path)), iterations);
+        }
+    }
+
+    private static void benchmark(String name, byte[] source, int iterations) {
+        Mat image = decode(source);
+        System.out.printf("%s (%dx%d), %d iterations%n", name, image.cols(), image.rows(), iterations);
+        System.out.printf("  %-10s %10s %12s %12s %10s%n", "format", "size KB", "encode ms", "decode ms", "round trip");
+        for (Format format : Format.values()) {
+            byte[] encoded = encode(image, format);
+            String roundTrip = verifyRoundTrip(image, decode(encoded), format);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                encode(image, format);
+            }
+            double encodeMs = (System.nanoTime() - start) / 1e6 / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                decode(encoded);
+            }
+            double decodeMs = (System.nanoTime() - start) / 1e6 / iterations;
+            System.out.printf("  %-10s %10.1f %12.2f %12.2f %10s%n", format, encoded.length / 1024.0, encodeMs, decodeMs, roundTrip);
+        }
+        logger.info("Codec benchmark finished for {}", name);
+    }
+
+    /**
+     * Check a decoded image against the original; lossless formats must match exactly
+     * @return "exact", or the largest channel difference for lossy formats
+     * @throws IllegalStateException if a lossless format changed any pixel
+     */
+    private static String verifyRoundTrip(Mat original, Mat decoded, Format format) {
+        double maxDiff = Core.norm(original, decoded, Core.NORM_INF);
+        boolean lossless = format == Format.PNG || format == Format.PNG_FAST || format == Format.QOI;
+        if (lossless && maxDiff != 0) {
+            throw new IllegalStateException(format + " round trip is not lossless (max channel difference " + maxDiff + ")");
+        }
+        return maxDiff == 0 ? "exact" : "max " + (int) maxDiff;
+    }
+
+    /**
+     * Flat panels, text-like strokes and a photo-like area, roughly what an app screen looks like
+     */
+    private static Mat syntheticScreen(int width, int height) {
+        Mat screen = new Mat(height, width, CvType.CV_8UC3, new Scalar(255, 255, 255));
+        Random random = new Random(42);
+        Imgproc.rectangle(screen, new org.opencv.core.Point(0, 0), new org.opencv.core.Point(width, 180),
+            new Scalar(60, 45, 35), -1);
+        for (int y = 260; y < height - 200; y += 48) {
+            for (int x = 40; x < width - 40; x += 14 + random.nextInt(20)) {
+                Imgproc.line(screen, new org.opencv.core.Point(x, y), new org.opencv.core.Point(x + 6 + random.nextInt(8), y),
+                    new Scalar(30, 30, 30), 3);
+            }
+        }
+        Mat photo = screen.submat(900, 1500, 100, width - 100);
+        Mat noise = new Mat(photo.size(), photo.type());
+        Core.randu(noise, 0, 255);
+        Imgproc.GaussianBlur(noise, photo, new Size(15, 15), 0);
+        return screen;
+    }
+}
@@ -0,0 +1,451 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * ScreenshotStore persists screenshots (and other artifacts) by content hash.
+ * - Identical captures are stored once, however often they are taken
+ * - A small index maps scenario and step to the hash of the latest capture
+ * - When the store exceeds its size cap, the least recently referenced blobs are evicted
+ * Blobs live under {@code <store>/blobs/<2 hex>/<sha256>.<ext>}; the index is
+ * {@code <store>/index.tsv}. Blob modification time doubles as the last-reference
+ * time, so recency survives between runs without extra bookkeeping.
+ * Screenshots stored with putImage are kept in screenshot.store.format (see {@link ScreenshotCodec}).
+ */
+public class ScreenshotStore {
+
+    private static final Logger logger = LogManager.getLogger(ScreenshotStore.class);
+
+    private static final Path ROOT = Paths.get(
+        CapabilitiesConfig.getProperty("screenshot.store.dir", "target/screenshot-store"));
+    private static final Path BLOBS = ROOT.resolve("blobs");
+    private static final Path INDEX = ROOT.resolve("index.tsv");
+    private static final long MAX_BYTES = CapabilitiesConfig.getIntProperty("screenshot.store.max.bytes", 200 * 1024 * 1024);
+    // Evict down to this fraction of the cap so eviction does not run on every put
+    private static final double EVICT_TO = 0.9;
+    private static final ScreenshotCodec.Format FORMAT = ScreenshotCodec.Format.fromName(
+        CapabilitiesConfig.getProperty("screenshot.store.format", "png"));
+    private static final int DECIMATE = CapabilitiesConfig.getIntProperty("screenshot.store.decimate", 0);
+    private static final String DECIMATED_SUFFIX = "@small";
+
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private static final Object lock = new Object();
+    private static final Map<String, Blob> blobs = new HashMap<>();
+    private static final Map<String, IndexEntry> index = new TreeMap<>();
+    // Evicted blobs whose files are being deleted outside the lock; a put of the same
+    // content meanwhile parks its data here and it is written once the delete is done
+    private static final Map<String, byte[]> deleting = new HashMap<>();
+    private static long totalBytes;
+    private static boolean dirty;
+
+    static {
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(ScreenshotStore::save, "screenshot-store-save"));
+    }
+
+    /**
+     * Store an artifact for the current scenario
+     * @param step Step (or label) the artifact belongs to
+     * @param data Artifact content
+     * @param extension File extension, e.g. "png"
+     * @return Content hash of the artifact
+     */
+    public static String put(String step, byte[] data, String extension) {
+        String scenario = ThreadContext.get("scenario");
+        return put(scenario != null ? scenario : "unscoped", step, data, extension);
+    }
+
+    /**
+     * Store an artifact, deduplicating by content
+     * @param scenario Scenario the artifact belongs to
+     * @param step Step (or label) the artifact belongs to
+     * @param data Artifact content
+     * @param extension File extension, e.g. "png"
+     * @return Content hash of the artifact
+     */
+    public static String put(String scenario, String step, byte[] data, String extension) {
+        String hash = contentHash(data);
+        long now = System.currentTimeMillis();
+        boolean written = false;
+        List<Blob> victims = null;
+        synchronized (lock) {
+            Blob blob = blobs.get(hash);
+            if (blob == null) {
+                blob = new Blob(hash, extension, data.length, now);
+                blobs.put(hash, blob);
+                totalBytes += data.length;
+                written = true;
+            } else {
+                blob.lastReferenced = now;
+            }
+            index.put(key(scenario, step), new IndexEntry(scenario, step, hash, now));
+            dirty = true;
+            if (written && deleting.containsKey(hash)) {
+                deleting.put(hash, data);
+            } else if (written) {
+                ScreenshotWriter.submit(data, blob.path());
+            } else {
+                touch(blob);
+            }
+            if (totalBytes > MAX_BYTES) {
+                victims = pickVictims();
+            }
+        }
+        if (victims != null) {
+            delete(victims);
+        }
+        logger.debug("{} {}|{} -> {}", written ? "Stored" : "Deduplicated", scenario, step, hash);
+        return hash;
+    }
+
+    /**
+     * Store a screenshot for the current scenario in the configured format
+     * @param step Step (or label) the screenshot belongs to
+     * @param image Encoded screenshot, usually the PNG returned by the device
+     * @return Content hash of the stored image
+     */
+    public static String putImage(String step, byte[] image) {
+        String scenario = ThreadContext.get("scenario");
+        return putImage(scenario != null ? scenario : "unscoped", step, image);
+    }
+
+    /**
+     * Store a screenshot in screenshot.store.format (default png, stored as is).
+     * With screenshot.store.decimate set to N > 1, a copy reduced N times per side is
+     * stored next to it for comparisons that only need low resolution.
+     * @param scenario Scenario the screenshot belongs to
+     * @param step Step (or label) the screenshot belongs to
+     * @param image Encoded screenshot, usually the PNG returned by the device
+     * @return Content hash of the stored image
+     */
+    public static String putImage(String scenario, String step, byte[] image) {
+        return putImage(scenario, step, image, FORMAT);
+    }
+
+    /**
+     * Store a screenshot in a given format, plus the decimated copy if configured
+     * @param scenario Scenario the screenshot belongs to
+     * @param step Step (or label) the screenshot belongs to
+     * @param image Encoded screenshot
+     * @param format Storage format
+     * @return Content hash of the stored image
+     */
+    public static String putImage(String scenario, String step, byte[] image, ScreenshotCodec.Format format) {
+        byte[] encoded = image;
+        if (format != ScreenshotCodec.Format.PNG || ScreenshotCodec.detect(image) != ScreenshotCodec.Format.PNG) {
+            if (!OpenCvLoader.ensureLoaded()) {
+                // Cannot transcode without OpenCV; keep what the device gave us
+                return put(scenario, step, image, extensionOf(image));
+            }
+            encoded = ScreenshotCodec.transcode(image, format);
+        }
+        String hash = put(scenario, step, encoded, format.getExtension());
+        if (DECIMATE > 1 && OpenCvLoader.ensureLoaded()) {
+            put(scenario, step + DECIMATED_SUFFIX, ScreenshotCodec.decimate(image, DECIMATE, format), format.getExtension());
+        }
+        return hash;
+    }
+
+    /**
+     * Read an artifact by hash
+     * @param hash Content hash returned by put
+     * @return Artifact content, or null if it is not in the store
+     */
+    public static byte[] get(String hash) {
+        Path path = pathOf(hash);
+        if (path == null) {
+            return null;
+        }
+        synchronized (lock) {
+            byte[] parked = deleting.get(hash);
+            if (parked != null) {
+                return parked.clone();
+            }
+        }
+        ScreenshotWriter.awaitPending(path);
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            logger.warn("Could not read {} from screenshot store: {}", hash, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the latest artifact recorded for a scenario step
+     * @param scenario Scenario name
+     * @param step Step (or label)
+     * @return Artifact content, or null if nothing is recorded
+     */
+    public static byte[] lookup(String scenario, String step) {
+        IndexEntry entry;
+        synchronized (lock) {
+            entry = index.get(key(scenario, step));
+        }
+        return entry != null ? get(entry.hash) : null;
+    }
+
+    /**
+     * Read the decimated copy of a screenshot stored with putImage
+     * @param scenario Scenario name
+     * @param step Step (or label)
+     * @return Encoded low-resolution image, or null if none is recorded (screenshot.store.decimate off)
+     */
+    public static byte[] lookupDecimated(String scenario, String step) {
+        return lookup(scenario, step + DECIMATED_SUFFIX);
+    }
+
+    /**
+     * Get the file backing an artifact, marking it as recently referenced
+     * @param hash Content hash
+     * @return Path of the blob, or null if it is not in the store
+     */
+    public static Path pathOf(String hash) {
+        synchronized (lock) {
+            Blob blob = blobs.get(hash);
+            if (blob == null) {
+                return null;
+            }
+            blob.lastReferenced = System.currentTimeMillis();
+            touch(blob);
+            return blob.path();
+        }
+    }
+
+    /**
+     * Get the total size of all stored blobs
+     * @return Size in bytes
+     */
+    public static long sizeBytes() {
+        synchronized (lock) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Persist the scenario/step index
+     */
+    public static void save() {
+        synchronized (lock) {
+            if (!dirty) {
+                return;
+            }
+            try {
+                Files.createDirectories(ROOT);
+                // Write to a temp file and move so a killed JVM never leaves a truncated index
+                Path tmp = INDEX.resolveSibling(INDEX.getFileName() + ".tmp");
+                try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (IndexEntry entry : index.values()) {
+                        writer.write(entry.scenario + '\t' + entry.step + '\t' + entry.hash + '\t' + entry.timestamp);
+                        writer.newLine();
+                    }
+                }
+                Files.move(tmp, INDEX, StandardCopyOption.REPLACE_EXISTING);
+                dirty = false;
+                logger.info("Saved screenshot store index: {} entries, {} blobs, {} bytes",
+                    index.size(), blobs.size(), totalBytes);
+            } catch (IOException e) {
+                logger.warn("Could not save screenshot store index to {}: {}", INDEX, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drop the least recently referenced blobs from the store until it is under the
+     * eviction target. Caller holds the lock; the files are deleted afterwards by delete().
+     * @return Evicted blobs
+     */
+    private static List<Blob> pickVictims() {
+        List<Blob> byAge = new ArrayList<>(blobs.values());
+        byAge.sort((a, b) -> Long.compare(a.lastReferenced, b.lastReferenced));
+        long target = (long) (MAX_BYTES * EVICT_TO);
+        List<Blob> victims = new ArrayList<>();
+        for (Blob blob : byAge) {
+            if (totalBytes <= target) {
+                break;
+            }
+            blobs.remove(blob.hash);
+            totalBytes -= blob.size;
+            deleting.put(blob.hash, null);
+            victims.add(blob);
+        }
+        Iterator<IndexEntry> entries = index.values().iterator();
+        while (entries.hasNext()) {
+            if (!blobs.containsKey(entries.next().hash)) {
+                entries.remove();
+            }
+        }
+        logger.info("Evicting {} least recently referenced blobs, store now {} bytes", victims.size(), totalBytes);
+        return victims;
+    }
+
+    /**
+     * Delete the files of evicted blobs without holding the lock
+     * @param victims Blobs returned by pickVictims
+     */
+    private static void delete(List<Blob> victims) {
+        for (Blob blob : victims) {
+            Path path = blob.path();
+            ScreenshotWriter.awaitPending(path);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Left on disk; load() counts it again next run
+                logger.warn("Could not evict {}: {}", path, e.getMessage());
+            }
+            synchronized (lock) {
+                byte[] parked = deleting.remove(blob.hash);
+                if (parked != null) {
+                    // Stored again while it was being deleted
+                    ScreenshotWriter.submit(parked, path);
+                }
+            }
+        }
+    }
+
+    private static void load() {
+        if (Files.isDirectory(BLOBS)) {
+            try (Stream<Path> files = Files.walk(BLOBS, 2)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    String name = file.getFileName().toString();
+                    int dot = name.lastIndexOf('.');
+                    if (dot <= 0) {
+                        return;
+                    }
+                    try {
+                        Blob blob = new Blob(name.substring(0, dot), name.substring(dot + 1),
+                            Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                        blobs.put(blob.hash, blob);
+                        totalBytes += blob.size;
+                    } catch (IOException e) {
+                        logger.debug("Skipping unreadable blob {}", file);
+                    }
+                });
+            } catch (IOException e) {
+                logger.warn("Could not scan screenshot store {}: {}", BLOBS, e.getMessage());
+            }
+        }
+        if (Files.exists(INDEX)) {
+            try (BufferedReader reader = Files.newBufferedReader(INDEX, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    // Drop entries whose blob was evicted or deleted by hand
+                    if (fields.length == 4 && blobs.containsKey(fields[2])) {
+                        try {
+                            index.put(key(fields[0], fields[1]),
+                                new IndexEntry(fields[0], fields[1], fields[2], Long.parseLong(fields[3])));
+                        } catch (NumberFormatException e) {
+                            // Skip corrupt entry
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Could not load screenshot store index from {}: {}", INDEX, e.getMessage());
+            }
+        }
+        logger.info("Screenshot store at {}: {} blobs, {} bytes, {} index entries",
+            ROOT, blobs.size(), totalBytes, index.size());
+    }
+
+    private static void touch(Blob blob) {
+        // Best effort: the write may still be queued, in which case it gets a fresh mtime anyway
+        blob.path().toFile().setLastModified(blob.lastReferenced);
+    }
+
+    /**
+     * Compute the content hash used as the store key
+     * @param data Artifact content
+     * @return Lowercase hex SHA-256
+     */
+    public static String contentHash(byte[] data) {
+        MessageDigest digest = sha256.get();
+        digest.reset();
+        byte[] bytes = digest.digest(data);
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String extensionOf(byte[] image) {
+        ScreenshotCodec.Format format = ScreenshotCodec.detect(image);
+        return format != null ? format.getExtension() : "bin";
+    }
+
+    private static String key(String scenario, String step) {
+        return clean(scenario) + '\t' + clean(step);
+    }
+
+    private static String clean(String value) {
+        // Tabs and newlines would break the index format
+        return value.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * A stored blob
+     */
+    private static class Blob {
+        private final String hash;
+        private final String extension;
+        private final long size;
+        private long lastReferenced;
+
+        Blob(String hash, String extension, long size, long lastReferenced) {
+            this.hash = hash;
+            this.extension = extension;
+            this.size = size;
+            this.lastReferenced = lastReferenced;
+        }
+
+        Path path() {
+            return BLOBS.resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+        }
+    }
+
+    /**
+     * Latest artifact recorded for one scenario step
+     */
+    private static class IndexEntry {
+        private final String scenario;
+        private final String step;
+        private final String hash;
+        private final long timestamp;
+
+        IndexEntry(String scenario, String step, String hash, long timestamp) {
+            this.scenario = clean(scenario);
+            this.step = clean(step);
+            this.hash = hash;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScreenshotWriter persists screenshots on a background thread.
+ * The step thread only fetches the screenshot payload from the driver and
+ * hands it over; decoding and writing happen here through NIO channels.
+ * The queue is bounded, so a slow disk applies back-pressure to the
+ * producer instead of buffering unbounded images in memory.
+ * Screenshots taken as OutputType.FILE go through {@link #readAndDelete(File)},
+ * so Selenium's temp files never pile up.
+ */
+public class ScreenshotWriter {
+
+    private static final Logger logger = LogManager.getLogger(ScreenshotWriter.class);
+
+    private static final int QUEUE_CAPACITY = CapabilitiesConfig.getIntProperty("screenshot.writer.queue", 16);
+    private static final long FLUSH_TIMEOUT_MS = CapabilitiesConfig.getIntProperty("screenshot.writer.flush.ms", 10000);
+
+    private static final BlockingQueue<WriteTask> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Map<Path, CompletableFuture<Path>> pending = new ConcurrentHashMap<>();
+
+    static {
+        Thread writer = new Thread(ScreenshotWriter::drain, "screenshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(ScreenshotWriter::flush, "screenshot-writer-shutdown"));
+    }
+
+    /**
+     * Queue a base64 screenshot payload (as returned by OutputType.BASE64) for writing
+     * Blocks if the queue is full
+     * @param base64Png Base64 encoded PNG
+     * @param target Destination file
+     * @return Future completed with the path once the file is written
+     */
+    public static CompletableFuture<Path> submit(String base64Png, Path target) {
+        return enqueue(new WriteTask(base64Png, null, target));
+    }
+
+    /**
+     * Queue raw image bytes for writing
+     * Blocks if the queue is full
+     * @param bytes Encoded image bytes
+     * @param target Destination file
+     * @return Future completed with the path once the file is written
+     */
+    public static CompletableFuture<Path> submit(byte[] bytes, Path target) {
+        return enqueue(new WriteTask(null, bytes, target));
+    }
+
+    /**
+     * Wait until a pending write for the given file has completed
+     * Returns immediately if nothing is pending for that path
+     * @param target File path
+     */
+    public static void awaitPending(Path target) {
+        CompletableFuture<Path> future = pending.get(target.toAbsolutePath().normalize());
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Pending screenshot write failed for {}: {}", target, e.getMessage());
+        }
+    }
+
+    /**
+     * Wait until every queued screenshot has been written
+     */
+    public static void flush() {
+        for (Path target : pending.keySet()) {
+            awaitPending(target);
+        }
+    }
+
+    /**
+     * Read a screenshot Selenium wrote to a temp file (OutputType.FILE) and delete it
+     * right away. Only the file this call was handed is touched, so other JVMs sharing
+     * the temp directory are never affected.
+     * @param screenshot File returned by getScreenshotAs(OutputType.FILE)
+     * @return Image bytes
+     */
+    public static byte[] readAndDelete(File screenshot) {
+        try {
+            return Files.readAllBytes(screenshot.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read screenshot " + screenshot + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(screenshot.toPath());
+            } catch (IOException e) {
+                logger.warn("Could not delete temp screenshot {}: {}", screenshot, e.getMessage());
+            }
+        }
+    }
+
+    private static CompletableFuture<Path> enqueue(WriteTask task) {
+        pending.put(task.target, task.future);
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.remove(task.target, task.future);
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    private static void drain() {
+        while (true) {
+            WriteTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                byte[] bytes = task.bytes != null ? task.bytes : Base64.getMimeDecoder().decode(task.base64);
+                write(bytes, task.target);
+                task.future.complete(task.target);
+                logger.debug("Screenshot written: {}", task.target);
+            } catch (Exception e) {
+                logger.error("Failed to write screenshot {}", task.target, e);
+                task.future.completeExceptionally(e);
+            } finally {
+                pending.remove(task.target, task.future);
+            }
+        }
+    }
+
+    private static void write(byte[] bytes, Path target) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * A single queued write
+     */
+    private static class WriteTask {
+        private final String base64;
+        private final byte[] bytes;
+        private final Path target;
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+
+        WriteTask(String base64, byte[] bytes, Path target) {
+            this.base64 = base64;
+            this.bytes = bytes;
+            this.target = target.toAbsolutePath().normalize();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SsimComparator scores structural similarity between two images on an image pyramid.
+ * - Both images are converted to grayscale and brought to a common size no larger than the smaller image
+ * - SSIM is computed from the coarsest level up; a decisive coarse score stops early
+ * - Otherwise the per-level scores are combined as a weighted geometric mean (multi-scale SSIM)
+ * Unlike a plain pixel diff it tolerates resampling noise, and unlike a histogram it respects layout,
+ * so a thumbnail and the full-size image of the same product score high with one metric.
+ * Speed vs. accuracy is tuned with max side, number of levels and the early-stop bounds.
+ */
+public class SsimComparator {
+
+    private static final Logger logger = LogManager.getLogger(SsimComparator.class);
+
+    private static final int MAX_SIDE = CapabilitiesConfig.getIntProperty("image.ssim.max.side", 256);
+    private static final int LEVELS = CapabilitiesConfig.getIntProperty("image.ssim.levels", 3);
+    private static final double EARLY_ACCEPT = CapabilitiesConfig.getDoubleProperty("image.ssim.early.accept", 0.95);
+    private static final double EARLY_REJECT = CapabilitiesConfig.getDoubleProperty("image.ssim.early.reject", 0.30);
+
+    // Standard MS-SSIM scale weights, finest first; truncated and renormalised to the levels in use
+    private static final double[] SCALE_WEIGHTS = {0.0448, 0.2856, 0.3001, 0.2363, 0.1333};
+    private static final double C1 = Math.pow(0.01 * 255, 2);
+    private static final double C2 = Math.pow(0.03 * 255, 2);
+    private static final Size WINDOW = new Size(11, 11);
+    private static final double SIGMA = 1.5;
+    private static final int MIN_LEVEL_SIDE = 16;
+
+    /**
+     * Compare two images
+     * @param img1 First image (BGR or grayscale)
+     * @param img2 Second image (BGR or grayscale)
+     * @return Similarity percentage (0-100)
+     */
+    public static double compare(Mat img1, Mat img2) {
+        Mat gray1 = toGray(img1);
+        Mat gray2 = toGray(img2);
+
+        // Common size: the smaller image, capped so large screenshots stay cheap
+        double scale = Math.min(1.0, (double) MAX_SIDE / Math.max(
+            Math.min(gray1.cols(), gray2.cols()), Math.min(gray1.rows(), gray2.rows())));
+        Size size = new Size(Math.max(1, Math.round(Math.min(gray1.cols(), gray2.cols()) * scale)),
+            Math.max(1, Math.round(Math.min(gray1.rows(), gray2.rows()) * scale)));
+        List<Mat> pyramid1 = pyramid(resize(gray1, size));
+        List<Mat> pyramid2 = pyramid(resize(gray2, size));
+
+        int levels = pyramid1.size();
+        double weightSum = 0;
+        for (int i = 0; i < levels; i++) {
+            weightSum += SCALE_WEIGHTS[i];
+        }
+
+        double logScore = 0;
+        for (int level = levels - 1; level >= 0; level--) {
+            double ssim = Math.max(1e-6, ssim(pyramid1.get(level), pyramid2.get(level)));
+            logScore += SCALE_WEIGHTS[level] / weightSum * Math.log(ssim);
+            boolean coarsest = level == levels - 1;
+            if (coarsest && levels > 1 && (ssim >= EARLY_ACCEPT || ssim <= EARLY_REJECT)) {
+                logger.debug("SSIM decided at coarsest level {}: {}", level, ssim);
+                return clamp(ssim) * 100;
+            }
+        }
+        double score = clamp(Math.exp(logScore));
+        logger.debug("MS-SSIM over {} levels: {}", levels, score);
+        return score * 100;
+    }
+
+    /**
+     * Mean SSIM of two same-size grayscale images
+     */
+    private static double ssim(Mat i1, Mat i2) {
+        Mat x = new Mat();
+        Mat y = new Mat();
+        i1.convertTo(x, CvType.CV_32F);
+        i2.convertTo(y, CvType.CV_32F);
+
+        Mat muX = blur(x);
+        Mat muY = blur(y);
+        Mat muX2 = muX.mul(muX);
+        Mat muY2 = muY.mul(muY);
+        Mat muXY = muX.mul(muY);
+
+        Mat sigmaX2 = new Mat();
+        Mat sigmaY2 = new Mat();
+        Mat sigmaXY = new Mat();
+        Core.subtract(blur(x.mul(x)), muX2, sigmaX2);
+        Core.subtract(blur(y.mul(y)), muY2, sigmaY2);
+        Core.subtract(blur(x.mul(y)), muXY, sigmaXY);
+
+        // ((2 muXY + C1)(2 sigmaXY + C2)) / ((muX2 + muY2 + C1)(sigmaX2 + sigmaY2 + C2))
+        Mat numerator1 = new Mat();
+        Mat numerator2 = new Mat();
+        Core.addWeighted(muXY, 2, muXY, 0, C1, numerator1);
+        Core.addWeighted(sigmaXY, 2, sigmaXY, 0, C2, numerator2);
+        Mat denominator1 = new Mat();
+        Mat denominator2 = new Mat();
+        Core.add(muX2, muY2, denominator1);
+        Core.add(denominator1, new Scalar(C1), denominator1);
+        Core.add(sigmaX2, sigmaY2, denominator2);
+        Core.add(denominator2, new Scalar(C2), denominator2);
+
+        Mat ssimMap = new Mat();
+        Core.divide(numerator1.mul(numerator2), denominator1.mul(denominator2), ssimMap);
+        return Core.mean(ssimMap).val[0];
+    }
+
+    private static List<Mat> pyramid(Mat base) {
+        List<Mat> levels = new ArrayList<>();
+        levels.add(base);
+        Mat current = base;
+        int maxLevels = Math.max(1, Math.min(LEVELS, SCALE_WEIGHTS.length));
+        while (levels.size() < maxLevels
+                && Math.min(current.cols(), current.rows()) / 2 >= MIN_LEVEL_SIDE) {
+            Mat next = new Mat();
+            Imgproc.pyrDown(current, next);
+            levels.add(next);
+            current = next;
+        }
+        return levels;
+    }
+
+    private static Mat blur(Mat src) {
+        Mat dst = new Mat();
+        Imgproc.GaussianBlur(src, dst, WINDOW, SIGMA);
+        return dst;
+    }
+
+    private static Mat toGray(Mat image) {
+        if (image.channels() == 1) {
+            return image;
+        }
+        Mat gray = new Mat();
+        Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        return gray;
+    }
+
+    private static Mat resize(Mat image, Size size) {
+        if (image.cols() == (int) size.width && image.rows() == (int) size.height) {
+            return image;
+        }
+        Mat resized = new Mat();
+        Imgproc.resize(image, resized, size, 0, 0, Imgproc.INTER_AREA);
+        return resized;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+}
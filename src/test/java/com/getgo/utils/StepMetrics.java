@@ -0,0 +1,103 @@
+package com.getgo.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StepMetrics accumulates, per scenario thread, where time goes while a step runs:
+ * - Driver round trips (count, time, count per command name), fed by TimedCommandExecutor
+ * - Intentional sleeps and poll pauses, fed by the wait utilities
+ * Whatever is left of a step's wall time is local compute.
+ * Counters only grow; callers take a {@link Snapshot} before and after and subtract.
+ */
+public class StepMetrics {
+
+    private static final ThreadLocal<Counters> counters = ThreadLocal.withInitial(Counters::new);
+
+    private static class Counters {
+        private long commands;
+        private long driverNanos;
+        private long sleepNanos;
+        private final Map<String, Long> commandCounts = new HashMap<>();
+    }
+
+    /**
+     * Record one driver round trip on the current thread
+     * @param command Command name, e.g. "findElement"
+     * @param nanos Round-trip time
+     */
+    public static void recordCommand(String command, long nanos) {
+        Counters current = counters.get();
+        current.commands++;
+        current.driverNanos += nanos;
+        current.commandCounts.merge(command, 1L, Long::sum);
+    }
+
+    /**
+     * Record time spent sleeping on purpose on the current thread
+     * @param nanos Time slept
+     */
+    public static void recordSleep(long nanos) {
+        counters.get().sleepNanos += nanos;
+    }
+
+    /**
+     * Take a snapshot of the current thread's counters
+     * @return Snapshot
+     */
+    public static Snapshot snapshot() {
+        Counters current = counters.get();
+        return new Snapshot(current.commands, current.driverNanos, current.sleepNanos, new HashMap<>(current.commandCounts));
+    }
+
+    /**
+     * Counter values at one point in time, or the difference between two
+     */
+    public static class Snapshot {
+        private final long commands;
+        private final long driverNanos;
+        private final long sleepNanos;
+        private final Map<String, Long> commandCounts;
+
+        Snapshot(long commands, long driverNanos, long sleepNanos, Map<String, Long> commandCounts) {
+            this.commands = commands;
+            this.driverNanos = driverNanos;
+            this.sleepNanos = sleepNanos;
+            this.commandCounts = commandCounts;
+        }
+
+        /**
+         * Get what happened between an earlier snapshot and this one
+         * @param earlier Snapshot taken before this one on the same thread
+         * @return Difference
+         */
+        public Snapshot since(Snapshot earlier) {
+            Map<String, Long> counts = new HashMap<>(commandCounts);
+            earlier.commandCounts.forEach((command, count) -> counts.computeIfPresent(command,
+                (key, value) -> value - count == 0 ? null : value - count));
+            return new Snapshot(commands - earlier.commands, driverNanos - earlier.driverNanos,
+                sleepNanos - earlier.sleepNanos, counts);
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getDriverNanos() {
+            return driverNanos;
+        }
+
+        public long getSleepNanos() {
+            return sleepNanos;
+        }
+
+        /**
+         * Get the number of round trips per command name
+         * @return Unmodifiable map of command name to count
+         */
+        public Map<String, Long> getCommandCounts() {
+            return Collections.unmodifiableMap(commandCounts);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openqa.selenium.Rectangle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TemplateLocator finds a reference image on the current screen, for elements with
+ * no usable id (icon-only buttons, image carousels, badges).
+ * - Coarse-to-fine search: the full search runs on the smallest pyramid level, and
+ *   each finer level only refines a few candidates in a small window
+ * - Early rejection: if nothing at the coarsest level comes close to the threshold,
+ *   the search stops there
+ * - An optional search region limits the search to part of the screen
+ * Templates are PNG crops taken at the device's resolution, stored as
+ * {@code <template.dir>/<name>.png} and decoded once per run.
+ */
+public class TemplateLocator {
+
+    private static final Logger logger = LogManager.getLogger(TemplateLocator.class);
+
+    private static final Path TEMPLATE_DIR = Paths.get(
+        CapabilitiesConfig.getProperty("template.dir", "src/test/resources/templates"));
+    private static final double DEFAULT_MIN_SCORE = CapabilitiesConfig.getDoubleProperty("template.min.score", 0.85);
+    // Smallest template side worth matching on; limits how coarse the pyramid gets
+    private static final int MIN_TEMPLATE_SIDE = 12;
+    private static final int MAX_LEVELS = 4;
+    // Coarse levels score lower than the full-resolution match; candidates this far below still get refined
+    private static final double COARSE_SLACK = 0.2;
+    private static final int MAX_CANDIDATES = 3;
+    // Refinement window around each candidate, in pixels at the current level
+    private static final int REFINE_MARGIN = 3;
+
+    private static final Map<String, Mat> templates = new ConcurrentHashMap<>();
+
+    /**
+     * A located template
+     */
+    public static class Match {
+        private final Rectangle rect;
+        private final double score;
+
+        Match(Rectangle rect, double score) {
+            this.rect = rect;
+            this.score = score;
+        }
+
+        /**
+         * Get where the template was found
+         * @return Bounds in screen pixels
+         */
+        public Rectangle getRect() {
+            return rect;
+        }
+
+        /**
+         * Get the match quality
+         * @return Normalized correlation at full resolution, 0 to 1
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Get the point to tap
+         * @return Center of the match
+         */
+        public org.openqa.selenium.Point getCenter() {
+            return new org.openqa.selenium.Point(rect.getX() + rect.getWidth() / 2, rect.getY() + rect.getHeight() / 2);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%d,%d %dx%d, score %.3f)", rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight(), score);
+        }
+    }
+
+    /**
+     * Check whether a template image exists
+     * @param name Template name (file name without .png)
+     * @return true if the template can be located
+     */
+    public static boolean hasTemplate(String name) {
+        return templates.containsKey(name) || Files.isRegularFile(TEMPLATE_DIR.resolve(name + ".png"));
+    }
+
+    /**
+     * Locate a template on a fresh capture of the screen
+     * @param name Template name (file name without .png)
+     * @param region Part of the screen to search, or null for the whole screen
+     * @return Match, or null if the template is not on screen
+     */
+    public static Match locate(String name, Rectangle region) {
+        return find(FrameCapture.take("template_" + name), name, region);
+    }
+
+    /**
+     * Locate a template on an existing frame
+     * @param frame Captured screen
+     * @param name Template name (file name without .png)
+     * @param region Part of the screen to search, or null for the whole screen
+     * @return Match, or null if the template is not on screen
+     */
+    public static Match find(FrameCapture frame, String name, Rectangle region) {
+        return find(frame.getFrame(), template(name), region, DEFAULT_MIN_SCORE);
+    }
+
+    /**
+     * Locate a template image on a frame
+     * @param frame BGR or grayscale screen image
+     * @param template BGR or grayscale template image
+     * @param region Part of the frame to search, or null for the whole frame
+     * @param minScore Minimum normalized correlation (0 to 1)
+     * @return Match, or null if no location scores at least minScore
+     */
+    public static Match find(Mat frame, Mat template, Rectangle region, double minScore) {
+        long start = System.nanoTime();
+        Rect area = clip(region, frame.cols(), frame.rows());
+        if (area == null || area.width < template.cols() || area.height < template.rows()) {
+            return null;
+        }
+        Mat searchGray = gray(frame.submat(area));
+        Mat templateGray = gray(template);
+
+        int levels = 1;
+        while (levels < MAX_LEVELS && Math.min(templateGray.cols(), templateGray.rows()) >> levels >= MIN_TEMPLATE_SIDE) {
+            levels++;
+        }
+        List<Mat> searchPyramid = pyramid(searchGray, levels);
+        List<Mat> templatePyramid = pyramid(templateGray, levels);
+
+        // Full search only at the coarsest level
+        int coarsest = levels - 1;
+        Mat scores = new Mat();
+        Imgproc.matchTemplate(searchPyramid.get(coarsest), templatePyramid.get(coarsest), scores, Imgproc.TM_CCOEFF_NORMED);
+        double coarseThreshold = coarsest == 0 ? minScore : minScore - COARSE_SLACK;
+        List<org.opencv.core.Point> candidates = peaks(scores, coarseThreshold, templatePyramid.get(coarsest));
+        scores.release();
+        if (candidates.isEmpty()) {
+            logger.debug("Template rejected at level {} in {} ms", coarsest, (System.nanoTime() - start) / 1_000_000);
+            return null;
+        }
+
+        // Refine each candidate down to full resolution
+        org.opencv.core.Point best = null;
+        double bestScore = -1;
+        for (org.opencv.core.Point candidate : candidates) {
+            org.opencv.core.Point location = candidate;
+            double score = -1;
+            for (int level = coarsest - 1; level >= 0; level--) {
+                Mat levelSearch = searchPyramid.get(level);
+                Mat levelTemplate = templatePyramid.get(level);
+                int x = (int) Math.max(0, location.x * 2 - REFINE_MARGIN);
+                int y = (int) Math.max(0, location.y * 2 - REFINE_MARGIN);
+                int right = (int) Math.min(levelSearch.cols(), location.x * 2 + levelTemplate.cols() + REFINE_MARGIN);
+                int bottom = (int) Math.min(levelSearch.rows(), location.y * 2 + levelTemplate.rows() + REFINE_MARGIN);
+                if (right - x < levelTemplate.cols() || bottom - y < levelTemplate.rows()) {
+                    score = -1;
+                    break;
+                }
+                Mat window = new Mat();
+                Imgproc.matchTemplate(levelSearch.submat(y, bottom, x, right), levelTemplate, window, Imgproc.TM_CCOEFF_NORMED);
+                Core.MinMaxLocResult result = Core.minMaxLoc(window);
+                window.release();
+                location = new org.opencv.core.Point(x + result.maxLoc.x, y + result.maxLoc.y);
+                score = result.maxVal;
+                if (score < (level == 0 ? minScore : minScore - COARSE_SLACK)) {
+                    break;
+                }
+            }
+            if (coarsest == 0) {
+                score = scoreAt(searchGray, templateGray, location);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = location;
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (best == null || bestScore < minScore) {
+            logger.debug("Template not found (best {}) in {} ms", String.format("%.3f", bestScore), elapsedMs);
+            return null;
+        }
+        Match match = new Match(new Rectangle(area.x + (int) best.x, area.y + (int) best.y,
+            templateGray.rows(), templateGray.cols()), bestScore);
+        logger.debug("Template found at {} in {} ms ({} levels)", match, elapsedMs, levels);
+        return match;
+    }
+
+    /**
+     * Get a template image, decoding it on first use
+     * @param name Template name (file name without .png)
+     * @return Decoded template
+     */
+    static Mat template(String name) {
+        return templates.computeIfAbsent(name, key -> {
+            Path file = TEMPLATE_DIR.resolve(key + ".png");
+            try {
+                Mat decoded = ScreenshotCodec.decode(Files.readAllBytes(file));
+                if (decoded.empty()) {
+                    throw new IllegalArgumentException("Template could not be decoded: " + file);
+                }
+                return decoded;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read template " + file + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Best peaks above a threshold, suppressing the neighbourhood of each one found
+     */
+    private static List<org.opencv.core.Point> peaks(Mat scores, double threshold, Mat template) {
+        List<org.opencv.core.Point> peaks = new ArrayList<>(MAX_CANDIDATES);
+        for (int i = 0; i < MAX_CANDIDATES; i++) {
+            Core.MinMaxLocResult result = Core.minMaxLoc(scores);
+            if (result.maxVal < threshold) {
+                break;
+            }
+            peaks.add(result.maxLoc);
+            int x = (int) Math.max(0, result.maxLoc.x - template.cols() / 2);
+            int y = (int) Math.max(0, result.maxLoc.y - template.rows() / 2);
+            int right = (int) Math.min(scores.cols(), result.maxLoc.x + template.cols() / 2 + 1);
+            int bottom = (int) Math.min(scores.rows(), result.maxLoc.y + template.rows() / 2 + 1);
+            scores.submat(y, bottom, x, right).setTo(new org.opencv.core.Scalar(-1));
+        }
+        return peaks;
+    }
+
+    private static double scoreAt(Mat search, Mat template, org.opencv.core.Point location) {
+        Mat result = new Mat();
+        Imgproc.matchTemplate(search.submat(new Rect((int) location.x, (int) location.y, template.cols(), template.rows())),
+            template, result, Imgproc.TM_CCOEFF_NORMED);
+        double score = result.get(0, 0)[0];
+        result.release();
+        return score;
+    }
+
+    private static List<Mat> pyramid(Mat image, int levels) {
+        List<Mat> pyramid = new ArrayList<>(levels);
+        pyramid.add(image);
+        for (int level = 1; level < levels; level++) {
+            Mat previous = pyramid.get(level - 1);
+            Mat next = new Mat();
+            // INTER_AREA keeps exact halving, so coordinates map back by a factor of two
+            Imgproc.resize(previous, next, new Size(previous.cols() / 2, previous.rows() / 2), 0, 0, Imgproc.INTER_AREA);
+            pyramid.add(next);
+        }
+        return pyramid;
+    }
+
+    private static Mat gray(Mat image) {
+        if (image.channels() == 1) {
+            return image;
+        }
+        Mat gray = new Mat();
+        Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        return gray;
+    }
+
+    private static Rect clip(Rectangle region, int width, int height) {
+        if (region == null) {
+            return new Rect(0, 0, width, height);
+        }
+        int x = Math.max(0, region.getX());
+        int y = Math.max(0, region.getY());
+        int right = Math.min(width, region.getX() + region.getWidth());
+        int bottom = Math.min(height, region.getY() + region.getHeight());
+        return right > x && bottom > y ? new Rect(x, y, right - x, bottom - y) : null;
+    }
+}
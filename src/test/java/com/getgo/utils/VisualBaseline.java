@@ -0,0 +1,234 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * VisualBaseline is a golden image together with the signatures every comparison needs,
+ * computed once when the baseline is approved instead of on every check:
+ * - Grayscale downscale (pixel and SSIM metrics)
+ * - Hue/saturation histogram (histogram metric)
+ * - Perceptual hashes (pre-check)
+ * - ORB keypoints and descriptors (feature metric)
+ * Baselines are stored as one binary file read through a memory-mapped channel; the
+ * golden image stays in the mapping and is only copied out when asked for.
+ */
+public class VisualBaseline {
+
+    // "VBL1"
+    private static final int MAGIC = 0x56424C31;
+    private static final int GRAY_MAX_SIDE = CapabilitiesConfig.getIntProperty("visual.baseline.gray.max.side", 256);
+
+    private final ByteBuffer golden;
+    private final Mat gray;
+    private final Mat histogram;
+    private final PerceptualHash hash;
+    private final OrbComparator.Features features;
+
+    private VisualBaseline(ByteBuffer golden, Mat gray, Mat histogram, PerceptualHash hash,
+                           OrbComparator.Features features) {
+        this.golden = golden;
+        this.gray = gray;
+        this.histogram = histogram;
+        this.hash = hash;
+        this.features = features;
+    }
+
+    /**
+     * Build a baseline from a golden image, computing all signatures
+     * @param image Encoded golden image (e.g. PNG bytes)
+     * @return Baseline
+     */
+    public static VisualBaseline fromImage(byte[] image) {
+        Mat decoded = ImageComparisonUtil.decodeImage(image);
+        if (decoded.empty()) {
+            throw new IllegalArgumentException("Baseline image could not be decoded");
+        }
+        return new VisualBaseline(ByteBuffer.wrap(image.clone()), grayDownscale(decoded),
+            ImageComparisonUtil.hsvHistogram(decoded, null), PerceptualHash.of(decoded), OrbComparator.detect(decoded));
+    }
+
+    /**
+     * Load a baseline file
+     * @param file Baseline file written by {@link #write(Path)}
+     * @return Baseline
+     * @throws IOException if the file cannot be read or is not a baseline
+     */
+    public static VisualBaseline read(Path file) throws IOException {
+        if (!OpenCvLoader.ensureLoaded()) {
+            throw new IOException("OpenCV is not available to load visual baseline " + file);
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a visual baseline file: " + file);
+            }
+            Mat gray = readMat(buffer, CvType.CV_8UC1);
+            Mat histogram = readFloatMat(buffer);
+            PerceptualHash hash = PerceptualHash.of(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            Point[] points = new Point[buffer.getInt()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = new Point(buffer.getFloat(), buffer.getFloat());
+            }
+            Mat descriptors = readMat(buffer, CvType.CV_8UC1);
+            int goldenLength = buffer.getInt();
+            ByteBuffer golden = buffer.slice();
+            golden.limit(goldenLength);
+            return new VisualBaseline(golden, gray, histogram, hash, new OrbComparator.Features(points, descriptors));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt visual baseline file: " + file, e);
+        }
+    }
+
+    /**
+     * Write the baseline to a file, replacing it atomically
+     * @param file Target file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Point[] points = features.getPoints();
+        Mat descriptors = features.getDescriptors();
+        int size = 4
+            + 8 + (int) gray.total()
+            + 8 + (int) histogram.total() * 4
+            + 3 * 8
+            + 4 + points.length * 8
+            + 8 + (int) (descriptors.total() * descriptors.elemSize())
+            + 4 + golden.remaining();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        writeMat(buffer, gray);
+        writeFloatMat(buffer, histogram);
+        buffer.putLong(hash.getAHash()).putLong(hash.getDHash()).putLong(hash.getPHash());
+        buffer.putInt(points.length);
+        for (Point point : points) {
+            buffer.putFloat((float) point.x).putFloat((float) point.y);
+        }
+        writeMat(buffer, descriptors);
+        buffer.putInt(golden.remaining());
+        buffer.put(golden.duplicate());
+        buffer.flip();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        // Write to a temp file and move so readers never map a half-written baseline
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Get the golden image
+     * @return Encoded golden image (a copy)
+     */
+    public byte[] getGolden() {
+        byte[] copy = new byte[golden.remaining()];
+        golden.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * Get the grayscale downscale of the golden image
+     * @return 8-bit single-channel image, longest side at most visual.baseline.gray.max.side
+     */
+    Mat getGray() {
+        return gray;
+    }
+
+    /**
+     * Get the hue/saturation histogram of the golden image
+     * @return Histogram as built by ImageComparisonUtil.hsvHistogram
+     */
+    Mat getHistogram() {
+        return histogram;
+    }
+
+    public PerceptualHash getHash() {
+        return hash;
+    }
+
+    OrbComparator.Features getFeatures() {
+        return features;
+    }
+
+    /**
+     * Grayscale downscale used for baseline pixel and SSIM comparisons
+     * @param image BGR or grayscale image
+     * @return 8-bit single-channel image, longest side at most visual.baseline.gray.max.side
+     */
+    static Mat grayDownscale(Mat image) {
+        Mat gray = new Mat();
+        if (image.channels() == 1) {
+            image.copyTo(gray);
+        } else {
+            Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+        }
+        double scale = Math.min(1.0, (double) GRAY_MAX_SIDE / Math.max(gray.cols(), gray.rows()));
+        if (scale < 1.0) {
+            Imgproc.resize(gray, gray, new Size(Math.max(1, Math.round(gray.cols() * scale)),
+                Math.max(1, Math.round(gray.rows() * scale))), 0, 0, Imgproc.INTER_AREA);
+        }
+        return gray;
+    }
+
+    private static void writeMat(ByteBuffer buffer, Mat mat) {
+        byte[] data = new byte[(int) (mat.total() * mat.elemSize())];
+        if (data.length > 0) {
+            mat.get(0, 0, data);
+        }
+        buffer.putInt(mat.rows()).putInt(mat.cols()).put(data);
+    }
+
+    private static Mat readMat(ByteBuffer buffer, int type) {
+        int rows = buffer.getInt();
+        int cols = buffer.getInt();
+        if (rows == 0 || cols == 0) {
+            return new Mat();
+        }
+        Mat mat = new Mat(rows, cols, type);
+        byte[] data = new byte[(int) (mat.total() * mat.elemSize())];
+        buffer.get(data);
+        mat.put(0, 0, data);
+        return mat;
+    }
+
+    private static void writeFloatMat(ByteBuffer buffer, Mat mat) {
+        float[] data = new float[(int) mat.total()];
+        mat.get(0, 0, data);
+        buffer.putInt(mat.rows()).putInt(mat.cols());
+        buffer.asFloatBuffer().put(data);
+        buffer.position(buffer.position() + data.length * 4);
+    }
+
+    private static Mat readFloatMat(ByteBuffer buffer) {
+        int rows = buffer.getInt();
+        int cols = buffer.getInt();
+        float[] data = new float[rows * cols];
+        buffer.asFloatBuffer().get(data);
+        buffer.position(buffer.position() + data.length * 4);
+        Mat mat = new Mat(rows, cols, CvType.CV_32F);
+        mat.put(0, 0, data);
+        return mat;
+    }
+}
@@ -0,0 +1,243 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * VisualBaselineStore keeps approved reference images per (screen, element, device profile)
+ * so checks compare a fresh capture against a known-good image instead of another capture
+ * from the same run.
+ * - Each baseline is stored with precomputed signatures (see {@link VisualBaseline})
+ * - A {@code <element>.png} copy of the golden image sits next to it for review
+ * - A failed check leaves the capture as {@code <element>.pending.png} under
+ *   visual.baseline.pending.dir (build output); approving promotes it
+ * Layout: {@code <visual.baseline.dir>/<profile>/<screen>/<element>.vbl}.
+ * The visual.baseline.mode property selects the workflow:
+ * - verify: compare only; a missing baseline fails the check and leaves the capture pending (default)
+ * - record: compare, and record the capture when no baseline exists yet
+ * - update: replace baselines with the fresh captures
+ * A recorded capture is not a comparison: check reports it as BASELINE_RECORDED so callers can
+ * skip instead of pass.
+ * Pending candidates can be approved from the command line:
+ * {@code java ... com.getgo.utils.VisualBaselineStore approve [screen [element]]}
+ */
+public class VisualBaselineStore {
+
+    private static final Logger logger = LogManager.getLogger(VisualBaselineStore.class);
+
+    /**
+     * How checks treat missing and existing baselines
+     */
+    public enum Mode {
+        VERIFY, RECORD, UPDATE
+    }
+
+    private static final String BASELINE_EXTENSION = ".vbl";
+    private static final String PENDING_SUFFIX = ".pending.png";
+
+    private static final Path ROOT = Paths.get(
+        CapabilitiesConfig.getProperty("visual.baseline.dir", "src/test/resources/baselines"));
+    // Build output, so failed checks never leave files in the source tree
+    private static final Path PENDING_ROOT = Paths.get(
+        CapabilitiesConfig.getProperty("visual.baseline.pending.dir", "target/visual-baselines/pending"));
+    private static final Mode MODE = Mode.valueOf(
+        CapabilitiesConfig.getProperty("visual.baseline.mode", "verify").trim().toUpperCase());
+    private static final String PROFILE = clean(CapabilitiesConfig.getProperty("visual.baseline.profile",
+        CapabilitiesConfig.getProperty("device.name", "device") + "_"
+            + CapabilitiesConfig.getProperty("platform.version", "")));
+
+    private static final Map<Path, VisualBaseline> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Check a capture against its baseline for the current device profile
+     * A capture below the minimum similarity is kept as a pending candidate for approval.
+     * @param screen Screen name, e.g. "product_detail"
+     * @param element Element name, e.g. "product_image"
+     * @param image Encoded capture
+     * @param minSimilarity Similarity (0-100) below which the capture becomes a pending candidate
+     * @return Comparison result; BASELINE_RECORDED if the capture became the baseline (nothing was compared)
+     * @throws IllegalStateException in verify mode if there is no baseline; the capture is saved as pending
+     */
+    public static ComparisonResult check(String screen, String element, byte[] image, double minSimilarity) {
+        VisualBaseline baseline = MODE == Mode.UPDATE ? null : get(screen, element);
+        if (baseline == null) {
+            if (MODE == Mode.VERIFY) {
+                Path pending = pendingPath(screen, element);
+                writePending(pending, image);
+                throw new IllegalStateException(String.format(
+                    "No visual baseline for %s/%s/%s; capture saved to %s. Review and approve it"
+                        + " (VisualBaselineStore approve %s %s) or run with visual.baseline.mode=record",
+                    PROFILE, screen, element, pending, screen, element));
+            }
+            approve(screen, element, image);
+            return new ComparisonResult(100.0, ComparisonResult.DecidedBy.BASELINE_RECORDED, -1, Double.NaN, Double.NaN);
+        }
+        ComparisonResult result = ImageComparisonUtil.compareWithBaseline(baseline, image);
+        if (result.getSimilarity() < minSimilarity) {
+            Path pending = pendingPath(screen, element);
+            writePending(pending, image);
+            logger.warn("Capture of {}/{} does not match its baseline ({}); candidate saved to {}",
+                screen, element, result, pending);
+        }
+        return result;
+    }
+
+    /**
+     * Get the baseline of an element for the current device profile
+     * @param screen Screen name
+     * @param element Element name
+     * @return Baseline, or null if none has been approved
+     */
+    public static VisualBaseline get(String screen, String element) {
+        Path file = baselinePath(screen, element);
+        VisualBaseline cached = cache.get(file);
+        if (cached != null) {
+            return cached;
+        }
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            VisualBaseline baseline = VisualBaseline.read(file);
+            cache.put(file, baseline);
+            logger.debug("Loaded visual baseline {}", file);
+            return baseline;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load visual baseline " + file, e);
+        }
+    }
+
+    /**
+     * Make an image the baseline of an element for the current device profile
+     * @param screen Screen name
+     * @param element Element name
+     * @param image Encoded golden image
+     * @return The new baseline
+     */
+    public static VisualBaseline approve(String screen, String element, byte[] image) {
+        return approve(baselinePath(screen, element), image);
+    }
+
+    /**
+     * Promote pending candidates to baselines for the current device profile
+     * @param screen Screen to approve, or null for all screens
+     * @param element Element to approve, or null for all elements of the screen
+     * @return Number of candidates approved
+     */
+    public static int approvePending(String screen, String element) {
+        int approved = 0;
+        for (Path pending : pending()) {
+            String name = pending.getFileName().toString();
+            String pendingElement = name.substring(0, name.length() - PENDING_SUFFIX.length());
+            String pendingScreen = pending.getParent().getFileName().toString();
+            if ((screen != null && !clean(screen).equals(pendingScreen))
+                    || (element != null && !clean(element).equals(pendingElement))) {
+                continue;
+            }
+            try {
+                // Approving also removes the pending file
+                approve(baselinePath(pendingScreen, pendingElement), Files.readAllBytes(pending));
+                approved++;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to approve pending baseline " + pending, e);
+            }
+        }
+        logger.info("Approved {} pending visual baselines for profile {}", approved, PROFILE);
+        return approved;
+    }
+
+    /**
+     * List pending candidates for the current device profile
+     * @return Paths of the pending candidate images
+     */
+    public static List<Path> pending() {
+        Path profileDir = PENDING_ROOT.resolve(PROFILE);
+        if (!Files.isDirectory(profileDir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(profileDir, 2)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(PENDING_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list pending visual baselines in " + profileDir, e);
+        }
+    }
+
+    public static Mode getMode() {
+        return MODE;
+    }
+
+    public static String getProfile() {
+        return PROFILE;
+    }
+
+    /**
+     * Command line approval of pending candidates
+     * @param args "list", or "approve" optionally followed by screen and element
+     */
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "list";
+        if ("approve".equals(command)) {
+            int approved = approvePending(args.length > 1 ? args[1] : null, args.length > 2 ? args[2] : null);
+            System.out.println("Approved " + approved + " pending baselines for profile " + PROFILE);
+        } else {
+            List<Path> pending = pending();
+            System.out.println(pending.size() + " pending baselines for profile " + PROFILE);
+            pending.forEach(path -> System.out.println("  " + path));
+        }
+    }
+
+    private static VisualBaseline approve(Path file, byte[] image) {
+        VisualBaseline baseline = VisualBaseline.fromImage(image);
+        try {
+            baseline.write(file);
+            String stem = stem(file);
+            Files.write(file.resolveSibling(stem + ".png"), image);
+            Files.deleteIfExists(PENDING_ROOT.resolve(ROOT.relativize(file)).resolveSibling(stem + PENDING_SUFFIX));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write visual baseline " + file, e);
+        }
+        cache.put(file, baseline);
+        logger.info("Recorded visual baseline {}", file);
+        return baseline;
+    }
+
+    private static void writePending(Path pending, byte[] image) {
+        try {
+            Files.createDirectories(pending.getParent());
+            Files.write(pending, image);
+        } catch (IOException e) {
+            logger.warn("Could not save pending baseline {}: {}", pending, e.getMessage());
+        }
+    }
+
+    private static Path baselinePath(String screen, String element) {
+        return ROOT.resolve(PROFILE).resolve(clean(screen)).resolve(clean(element) + BASELINE_EXTENSION);
+    }
+
+    private static Path pendingPath(String screen, String element) {
+        return PENDING_ROOT.resolve(PROFILE).resolve(clean(screen)).resolve(clean(element) + PENDING_SUFFIX);
+    }
+
+    private static String stem(Path baselineFile) {
+        String name = baselineFile.getFileName().toString();
+        return name.substring(0, name.length() - BASELINE_EXTENSION.length());
+    }
+
+    private static String clean(String name) {
+        return name.trim().toLowerCase().replaceAll("[^a-z0-9._-]+", "_");
+    }
+}
@@ -0,0 +1,289 @@
+package com.getgo.utils;
+
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.drivermanager.DriverManager;
+import com.getgo.drivermanager.SessionHealthMonitor;
+import io.appium.java_client.AppiumDriver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * WaitEngine is the single polling loop behind all explicit waits.
+ * - Polls fast at first and backs off towards a slower interval
+ * - Nested waits share the wall-clock budget of the outermost wait
+ * - Implicit wait is switched off while polling so misses return immediately
+ * - Reuses per-thread state instead of building a WebDriverWait per call
+ * - Records wait/poll counts and time spent waiting
+ */
+public class WaitEngine {
+
+    private static final Logger logger = LogManager.getLogger(WaitEngine.class);
+
+    private static final long INITIAL_POLL_MS = CapabilitiesConfig.getIntProperty("wait.poll.initial.ms", 25);
+    private static final long MAX_POLL_MS = CapabilitiesConfig.getIntProperty("wait.poll.max.ms", 500);
+    private static final double BACKOFF = CapabilitiesConfig.getDoubleProperty("wait.poll.backoff", 1.5);
+    private static final int MAX_NESTING = 16;
+
+    private static final LongAdder totalWaits = new LongAdder();
+    private static final LongAdder totalPolls = new LongAdder();
+    private static final LongAdder totalTimeouts = new LongAdder();
+    private static final LongAdder totalWaitNanos = new LongAdder();
+
+    private static final ThreadLocal<PollState> state = ThreadLocal.withInitial(PollState::new);
+
+    /**
+     * Condition evaluated against a locator
+     * Implementations should be stateless constants so no object is created per wait
+     * @param <T> Result type; null or Boolean.FALSE means "not yet"
+     */
+    public interface LocatorCondition<T> {
+        T apply(AppiumDriver driver, By locator);
+    }
+
+    /** First element matching the locator, if any */
+    public static final LocatorCondition<WebElement> PRESENT = (driver, locator) -> {
+        List<WebElement> elements = driver.findElements(locator);
+        return elements.isEmpty() ? null : elements.get(0);
+    };
+
+    /** First element matching the locator, if it is displayed */
+    public static final LocatorCondition<WebElement> VISIBLE = (driver, locator) -> {
+        WebElement element = PRESENT.apply(driver, locator);
+        return element != null && element.isDisplayed() ? element : null;
+    };
+
+    /** First element matching the locator, if it is displayed and enabled */
+    public static final LocatorCondition<WebElement> CLICKABLE = (driver, locator) -> {
+        WebElement element = VISIBLE.apply(driver, locator);
+        return element != null && element.isEnabled() ? element : null;
+    };
+
+    /** TRUE once no displayed element matches the locator */
+    public static final LocatorCondition<Boolean> INVISIBLE = (driver, locator) -> {
+        WebElement element = PRESENT.apply(driver, locator);
+        return element == null || !element.isDisplayed();
+    };
+
+    /**
+     * Wait until a locator condition is met
+     * @param locator By locator passed to the condition
+     * @param condition Condition to evaluate
+     * @param timeoutMs Timeout in milliseconds (capped by any enclosing wait)
+     * @return Condition result
+     * @throws TimeoutException if the condition is not met in time
+     */
+    public static <T> T until(By locator, LocatorCondition<T> condition, long timeoutMs) {
+        PollState poll = state.get();
+        long start = enter(poll, timeoutMs);
+        try {
+            AppiumDriver driver = DriverManager.getDriver();
+            long delay = INITIAL_POLL_MS;
+            while (true) {
+                SessionHealthMonitor.assertHealthy();
+                poll.polls++;
+                totalPolls.increment();
+                T result = evaluate(condition, driver, locator);
+                if (isSatisfied(result)) {
+                    return result;
+                }
+                delay = pause(poll, delay, locator);
+            }
+        } finally {
+            exit(poll, start);
+        }
+    }
+
+    /**
+     * Wait until an arbitrary condition is met
+     * @param condition Condition to evaluate; null or Boolean.FALSE means "not yet"
+     * @param timeoutMs Timeout in milliseconds (capped by any enclosing wait)
+     * @param description What is being waited for, used in the timeout message
+     * @return Condition result
+     * @throws TimeoutException if the condition is not met in time
+     */
+    public static <T> T until(Function<AppiumDriver, T> condition, long timeoutMs, String description) {
+        PollState poll = state.get();
+        long start = enter(poll, timeoutMs);
+        try {
+            AppiumDriver driver = DriverManager.getDriver();
+            long delay = INITIAL_POLL_MS;
+            while (true) {
+                SessionHealthMonitor.assertHealthy();
+                poll.polls++;
+                totalPolls.increment();
+                T result;
+                try {
+                    result = condition.apply(driver);
+                } catch (NotFoundException | StaleElementReferenceException | TimeoutException e) {
+                    // A nested wait timing out just means "not yet" while the outer budget lasts
+                    result = null;
+                }
+                if (isSatisfied(result)) {
+                    return result;
+                }
+                delay = pause(poll, delay, description);
+            }
+        } finally {
+            exit(poll, start);
+        }
+    }
+
+    /**
+     * Remaining budget of the innermost active wait on this thread
+     * @return Remaining milliseconds, or Long.MAX_VALUE if no wait is active
+     */
+    public static long remainingBudgetMs() {
+        PollState poll = state.get();
+        if (poll.depth == 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (poll.deadlines[poll.depth - 1] - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Get wait metrics for the current thread since the last reset
+     * @return Snapshot of scenario-level metrics
+     */
+    public static Metrics getScenarioMetrics() {
+        PollState poll = state.get();
+        return new Metrics(poll.waits, poll.polls, poll.timeouts, poll.waitNanos / 1_000_000);
+    }
+
+    /**
+     * Reset wait metrics for the current thread (call at scenario start)
+     */
+    public static void resetScenarioMetrics() {
+        PollState poll = state.get();
+        poll.waits = 0;
+        poll.polls = 0;
+        poll.timeouts = 0;
+        poll.waitNanos = 0;
+    }
+
+    /**
+     * Get wait metrics across all threads for the whole run
+     * @return Snapshot of run-level metrics
+     */
+    public static Metrics getRunMetrics() {
+        return new Metrics(totalWaits.sum(), totalPolls.sum(), totalTimeouts.sum(),
+            totalWaitNanos.sum() / 1_000_000);
+    }
+
+    private static long enter(PollState poll, long timeoutMs) {
+        if (poll.depth >= MAX_NESTING) {
+            throw new IllegalStateException("Waits nested deeper than " + MAX_NESTING);
+        }
+        long now = System.nanoTime();
+        long deadline = now + timeoutMs * 1_000_000L;
+        if (poll.depth > 0) {
+            // A nested wait can never outlive the wait that contains it
+            deadline = Math.min(deadline, poll.deadlines[poll.depth - 1]);
+        } else {
+            // Misses should come back immediately instead of sitting in the implicit wait
+            DriverManager.setImplicitWait(0);
+        }
+        poll.deadlines[poll.depth++] = deadline;
+        return now;
+    }
+
+    private static void exit(PollState poll, long start) {
+        poll.depth--;
+        long elapsed = System.nanoTime() - start;
+        if (poll.depth == 0) {
+            DriverManager.restoreImplicitWait();
+            // Only count outermost waits so nested time is not double counted
+            poll.waits++;
+            poll.waitNanos += elapsed;
+            totalWaits.increment();
+            totalWaitNanos.add(elapsed);
+        }
+    }
+
+    private static long pause(PollState poll, long delay, Object subject) {
+        long remainingNanos = poll.deadlines[poll.depth - 1] - System.nanoTime();
+        if (remainingNanos <= 0) {
+            poll.timeouts++;
+            totalTimeouts.increment();
+            logger.debug("Timed out waiting for: {}", subject);
+            throw new TimeoutException("Timed out waiting for: " + subject);
+        }
+        try {
+            IdleClock.sleep(Math.min(delay, Math.max(1, remainingNanos / 1_000_000)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted while waiting for: " + subject);
+        }
+        return Math.min(MAX_POLL_MS, (long) (delay * BACKOFF));
+    }
+
+    private static <T> T evaluate(LocatorCondition<T> condition, AppiumDriver driver, By locator) {
+        try {
+            return condition.apply(driver, locator);
+        } catch (NotFoundException | StaleElementReferenceException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSatisfied(Object result) {
+        return result != null && !Boolean.FALSE.equals(result);
+    }
+
+    /**
+     * Per-thread mutable state reused by every wait on that thread
+     */
+    private static class PollState {
+        private final long[] deadlines = new long[MAX_NESTING];
+        private int depth;
+        private long waits;
+        private long polls;
+        private long timeouts;
+        private long waitNanos;
+    }
+
+    /**
+     * Immutable snapshot of wait metrics
+     */
+    public static class Metrics {
+        private final long waits;
+        private final long polls;
+        private final long timeouts;
+        private final long waitMillis;
+
+        public Metrics(long waits, long polls, long timeouts, long waitMillis) {
+            this.waits = waits;
+            this.polls = polls;
+            this.timeouts = timeouts;
+            this.waitMillis = waitMillis;
+        }
+
+        public long getWaits() {
+            return waits;
+        }
+
+        public long getPolls() {
+            return polls;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("waits=%d, polls=%d, timeouts=%d, waited=%d ms", waits, polls, timeouts, waitMillis);
+        }
+    }
+}
@@ -1,14 +1,16 @@
 package com.getgo.utils;
 
-import com.getgo.drivermanager.DriverManager;
+import com.getgo.config.CapabilitiesConfig;
+import com.getgo.drivermanager.SessionHealthMonitor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
+import org.w3c.dom.Document;
 
 import java.time.Duration;
+import java.util.Arrays;
 
 /**
  * WaitUtil provides explicit wait utility methods
@@ -16,36 +18,82 @@ import java.time.Duration;
 public class WaitUtil {
     
     private static final Logger logger = LogManager.getLogger(WaitUtil.class);
+    private static final long HEALTH_CHECK_SLICE_MS = 250;
+    private static final Duration SETTLE_QUIET = Duration.ofMillis(
+        CapabilitiesConfig.getIntProperty("mjpeg.settle.quiet.ms", 300));
+    private static final double SETTLE_MAX_CHANGE_PERCENT =
+        CapabilitiesConfig.getDoubleProperty("mjpeg.settle.max.change.percent", 0.5);
 
     /**
      * Wait for element to be present
      * @param locator By locator
-     * @param timeout Timeout in seconds
+     * @param timeout Timeout in seconds, used until the locator has timing history
      * @return WebElement
      */
     public static WebElement waitForElementPresence(By locator, int timeout) {
         try {
-            WebDriverWait wait = new WebDriverWait(DriverManager.getDriver(), Duration.ofSeconds(timeout));
-            return wait.until(ExpectedConditions.presenceOfElementLocated(locator));
+            long start = System.currentTimeMillis();
+            WebElement element;
+            try {
+                element = WaitEngine.until(locator, WaitEngine.PRESENT, AdaptiveTimeouts.resolveMillis(locator, timeout));
+            } catch (TimeoutException e) {
+                AdaptiveTimeouts.recordTimeout(locator, System.currentTimeMillis() - start);
+                throw e;
+            }
+            AdaptiveTimeouts.record(locator, System.currentTimeMillis() - start);
+            return element;
         } catch (Exception e) {
-            logger.error("Element not present: " + locator, e);
+            logger.error("Element not present: {}", locator, e);
             throw e;
         }
     }
     
     /**
      * Wait for specific time
+     * Sleeps in short slices so a crashed app aborts the wait early
      * @param seconds Seconds to wait
      */
     public static void waitFor(int seconds) {
         try {
-            Thread.sleep(seconds * 1000L);
+            long remaining = seconds * 1000L;
+            while (remaining > 0) {
+                SessionHealthMonitor.assertHealthy();
+                long slice = Math.min(remaining, HEALTH_CHECK_SLICE_MS);
+                IdleClock.sleep(slice);
+                remaining -= slice;
+            }
+            SessionHealthMonitor.assertHealthy();
         } catch (InterruptedException e) {
             logger.error("Wait interrupted", e);
             Thread.currentThread().interrupt();
         }
     }
     
+    /**
+     * Wait until the screen stops moving (scroll momentum, transitions, results refreshing)
+     * Watches the MJPEG screen stream when one is running and returns as soon as the screen
+     * has been still for mjpeg.settle.quiet.ms; without a stream it waits the full time.
+     * @param maxSeconds Longest wait, and the fixed wait when there is no stream
+     * @return true if the screen was seen to settle, false on timeout or without a stream
+     */
+    public static boolean waitForScreenToSettle(int maxSeconds) {
+        MjpegFrameSource stream = MjpegFrameSource.current();
+        if (stream == null) {
+            waitFor(maxSeconds);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        MjpegFrameSource.Frame settled = stream.waitForStable(SETTLE_QUIET, SETTLE_MAX_CHANGE_PERCENT,
+            Duration.ofSeconds(maxSeconds));
+        SessionHealthMonitor.assertHealthy();
+        if (settled == null) {
+            logger.debug("Screen still changing after {} s", maxSeconds);
+            return false;
+        }
+        logger.debug("Screen settled after {} ms", System.currentTimeMillis() - start);
+        return true;
+    }
+    
     /**
      * Wait for either of two elements to be present
      * @param locator1 First By locator
@@ -53,9 +101,44 @@ public class WaitUtil {
      * @param timeout Timeout in seconds
      */
     public static void waitForEitherElement(By locator1, By locator2, int timeout) {
-        WebDriverWait wait = new WebDriverWait(DriverManager.getDriver(), Duration.ofSeconds(timeout));
-        wait.until(driver -> 
-            ElementUtil.isElementPresent(locator1) || ElementUtil.isElementPresent(locator2)
-        );
+        waitForFirstOf(timeout, locator1, locator2);
+    }
+    
+    /**
+     * Wait until any of several elements is present and report which one
+     * Candidates are checked in argument order. Locators the page source can answer
+     * share one snapshot per poll, fetched when the first of them is reached; the
+     * others fall back to findElements, which returns immediately inside the wait engine
+     * @param timeout Timeout in seconds
+     * @param locators Candidate locators; earlier ones win if several are present
+     * @return The locator that matched
+     */
+    public static By waitForFirstOf(int timeout, By... locators) {
+        boolean[] local = new boolean[locators.length];
+        for (int i = 0; i < locators.length; i++) {
+            local[i] = PageSourceQuery.isSupported(locators[i]);
+        }
+
+        long start = System.currentTimeMillis();
+        By matched = WaitEngine.until(driver -> {
+            Document snapshot = null;
+            for (int i = 0; i < locators.length; i++) {
+                if (local[i]) {
+                    if (snapshot == null) {
+                        snapshot = PageSourceQuery.snapshot(driver);
+                    }
+                    if (PageSourceQuery.matches(snapshot, locators[i])) {
+                        return locators[i];
+                    }
+                } else if (!driver.findElements(locators[i]).isEmpty()) {
+                    return locators[i];
+                }
+            }
+            return null;
+        }, timeout * 1000L, "first of " + Arrays.toString(locators));
+
+        logger.info("First of {} locators present after {} ms: {}", locators.length,
+            System.currentTimeMillis() - start, matched);
+        return matched;
     }
 }
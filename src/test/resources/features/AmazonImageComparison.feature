@@ -19,4 +19,14 @@ Feature: Amazon Image Comparison
     Then the product details page should be displayed
     And I should see the product title
     When I capture the product image from product details
-    Then the product images should match with 80-100% similarity
\ No newline at end of file
+    Then the product images should match with 80-100% similarity
+
+  # Opt-in: needs approved baselines for the device profile, run with -Dcucumber.filter.tags="@VisualBaseline"
+  @VisualBaseline
+  Scenario: Product image matches its approved visual baseline
+    Given I am on the Amazon home page
+    When I search for "iPhone 17 Pro Max" in the search bar
+    And I click on the first product from search results
+    Then the product details page should be displayed
+    When I capture the product image from product details
+    Then the product image on the "product_detail" screen should match its visual baseline with at least 90% similarity